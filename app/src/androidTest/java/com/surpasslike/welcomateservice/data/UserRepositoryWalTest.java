@@ -0,0 +1,140 @@
+package com.surpasslike.welcomateservice.data;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.surpasslike.welcomateservice.data.db.DatabaseConfig;
+import com.surpasslike.welcomateservice.data.db.DatabaseHelper;
+import com.surpasslike.welcomateservice.data.db.UserStatements;
+import com.surpasslike.welcomateservice.data.model.UserRecord;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * 验证 WAL 模式下批量写入期间登录查询不会被阻塞
+ */
+@RunWith(AndroidJUnit4.class)
+public class UserRepositoryWalTest {
+    private static final String TAG = "UserRepositoryWalTest";
+    private static final String DB_NAME = "users-wal-test.db";
+    private static final int BULK_ROWS = 200_000;
+    private static final int BATCH_ROWS = 20_000;
+    private static final int LOGIN_SAMPLES = 50;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private UserRepository repository;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context,
+                new DatabaseConfig(DB_NAME, true, DatabaseConfig.SYNCHRONOUS_NORMAL, 30_000L));
+        repository = new UserRepository(dbHelper);
+        // 使用最低迭代次数，让测得的延迟主要反映数据库等待而不是哈希耗时
+        repository.setPasswordHashIterations(PasswordHasher.MIN_ITERATIONS);
+        assertNotEquals(-1, repository.addUser("alice", "alice@example.com", "secret"));
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void loginIsNotBlockedByBulkWrite() throws Exception {
+        CountDownLatch writerStarted = new CountDownLatch(1);
+        CountDownLatch writerDone = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            // 在一个写事务中持续插入，模拟正在进行的批量导入
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            db.beginTransactionNonExclusive();
+            try (SQLiteStatement insert = db.compileStatement(UserStatements.SQL_INSERT_USER)) {
+                for (int i = 0; i < BULK_ROWS; i++) {
+                    insert.bindString(1, "user" + i);
+                    insert.bindString(2, "account" + i);
+                    insert.bindString(3, "hash" + i);
+                    insert.executeInsert();
+                    if (i == 0) {
+                        writerStarted.countDown();
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                writerDone.countDown();
+            }
+        }, "bulk-writer");
+        writer.start();
+        assertTrue(writerStarted.await(5, TimeUnit.SECONDS));
+        assertLoginsNotBlocked(writerDone);
+    }
+
+    @Test
+    public void loginIsNotBlockedByAddUsers() throws Exception {
+        List<UserRecord> records = new ArrayList<>(BATCH_ROWS);
+        for (int i = 0; i < BATCH_ROWS; i++) {
+            records.add(new UserRecord("user" + i, "account" + i, "password" + i));
+        }
+
+        CountDownLatch writerStarted = new CountDownLatch(1);
+        CountDownLatch writerDone = new CountDownLatch(1);
+        AtomicReference<long[]> rowIds = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            writerStarted.countDown();
+            rowIds.set(repository.addUsers(records));
+            writerDone.countDown();
+        }, "bulk-writer");
+        writer.start();
+        assertTrue(writerStarted.await(5, TimeUnit.SECONDS));
+        assertLoginsNotBlocked(writerDone);
+
+        for (long rowId : rowIds.get()) {
+            assertNotEquals(-1, rowId);
+        }
+        assertEquals(BATCH_ROWS + 1, repository.getAllUsers().size());
+    }
+
+    /**
+     * 在写入进行期间连续登录，检查每次登录的延迟
+     */
+    private void assertLoginsNotBlocked(CountDownLatch writerDone) throws InterruptedException {
+        long[] latencies = new long[LOGIN_SAMPLES];
+        for (int i = 0; i < LOGIN_SAMPLES; i++) {
+            long start = System.nanoTime();
+            assertEquals("alice", repository.loginAdmin("alice@example.com", "secret"));
+            latencies[i] = System.nanoTime() - start;
+        }
+        // 所有登录样本都应在批量写入结束前完成，否则说明读操作被写事务阻塞了
+        boolean overlapped = writerDone.getCount() == 1;
+        assertTrue(writerDone.await(60, TimeUnit.SECONDS));
+
+        Arrays.sort(latencies);
+        long p50 = TimeUnit.NANOSECONDS.toMicros(latencies[LOGIN_SAMPLES / 2]);
+        long p99 = TimeUnit.NANOSECONDS.toMicros(latencies[(int) (LOGIN_SAMPLES * 0.99)]);
+        long max = TimeUnit.NANOSECONDS.toMicros(latencies[LOGIN_SAMPLES - 1]);
+        Log.i(TAG, "login latency during bulk write: p50=" + p50 + "us p99=" + p99 + "us max=" + max + "us");
+
+        assertTrue("bulk write finished before logins were sampled", overlapped);
+        assertTrue("login blocked by bulk write, max=" + max + "us", max < TimeUnit.MILLISECONDS.toMicros(500));
+    }
+}
@@ -0,0 +1,166 @@
+package com.surpasslike.welcomateservice.data.db;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * 验证快照是一致的副本、生成期间不阻塞写操作，以及恢复能原子地替换数据库并拒绝损坏的备份
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseBackupTest {
+    private static final String TAG = "DatabaseBackupTest";
+    private static final String DB_NAME = "users-backup-test.db";
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private File backupFile;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context,
+                new DatabaseConfig(DB_NAME, true, DatabaseConfig.SYNCHRONOUS_NORMAL, 30_000L));
+        backupFile = new File(context.getCacheDir(), "backup-test/users.db");
+        backupFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+        backupFile.delete();
+    }
+
+    @Test
+    public void snapshot_doesNotStallConcurrentWrites() throws Exception {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        insertUsers(db, 0, 100_000);
+
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread snapshotter = new Thread(() -> {
+            try {
+                new DatabaseBackup(dbHelper).snapshot(backupFile);
+            } catch (Throwable t) {
+                failure.set(t);
+            } finally {
+                done.countDown();
+            }
+        }, "snapshot-test");
+        long snapshotStart = System.nanoTime();
+        snapshotter.start();
+
+        long[] latencies = new long[200];
+        int samples = 0;
+        while (samples < latencies.length && done.getCount() == 1) {
+            long start = System.nanoTime();
+            try (SQLiteStatement insert = db.compileStatement(UserStatements.SQL_INSERT_USER)) {
+                insert.bindString(1, "writer" + samples);
+                insert.bindString(2, "writer" + samples + "@example.com");
+                insert.bindString(3, "hash");
+                assertNotEquals(-1, insert.executeInsert());
+            }
+            latencies[samples++] = System.nanoTime() - start;
+        }
+        assertTrue(done.await(120, TimeUnit.SECONDS));
+        long snapshotMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - snapshotStart);
+        assertNull(failure.get());
+
+        assertTrue("snapshot finished before writes were sampled", samples > 0);
+        long[] sampled = Arrays.copyOf(latencies, samples);
+        Arrays.sort(sampled);
+        long max = TimeUnit.NANOSECONDS.toMicros(sampled[samples - 1]);
+        Log.i(TAG, "snapshot of 100k users took " + snapshotMs + "ms; " + samples + " concurrent inserts: p50="
+                + TimeUnit.NANOSECONDS.toMicros(sampled[samples / 2]) + "us max=" + max + "us");
+        assertTrue("write stalled by snapshot, max=" + max + "us", max < TimeUnit.MILLISECONDS.toMicros(500));
+
+        // 快照是开始时刻的一致副本：包含全部原有用户，至多包含快照开始之前完成的那部分并发写入
+        try (SQLiteDatabase copy = SQLiteDatabase.openDatabase(backupFile.getPath(), null, SQLiteDatabase.OPEN_READONLY)) {
+            long count = DatabaseUtils.queryNumEntries(copy, DatabaseHelper.TABLE_USERS);
+            assertTrue("snapshot has " + count + " users", count >= 100_000 && count <= 100_000 + samples);
+        }
+    }
+
+    @Test
+    public void restore_replacesDatabase() throws Exception {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        insertUsers(db, 0, 100);
+        DatabaseBackup backup = new DatabaseBackup(dbHelper);
+        backup.snapshot(backupFile);
+        insertUsers(db, 100, 50);
+        assertEquals(150, DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_USERS));
+
+        backup.restore(backupFile);
+
+        SQLiteDatabase restored = dbHelper.getWritableDatabase();
+        assertNotSame(db, restored);
+        assertFalse(db.isOpen());
+        assertEquals(100, DatabaseUtils.queryNumEntries(restored, DatabaseHelper.TABLE_USERS));
+        assertEquals(DatabaseHelper.DATABASE_VERSION, restored.getVersion());
+        // 恢复之后的写入和全文索引照常工作
+        insertUsers(restored, 100, 1);
+        assertEquals(1, DatabaseUtils.longForQuery(restored,
+                "SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_USERS_FTS + " WHERE " + DatabaseHelper.TABLE_USERS_FTS
+                        + " MATCH 'user100'", null));
+    }
+
+    @Test
+    public void restore_rejectsCorruptBackupAndKeepsDatabase() throws Exception {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        insertUsers(db, 0, 10);
+        backupFile.getParentFile().mkdirs();
+        try (FileOutputStream out = new FileOutputStream(backupFile)) {
+            out.write("not a database".getBytes());
+        }
+
+        try {
+            new DatabaseBackup(dbHelper).restore(backupFile);
+            fail("expected corrupt backup to be rejected");
+        } catch (IOException expected) {
+            // 当前数据库保持不变
+        }
+
+        assertSame(db, dbHelper.getWritableDatabase());
+        assertEquals(10, DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_USERS));
+    }
+
+    /**
+     * 在一个事务中写入指定数量的用户，用户名和账户按从 first 开始的序号生成
+     */
+    private static void insertUsers(SQLiteDatabase db, int first, int rows) {
+        db.beginTransaction();
+        try (SQLiteStatement insert = db.compileStatement(UserStatements.SQL_INSERT_USER)) {
+            for (int i = first; i < first + rows; i++) {
+                insert.bindString(1, "user" + i);
+                insert.bindString(2, "account" + i);
+                insert.bindString(3, "hash" + i);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
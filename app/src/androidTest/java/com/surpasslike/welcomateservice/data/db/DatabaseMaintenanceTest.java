@@ -0,0 +1,99 @@
+package com.surpasslike.welcomateservice.data.db;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * 验证空闲维护能回收删除用户留下的空闲页、收集统计信息，并在有请求时暂停
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseMaintenanceTest {
+    private static final String DB_NAME = "users-maintenance-test.db";
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context,
+                new DatabaseConfig(DB_NAME, true, DatabaseConfig.SYNCHRONOUS_NORMAL, 30_000L));
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void newDatabase_usesIncrementalVacuum() {
+        assertEquals(2, pragma(dbHelper.getWritableDatabase(), "auto_vacuum"));
+    }
+
+    @Test
+    public void run_reclaimsPagesFreedByDeletesAndAnalyzes() throws Exception {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        insertUsers(db, 5_000);
+        db.execSQL("DELETE FROM users WHERE id % 10 != 0");
+        long pagesBefore = pragma(db, "page_count");
+        assertTrue(pragma(db, "freelist_count") > 0);
+
+        DatabaseMaintenance.Report report = new DatabaseMaintenance(dbHelper, 0).runNow();
+
+        assertTrue(report.toString(), report.isCompleted());
+        assertEquals(0, report.getFreePagesAfter());
+        assertTrue(report.toString(), report.getReclaimedBytes() > 0);
+        assertTrue(pragma(db, "page_count") < pagesBefore);
+        assertTrue(report.isAnalyzed());
+        assertEquals(1, DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM sqlite_master WHERE name = 'sqlite_stat1'", null));
+        assertEquals(500, DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_USERS));
+    }
+
+    @Test
+    public void run_defersWhileRequestsArrive() throws Exception {
+        DatabaseMaintenance maintenance = new DatabaseMaintenance(dbHelper, 200);
+        maintenance.noteActivity();
+
+        long start = System.nanoTime();
+        DatabaseMaintenance.Report report = maintenance.runNow();
+
+        assertTrue(report.isCompleted());
+        assertTrue(report.getDeferrals() > 0);
+        assertTrue(System.nanoTime() - start >= 200_000_000L);
+        assertSame(report, maintenance.getLastReport());
+    }
+
+    private static long pragma(SQLiteDatabase db, String name) {
+        return DatabaseUtils.longForQuery(db, "PRAGMA " + name, null);
+    }
+
+    private static void insertUsers(SQLiteDatabase db, int rows) {
+        db.beginTransaction();
+        try (SQLiteStatement insert = db.compileStatement(UserStatements.SQL_INSERT_USER)) {
+            for (int i = 0; i < rows; i++) {
+                insert.bindString(1, "user" + i);
+                insert.bindString(2, "account" + i);
+                insert.bindString(3, "hash" + i);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
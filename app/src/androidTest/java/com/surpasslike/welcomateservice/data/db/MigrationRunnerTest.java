@@ -0,0 +1,247 @@
+package com.surpasslike.welcomateservice.data.db;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * 验证分批数据迁移能保留数据、在中断后从断点继续，并且不会长时间阻塞其他写操作
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationRunnerTest {
+    private static final String TAG = "MigrationRunnerTest";
+    private static final String DB_NAME = "users-migration-test.db";
+    private static final DatabaseConfig CONFIG =
+            new DatabaseConfig(DB_NAME, true, DatabaseConfig.SYNCHRONOUS_NORMAL, 30_000L);
+    private static final int BATCH_SIZE = 100;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        if (dbHelper != null) {
+            dbHelper.close();
+        }
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void freshDatabase_hasNoPendingMigrations() {
+        dbHelper = new DatabaseHelper(context, CONFIG);
+        assertEquals(0, new MigrationRunner(dbHelper).getPendingCount());
+    }
+
+    @Test
+    public void interruptedMigration_resumesWithoutReprocessingRows() throws Exception {
+        createVersion1(1_000);
+
+        dbHelper = new DatabaseHelper(context, CONFIG, 2, Collections.singletonList(new CountVisitsMigration(3)));
+        try {
+            new MigrationRunner(dbHelper, BATCH_SIZE, 0).run(null);
+            fail("expected simulated crash");
+        } catch (IllegalStateException expected) {
+            // 模拟迁移到一半时进程被杀
+        }
+        assertEquals(1, new MigrationRunner(dbHelper).getPendingCount());
+        dbHelper.close();
+
+        dbHelper = new DatabaseHelper(context, CONFIG, 2, Collections.singletonList(new CountVisitsMigration(-1)));
+        AtomicReference<Migration> finished = new AtomicReference<>();
+        new MigrationRunner(dbHelper, BATCH_SIZE, 0).run(new MigrationRunner.ProgressListener() {
+            @Override
+            public void onBatchCompleted(Migration migration, long position, long batches) {
+                assertTrue("resumed from the beginning", batches > 3);
+            }
+
+            @Override
+            public void onMigrationFinished(Migration migration) {
+                finished.set(migration);
+            }
+        });
+
+        assertNotNull(finished.get());
+        assertEquals(0, new MigrationRunner(dbHelper).getPendingCount());
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        try (Cursor cursor = db.rawQuery("SELECT COUNT(*), MIN(visits), MAX(visits) FROM users", null)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(1_000, cursor.getInt(0));
+            assertEquals(1, cursor.getInt(1));
+            assertEquals(1, cursor.getInt(2));
+        }
+    }
+
+    @Test
+    public void migration_doesNotStallConcurrentWrites() throws Exception {
+        createVersion1(50_000);
+        dbHelper = new DatabaseHelper(context, CONFIG, 2, Collections.singletonList(new CountVisitsMigration(-1)));
+        dbHelper.getWritableDatabase();
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread migrator = new Thread(() -> {
+            try {
+                new MigrationRunner(dbHelper, 500, MigrationRunner.DEFAULT_PAUSE_MS).run(new MigrationRunner.ProgressListener() {
+                    @Override
+                    public void onBatchCompleted(Migration migration, long position, long batches) {
+                        started.countDown();
+                    }
+
+                    @Override
+                    public void onMigrationFinished(Migration migration) {
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                done.countDown();
+            }
+        }, "migration-test");
+        migrator.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        long[] latencies = new long[50];
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        for (int i = 0; i < latencies.length; i++) {
+            long start = System.nanoTime();
+            SQLiteStatement insert = db.compileStatement(UserStatements.SQL_INSERT_USER);
+            insert.bindString(1, "writer" + i);
+            insert.bindString(2, "writer" + i + "@example.com");
+            insert.bindString(3, "hash");
+            assertNotEquals(-1, insert.executeInsert());
+            insert.close();
+            latencies[i] = System.nanoTime() - start;
+        }
+        boolean overlapped = done.getCount() == 1;
+        assertTrue(done.await(120, TimeUnit.SECONDS));
+
+        Arrays.sort(latencies);
+        long max = TimeUnit.NANOSECONDS.toMicros(latencies[latencies.length - 1]);
+        Log.i(TAG, "insert latency during migration: p50=" + TimeUnit.NANOSECONDS.toMicros(latencies[latencies.length / 2])
+                + "us max=" + max + "us");
+        assertTrue("migration finished before writes were sampled", overlapped);
+        assertTrue("write stalled by migration, max=" + max + "us", max < TimeUnit.MILLISECONDS.toMicros(500));
+    }
+
+    @Test
+    public void upgradeToSearchIndex_backfillsExistingUsers() throws Exception {
+        DatabaseHelper v2 = new DatabaseHelper(context, CONFIG, 2, DatabaseHelper.MIGRATIONS.subList(0, 1));
+        insertUsers(v2.getWritableDatabase(), 0, 1_000);
+        v2.close();
+
+        dbHelper = new DatabaseHelper(context, CONFIG);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        // 回填之前插入的新用户由触发器写入索引，回填时不能重复插入
+        insertUsers(db, 1_000, 1);
+        assertEquals(1, new MigrationRunner(dbHelper).getPendingCount());
+        new MigrationRunner(dbHelper, BATCH_SIZE, 0).run(null);
+
+        assertEquals(0, new MigrationRunner(dbHelper).getPendingCount());
+        try (Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_USERS_FTS, null)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(1_001, cursor.getInt(0));
+        }
+        try (Cursor cursor = db.rawQuery(UserStatements.SQL_SEARCH, new String[]{"user999* account999*", "10"})) {
+            assertEquals(1, cursor.getCount());
+        }
+        db.execSQL("DELETE FROM users WHERE username = 'user999'");
+        try (Cursor cursor = db.rawQuery(UserStatements.SQL_SEARCH, new String[]{"user999*", "10"})) {
+            assertEquals(0, cursor.getCount());
+        }
+    }
+
+    /**
+     * 按版本 1 建库并写入指定数量的用户
+     */
+    private void createVersion1(int rows) {
+        DatabaseHelper v1 = new DatabaseHelper(context, CONFIG, 1, Collections.emptyList());
+        insertUsers(v1.getWritableDatabase(), 0, rows);
+        v1.close();
+    }
+
+    /**
+     * 在一个事务中写入指定数量的用户，用户名和账户按从 first 开始的序号生成
+     */
+    private static void insertUsers(SQLiteDatabase db, int first, int rows) {
+        db.beginTransaction();
+        try (SQLiteStatement insert = db.compileStatement(UserStatements.SQL_INSERT_USER)) {
+            for (int i = first; i < first + rows; i++) {
+                insert.bindString(1, "user" + i);
+                insert.bindString(2, "account" + i);
+                insert.bindString(3, "hash" + i);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * 测试用迁移：添加 visits 列并逐批加一，重复处理的行会得到大于 1 的值
+     */
+    private static class CountVisitsMigration extends Migration {
+        private final int failAtBatch;
+        private int batches;
+
+        /**
+         * @param failAtBatch 在第几批抛出异常以模拟崩溃，-1 表示不失败
+         */
+        CountVisitsMigration(int failAtBatch) {
+            super(2);
+            this.failAtBatch = failAtBatch;
+        }
+
+        @Override
+        public void migrateSchema(SQLiteDatabase db) {
+            db.execSQL("ALTER TABLE users ADD COLUMN visits INTEGER NOT NULL DEFAULT 0");
+        }
+
+        @Override
+        public boolean hasDataMigration() {
+            return true;
+        }
+
+        @Override
+        public long migrateBatch(SQLiteDatabase db, long afterId, int batchSize) {
+            if (++batches == failAtBatch) {
+                throw new IllegalStateException("simulated crash");
+            }
+            long last;
+            String[] args = {Long.toString(afterId), Integer.toString(batchSize)};
+            try (Cursor cursor = db.rawQuery(
+                    "SELECT MAX(id) FROM (SELECT id FROM users WHERE id > ? ORDER BY id LIMIT ?)", args)) {
+                if (!cursor.moveToFirst() || cursor.isNull(0)) {
+                    return DONE;
+                }
+                last = cursor.getLong(0);
+            }
+            db.execSQL("UPDATE users SET visits = visits + 1 WHERE id > ? AND id <= ?", new Object[]{afterId, last});
+            return last;
+        }
+    }
+}
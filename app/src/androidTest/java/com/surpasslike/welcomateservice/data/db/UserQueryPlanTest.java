@@ -0,0 +1,154 @@
+package com.surpasslike.welcomateservice.data.db;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 对用户表的每条热点语句执行 EXPLAIN QUERY PLAN，任何一条退化为全表扫描或临时排序时测试失败
+ * 以后修改表结构或 SQL 时，可以借此发现悄悄丢失的索引
+ * getAllUsers 本身就是读取整张表，不属于热点路径，不在检查范围内
+ */
+@RunWith(AndroidJUnit4.class)
+public class UserQueryPlanTest {
+    private static final String DB_NAME = "users-plan-test.db";
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context,
+                new DatabaseConfig(DB_NAME, true, DatabaseConfig.SYNCHRONOUS_NORMAL, 30_000L));
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void insertUser_doesNotScan() {
+        assertNoScan(UserStatements.SQL_INSERT_USER, "alice", "alice@example.com", "hash");
+    }
+
+    @Test
+    public void selectPasswordByAccount_usesAccountIndex() {
+        assertNoScan(UserStatements.SQL_SELECT_PASSWORD_BY_ACCOUNT, "alice@example.com");
+    }
+
+    @Test
+    public void selectUsernameByAccount_usesAccountIndex() {
+        assertNoScan(UserStatements.SQL_SELECT_USERNAME_BY_ACCOUNT, "alice@example.com");
+    }
+
+    @Test
+    public void deleteByUsername_usesUsernameIndex() {
+        assertUsesIndex(UserStatements.SQL_DELETE_BY_USERNAME, DatabaseHelper.INDEX_USERS_USERNAME, "alice");
+    }
+
+    @Test
+    public void updatePasswordByUsername_usesUsernameIndex() {
+        assertUsesIndex(UserStatements.SQL_UPDATE_PASSWORD_BY_USERNAME, DatabaseHelper.INDEX_USERS_USERNAME, "hash", "alice");
+    }
+
+    @Test
+    public void replacePasswordByAccount_usesAccountIndex() {
+        assertNoScan(UserStatements.SQL_REPLACE_PASSWORD_BY_ACCOUNT, "new", "alice@example.com", "old");
+    }
+
+    @Test
+    public void selectPage_usesPrimaryKey() {
+        assertNoScan(UserStatements.SQL_SELECT_PAGE, "0", "51");
+    }
+
+    @Test
+    public void selectById_usesPrimaryKey() {
+        assertNoScan(UserStatements.SQL_SELECT_BY_ID, "1");
+    }
+
+    @Test
+    public void selectByIds_usesPrimaryKey() {
+        assertNoScan(UserStatements.selectByIdsSql(3), "1", "2", "3");
+    }
+
+    @Test
+    public void search_usesFullTextIndexAndPrimaryKey() {
+        List<String> plan = explain(UserStatements.SQL_SEARCH, "ali*", "51");
+        boolean fullText = false;
+        for (String detail : plan) {
+            // 全文表本身总是以虚拟表索引的方式“扫描”，用户表必须按主键查找
+            fullText |= detail.contains("VIRTUAL TABLE INDEX");
+            assertFalse("users scanned in plan " + plan, detail.startsWith("SCAN u"));
+        }
+        assertTrue("full-text index not used in plan " + plan, fullText);
+    }
+
+    @Test
+    public void upgradeFromVersion1_keepsDataAndAddsIndex() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+        // 按版本 1 的结构手动建库
+        try (SQLiteDatabase v1 = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(DB_NAME), null)) {
+            v1.execSQL("CREATE TABLE users (id INTEGER PRIMARY KEY AUTOINCREMENT, username TEXT, account TEXT UNIQUE, password TEXT)");
+            v1.execSQL("INSERT INTO users (username, account, password) VALUES ('alice', 'alice@example.com', 'hash')");
+            v1.setVersion(1);
+        }
+
+        dbHelper = new DatabaseHelper(context,
+                new DatabaseConfig(DB_NAME, true, DatabaseConfig.SYNCHRONOUS_NORMAL, 30_000L));
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        assertEquals(DatabaseHelper.DATABASE_VERSION, db.getVersion());
+        try (Cursor cursor = db.rawQuery("SELECT username FROM users WHERE account = ?", new String[]{"alice@example.com"})) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("alice", cursor.getString(0));
+        }
+        assertUsesIndex(UserStatements.SQL_DELETE_BY_USERNAME, DatabaseHelper.INDEX_USERS_USERNAME, "alice");
+    }
+
+    private void assertNoScan(String sql, String... args) {
+        List<String> plan = explain(sql, args);
+        for (String detail : plan) {
+            assertFalse("full table scan in plan " + plan + " for: " + sql, detail.startsWith("SCAN"));
+            assertFalse("temporary sort in plan " + plan + " for: " + sql, detail.contains("TEMP B-TREE"));
+        }
+    }
+
+    private void assertUsesIndex(String sql, String index, String... args) {
+        assertNoScan(sql, args);
+        List<String> plan = explain(sql, args);
+        boolean found = false;
+        for (String detail : plan) {
+            found |= detail.contains(index);
+        }
+        assertTrue("index " + index + " not used in plan " + plan + " for: " + sql, found);
+    }
+
+    private List<String> explain(String sql, String... args) {
+        List<String> details = new ArrayList<>();
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        try (Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args)) {
+            int column = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                details.add(cursor.getString(column));
+            }
+        }
+        return details;
+    }
+}
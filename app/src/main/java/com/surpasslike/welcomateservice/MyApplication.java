@@ -3,6 +3,9 @@ package com.surpasslike.welcomateservice;
 import android.annotation.SuppressLint;
 import android.app.Application;
 import android.content.Context;
+import android.os.Trace;
+
+import com.surpasslike.welcomateservice.data.UserRepository;
 
 public class MyApplication extends Application {
     @SuppressLint("StaticFieldLeak")
@@ -11,7 +14,14 @@ public class MyApplication extends Application {
     @Override
     public void onCreate() {
         super.onCreate();
-        context = getApplicationContext();
+        Trace.beginSection("MyApplication.onCreate");
+        try {
+            context = getApplicationContext();
+            // 在后台打开并预热数据库，服务进程的第一次登录或界面的第一次查询只需等待预热完成
+            UserRepository.prewarm();
+        } finally {
+            Trace.endSection();
+        }
     }
 
     public static Context getContext() {
@@ -1,22 +1,283 @@
 package com.surpasslike.welcomateservice.aidl;
 
+import android.os.Binder;
+import android.os.RemoteCallbackList;
+import android.os.RemoteException;
+import android.os.ServiceSpecificException;
+import android.util.Log;
+
+import com.surpasslike.welcomateservice.IAdminCallback;
 import com.surpasslike.welcomateservice.IAdminService;
+import com.surpasslike.welcomateservice.IUserChangeListener;
+import com.surpasslike.welcomateservice.data.ChangeCoalescer;
+import com.surpasslike.welcomateservice.data.HashPoolBusyException;
 import com.surpasslike.welcomateservice.data.UserRepository;
+import com.surpasslike.welcomateservice.data.db.DatabaseMaintenance;
+import com.surpasslike.welcomateservice.data.model.AdminSession;
+import com.surpasslike.welcomateservice.data.model.User;
+import com.surpasslike.welcomateservice.data.model.UserChange;
+import com.surpasslike.welcomateservice.data.model.UserInfo;
+import com.surpasslike.welcomateservice.data.model.UserPage;
+import com.surpasslike.welcomateservice.data.model.UserRecord;
+import com.surpasslike.welcomateservice.data.model.UserSnapshot;
+import com.surpasslike.welcomateservice.metrics.MethodMetrics;
+import com.surpasslike.welcomateservice.metrics.Metrics;
+import com.surpasslike.welcomateservice.security.CallerRateLimiter;
+import com.surpasslike.welcomateservice.security.CallerRateLimiter.Category;
+import com.surpasslike.welcomateservice.security.LoginThrottle;
+import com.surpasslike.welcomateservice.security.SessionManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * AIDL 接口 IAdminService 的具体实现
  * 此类处理所有客户端通过 AIDL 请求的业务逻辑，包括用户认证和管理
  * 它将所有数据操作委托给 UserRepository
  * 注意：此类中的方法将在 Binder 线程池中执行
+ * 每个方法的调用次数、失败次数和延迟分布记录在 {@link Metrics} 中，可通过 dumpsys 查看
+ * 每次调用先按调用方 UID 进行限流，超过限额时立即抛出错误码为 {@link #ERROR_RATE_LIMITED} 的 ServiceSpecificException
+ * 登录失败过多的账户或调用方会被暂时封禁，封禁期间抛出错误码为 {@link #ERROR_LOGIN_THROTTLED} 的 ServiceSpecificException
+ * 密码哈希线程池已满时抛出错误码为 {@link #ERROR_BUSY} 的 ServiceSpecificException，不计入登录失败
+ * 带令牌的方法只在内存中校验会话，不再计算密码哈希；删除用户或修改密码后，该用户已有的会话全部失效
+ * 以 Async 结尾的单向方法在 Binder 线程上只做限流检查和入队，实际工作在有界的工作线程池中执行，结果通过 IAdminCallback 通知
+ * 用户变更由 UserRepository 合并成批次后，通过 RemoteCallbackList 广播给所有已注册的 IUserChangeListener
  */
 public class AdminApiImpl extends IAdminService.Stub {
+    private static final String TAG = "AdminApiImpl";
+
+    /**
+     * 异步工作线程数，与 CPU 核数一致，主要耗时在密码哈希上
+     */
+    private static final int ASYNC_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 异步请求队列容量，队列满时以 {@link #ERROR_BUSY} 立即拒绝
+     */
+    private static final int ASYNC_QUEUE_CAPACITY = 256;
+
+    /**
+     * 关闭时等待已入队的异步请求执行完的最长时间（毫秒）
+     */
+    private static final long SHUTDOWN_TIMEOUT_MS = 5_000;
+
+    private static final MethodMetrics LOGIN_METRICS = Metrics.register("IAdminService.loginAdmin");
+    private static final MethodMetrics REGISTER_METRICS = Metrics.register("IAdminService.registerUser");
+    private static final MethodMetrics DELETE_METRICS = Metrics.register("IAdminService.deleteUser");
+    private static final MethodMetrics UPDATE_PASSWORD_METRICS = Metrics.register("IAdminService.updateUserPassword");
+    private static final MethodMetrics REGISTER_BATCH_METRICS = Metrics.register("IAdminService.registerUsers");
+    private static final MethodMetrics USERS_PAGE_METRICS = Metrics.register("IAdminService.getUsersPage");
+    private static final MethodMetrics GET_USER_METRICS = Metrics.register("IAdminService.getUser");
+    private static final MethodMetrics GET_USERS_BY_IDS_METRICS = Metrics.register("IAdminService.getUsersByIds");
+    private static final MethodMetrics SEARCH_METRICS = Metrics.register("IAdminService.searchUsers");
+    private static final MethodMetrics EXPORT_METRICS = Metrics.register("IAdminService.exportUsers");
+    private static final MethodMetrics LOGIN_SESSION_METRICS = Metrics.register("IAdminService.loginAdminSession");
+    private static final MethodMetrics LOGOUT_METRICS = Metrics.register("IAdminService.logout");
+    private static final MethodMetrics DELETE_TOKEN_METRICS = Metrics.register("IAdminService.deleteUserWithToken");
+    private static final MethodMetrics UPDATE_PASSWORD_TOKEN_METRICS = Metrics.register("IAdminService.updateUserPasswordWithToken");
+    private static final MethodMetrics USERS_PAGE_TOKEN_METRICS = Metrics.register("IAdminService.getUsersPageWithToken");
+    private static final MethodMetrics REGISTER_ASYNC_METRICS = Metrics.register("IAdminService.registerUserAsync");
+    private static final MethodMetrics DELETE_ASYNC_METRICS = Metrics.register("IAdminService.deleteUserAsync");
+    private static final MethodMetrics UPDATE_PASSWORD_ASYNC_METRICS = Metrics.register("IAdminService.updateUserPasswordAsync");
+    private static final MethodMetrics REGISTER_LISTENER_METRICS = Metrics.register("IAdminService.registerUserChangeListener");
+    private static final MethodMetrics UNREGISTER_LISTENER_METRICS = Metrics.register("IAdminService.unregisterUserChangeListener");
+    private static final MethodMetrics BROADCAST_METRICS = Metrics.register("IUserChangeListener.broadcast");
+
     private final UserRepository userRepository;
+    private final DatabaseMaintenance maintenance;
+    private final CallerRateLimiter rateLimiter;
+    private final LoginThrottle loginThrottle;
+    private final SessionManager sessionManager;
+    private final ExecutorService asyncExecutor = newAsyncExecutor();
+    private final RemoteCallbackList<IUserChangeListener> changeListeners = new RemoteCallbackList<>();
+    private final ChangeCoalescer.Listener<UserChange> changeForwarder = this::broadcastChanges;
 
     /**
-     * 构造函数，初始化用户仓库
+     * 构造函数，初始化用户仓库，使用默认限额、登录封禁策略和会话有效期
      */
     public AdminApiImpl() {
-        this.userRepository = UserRepository.getInstance();
+        this(UserRepository.getInstance(), new CallerRateLimiter(), new LoginThrottle(), new SessionManager());
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param userRepository 用户仓库
+     * @param rateLimiter    按调用方 UID 的限流器
+     * @param loginThrottle  登录失败跟踪
+     * @param sessionManager 会话管理
+     */
+    public AdminApiImpl(UserRepository userRepository, CallerRateLimiter rateLimiter, LoginThrottle loginThrottle,
+                        SessionManager sessionManager) {
+        this.userRepository = userRepository;
+        this.maintenance = userRepository.getMaintenance();
+        this.rateLimiter = rateLimiter;
+        this.loginThrottle = loginThrottle;
+        this.sessionManager = sessionManager;
+        userRepository.addChangeListener(changeForwarder);
+    }
+
+    /**
+     * 创建执行异步请求的有界线程池
+     */
+    private static ExecutorService newAsyncExecutor() {
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "admin-async-" + count.incrementAndGet());
+            }
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(ASYNC_THREADS, ASYNC_THREADS,
+                30L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(ASYNC_QUEUE_CAPACITY), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 停止接收异步请求，在服务销毁时调用，立即返回
+     * 之后到达的异步请求以 {@link #ERROR_BUSY} 拒绝；已入队的请求在后台线程上执行完，再等待写后队列中的写操作落盘，
+     * 调用方（主线程）不等待这些工作，仓库是进程内的单例，排队的写操作不会因服务销毁而丢失
+     *
+     * @return 已入队的请求和写后队列都处理完时完成
+     */
+    public CompletableFuture<Void> shutdown() {
+        asyncExecutor.shutdown();
+        return CompletableFuture.runAsync(() -> {
+            try {
+                if (!asyncExecutor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    Log.w(TAG, "Async requests still running after " + SHUTDOWN_TIMEOUT_MS + "ms, shutting down anyway.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            userRepository.flushPendingWrites();
+            userRepository.removeChangeListener(changeForwarder);
+            changeListeners.kill();
+        }, r -> new Thread(r, "admin-shutdown").start());
+    }
+
+    /**
+     * 用快照替换数据库，新库打开后、其他访问恢复之前使所有会话失效
+     *
+     * @param source 由 {@link UserRepository#backupTo(File)} 生成的快照
+     * @throws IOException 快照无法使用，此时当前数据库和会话保持不变
+     */
+    public void restoreFrom(File source) throws IOException {
+        userRepository.restoreFrom(source, sessionManager::invalidateAll);
+    }
+
+    /**
+     * 获取已注册的变更监听器数量，用于输出统计
+     *
+     * @return 监听器数量
+     */
+    public int getChangeListenerCount() {
+        return changeListeners.getRegisteredCallbackCount();
+    }
+
+    /**
+     * 获取会话管理，用于输出统计
+     *
+     * @return 会话管理
+     */
+    public SessionManager getSessionManager() {
+        return sessionManager;
+    }
+
+    /**
+     * 获取登录失败跟踪，用于输出统计
+     *
+     * @return 登录失败跟踪
+     */
+    public LoginThrottle getLoginThrottle() {
+        return loginThrottle;
+    }
+
+    /**
+     * 获取限流器，用于输出统计
+     *
+     * @return 限流器
+     */
+    public CallerRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * 为当前 Binder 调用方获取令牌，超过限额时立即拒绝
+     *
+     * @param category 方法类别
+     * @param permits  需要的令牌数
+     * @throws ServiceSpecificException 错误码为 {@link #ERROR_RATE_LIMITED}
+     */
+    private void admit(Category category, int permits) {
+        maintenance.noteActivity();
+        if (!rateLimiter.tryAcquire(Binder.getCallingUid(), category, permits)) {
+            throw new ServiceSpecificException(ERROR_RATE_LIMITED, category + " rate limit exceeded");
+        }
+    }
+
+    /**
+     * 校验当前调用方的会话令牌
+     *
+     * @param token 会话令牌
+     * @return 有效的会话
+     * @throws SecurityException 令牌无效、已过期或不属于当前调用方
+     */
+    private SessionManager.Session requireSession(String token) {
+        SessionManager.Session session = sessionManager.validate(token, Binder.getCallingUid());
+        if (session == null) {
+            throw new SecurityException("Invalid or expired session token");
+        }
+        return session;
+    }
+
+    /**
+     * 把哈希线程池已满转换为 {@link #ERROR_BUSY}，客户端据此重试，而不是当作密码错误或注册失败
+     */
+    private static ServiceSpecificException busy(HashPoolBusyException e) {
+        return new ServiceSpecificException(ERROR_BUSY, e.getMessage());
+    }
+
+    /**
+     * 限流、检查登录封禁后验证账户和密码，并记录结果
+     * 哈希线程池已满时没有验证密码，不计入登录失败
+     *
+     * @return 如果登录成功，返回用户名；否则返回 null
+     * @throws ServiceSpecificException 哈希线程池已满时错误码为 {@link #ERROR_BUSY}
+     */
+    private String authenticate(String account, String password, int uid) {
+        admit(Category.LOGIN, 1);
+        // 在计算哈希和查询数据库之前拒绝被封禁的请求
+        long retryAfterMs = loginThrottle.checkAllowed(account, uid);
+        if (retryAfterMs > 0) {
+            throw new ServiceSpecificException(ERROR_LOGIN_THROTTLED, "Too many failed logins, retry after " + retryAfterMs + " ms");
+        }
+        String username;
+        try {
+            username = userRepository.loginAdmin(account, password);
+        } catch (HashPoolBusyException e) {
+            throw busy(e);
+        }
+        if (username != null) {
+            loginThrottle.recordSuccess(account);
+        } else {
+            loginThrottle.recordFailure(account, uid);
+        }
+        return username;
     }
 
     /**
@@ -25,10 +286,44 @@ public class AdminApiImpl extends IAdminService.Stub {
      * @param account  用户输入的账户
      * @param password 用户输入的原始密码
      * @return 如果登录成功，返回用户名；否则返回 null
+     * @throws ServiceSpecificException 该账户或调用方因失败次数过多被暂时封禁时，错误码为 {@link #ERROR_LOGIN_THROTTLED}
+     *                                  密码哈希线程池已满时，错误码为 {@link #ERROR_BUSY}
      */
     @Override
     public String loginAdmin(String account, String password) {
-        return userRepository.loginAdmin(account, password);
+        return LOGIN_METRICS.time(() -> authenticate(account, password, Binder.getCallingUid()));
+    }
+
+    /**
+     * 验证管理员登录并创建会话
+     *
+     * @param account  用户输入的账户
+     * @param password 用户输入的原始密码
+     * @return 如果登录成功，返回包含令牌的会话；否则返回 null
+     * @throws ServiceSpecificException 该账户或调用方因失败次数过多被暂时封禁时，错误码为 {@link #ERROR_LOGIN_THROTTLED}
+     *                                  密码哈希线程池已满时，错误码为 {@link #ERROR_BUSY}
+     */
+    @Override
+    public AdminSession loginAdminSession(String account, String password) {
+        return LOGIN_SESSION_METRICS.time(() -> {
+            int uid = Binder.getCallingUid();
+            String username = authenticate(account, password, uid);
+            if (username == null) {
+                return null;
+            }
+            SessionManager.Session session = sessionManager.create(username, account, uid);
+            return new AdminSession(session.getToken(), username, sessionManager.getTtlMs());
+        });
+    }
+
+    /**
+     * 注销会话，令牌立即失效
+     *
+     * @param token 会话令牌
+     */
+    @Override
+    public void logout(String token) {
+        LOGOUT_METRICS.run(() -> sessionManager.invalidate(token, Binder.getCallingUid()));
     }
 
     /**
@@ -38,11 +333,18 @@ public class AdminApiImpl extends IAdminService.Stub {
      * @param account  账户
      * @param password 原始密码
      * @return 如果注册成功，返回 true；否则返回 false
+     * @throws ServiceSpecificException 密码哈希线程池已满时，错误码为 {@link #ERROR_BUSY}
      */
     @Override
     public boolean registerUser(String username, String account, String password) {
-        long rowId = userRepository.addUser(username, account, password);
-        return rowId != -1;
+        return REGISTER_METRICS.time(() -> {
+            admit(Category.WRITE, 1);
+            try {
+                return userRepository.addUser(username, account, password) != -1;
+            } catch (HashPoolBusyException e) {
+                throw busy(e);
+            }
+        });
     }
 
     /**
@@ -52,7 +354,11 @@ public class AdminApiImpl extends IAdminService.Stub {
      */
     @Override
     public void deleteUser(String username) {
-        userRepository.deleteUser(username);
+        DELETE_METRICS.run(() -> {
+            admit(Category.WRITE, 1);
+            userRepository.deleteUser(username);
+            sessionManager.invalidateUser(username);
+        });
     }
 
     /**
@@ -60,9 +366,372 @@ public class AdminApiImpl extends IAdminService.Stub {
      *
      * @param username    要更新密码的用户的用户名
      * @param newPassword 新的原始密码
+     * @throws ServiceSpecificException 密码哈希线程池已满时错误码为 {@link #ERROR_BUSY}，哈希或写入失败时为 {@link #ERROR_INTERNAL}，
+     *                                  两种情况下旧密码和已有会话都保持有效
      */
     @Override
     public void updateUserPassword(String username, String newPassword) {
-        userRepository.updateUserPassword(username, newPassword);
+        UPDATE_PASSWORD_METRICS.run(() -> {
+            admit(Category.WRITE, 1);
+            updatePassword(username, newPassword);
+        });
+    }
+
+    /**
+     * 更新密码并等待写入完成，成功后才使该用户的会话失效
+     * 写后模式下等待所在的批次提交，同一时刻的多个改密仍然合并在一个事务中
+     *
+     * @throws ServiceSpecificException 密码哈希线程池已满时错误码为 {@link #ERROR_BUSY}，其他失败为 {@link #ERROR_INTERNAL}
+     */
+    private void updatePassword(String username, String newPassword) {
+        Throwable cause;
+        try {
+            userRepository.submitUpdateUserPassword(username, newPassword).join();
+            sessionManager.invalidateUser(username);
+            return;
+        } catch (CompletionException e) {
+            cause = e.getCause() != null ? e.getCause() : e;
+        } catch (RuntimeException e) {
+            // 同步模式下写入失败直接抛出，不经过 future
+            cause = e;
+        }
+        if (cause instanceof HashPoolBusyException) {
+            throw busy((HashPoolBusyException) cause);
+        }
+        Log.e(TAG, "Password update for " + username + " failed", cause);
+        throw new ServiceSpecificException(ERROR_INTERNAL, cause.toString());
+    }
+
+    /**
+     * 批量注册用户
+     * 整批在一个数据库事务中完成，客户端只需一次 Binder 调用
+     * 按行数从单独的 {@link Category#BATCH} 限额中计费，不占用单个写操作的限额；
+     * 超过突发上限的批量只在该限额完全恢复时被允许，之后的批量注册要等欠下的行数按速率补回
+     *
+     * @param users 要注册的用户记录列表
+     * @return 与输入一一对应的结果数组，true 表示该行注册成功
+     */
+    @Override
+    public boolean[] registerUsers(List<UserRecord> users) {
+        return REGISTER_BATCH_METRICS.time(() -> {
+            // 每一行都要计算一次哈希，按行数计费
+            admit(Category.BATCH, users != null ? users.size() : 1);
+            long[] rowIds = userRepository.addUsers(users != null ? users : Collections.<UserRecord>emptyList());
+            boolean[] results = new boolean[rowIds.length];
+            for (int i = 0; i < rowIds.length; i++) {
+                results[i] = rowIds[i] != -1;
+            }
+            return results;
+        });
+    }
+
+    /**
+     * 按 ID 分页获取用户列表
+     *
+     * @param afterId  从此 ID 之后开始（不含），第一页传 0
+     * @param pageSize 页大小
+     * @return 一页用户数据，不包含密码
+     */
+    @Override
+    public UserPage getUsersPage(long afterId, int pageSize) {
+        return USERS_PAGE_METRICS.time(() -> {
+            admit(Category.READ, 1);
+            return userRepository.getUsersPage(afterId, pageSize);
+        });
+    }
+
+    /**
+     * 按 ID 获取用户
+     *
+     * @param id 用户 ID
+     * @return 用户信息，不包含密码；不存在时返回 null
+     */
+    @Override
+    public UserInfo getUser(long id) {
+        return GET_USER_METRICS.time(() -> {
+            admit(Category.READ, 1);
+            User user = userRepository.getUser(id);
+            return user != null ? UserInfo.of(user) : null;
+        });
+    }
+
+    /**
+     * 按一组 ID 批量获取用户
+     *
+     * @param ids 用户 ID，最多 {@link UserRepository#MAX_PAGE_SIZE} 个
+     * @return 按 ID 升序的用户信息，不存在的 ID 被跳过
+     * @throws IllegalArgumentException ID 过多
+     */
+    @Override
+    public List<UserInfo> getUsersByIds(long[] ids) {
+        return GET_USERS_BY_IDS_METRICS.time(() -> {
+            admit(Category.READ, 1);
+            List<User> users = userRepository.getUsersByIds(ids);
+            List<UserInfo> result = new ArrayList<>(users.size());
+            for (User user : users) {
+                result.add(UserInfo.of(user));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * 按用户名和账户搜索用户
+     *
+     * @param query 搜索文本，每个词按前缀匹配
+     * @param limit 最多返回的数量
+     * @return 匹配的用户，不包含密码
+     */
+    @Override
+    public UserPage searchUsers(String query, int limit) {
+        return SEARCH_METRICS.time(() -> {
+            admit(Category.READ, 1);
+            return userRepository.searchUsers(query, limit);
+        });
+    }
+
+    /**
+     * 注册用户变更监听器，同一个监听器重复注册只生效一次
+     * 监听器所在进程退出后由 RemoteCallbackList 自动移除
+     *
+     * @param listener 客户端实现的监听器
+     */
+    @Override
+    public void registerUserChangeListener(IUserChangeListener listener) {
+        REGISTER_LISTENER_METRICS.run(() -> {
+            admit(Category.READ, 1);
+            if (listener == null) {
+                throw new IllegalArgumentException("listener must not be null");
+            }
+            changeListeners.register(listener, Binder.getCallingUid());
+        });
+    }
+
+    /**
+     * 注销用户变更监听器，未注册的监听器直接忽略
+     *
+     * @param listener 之前注册的监听器
+     */
+    @Override
+    public void unregisterUserChangeListener(IUserChangeListener listener) {
+        UNREGISTER_LISTENER_METRICS.run(() -> {
+            if (listener != null) {
+                changeListeners.unregister(listener);
+            }
+        });
+    }
+
+    /**
+     * 把一批变更广播给所有客户端，在 UserRepository 的合并线程上调用
+     * 监听器是单向接口，广播不会等待客户端处理；客户端已死亡的调用直接跳过
+     */
+    private void broadcastChanges(List<UserChange> changes, boolean overflow) {
+        int count = changeListeners.beginBroadcast();
+        try {
+            BROADCAST_METRICS.run(() -> {
+                for (int i = 0; i < count; i++) {
+                    try {
+                        changeListeners.getBroadcastItem(i).onUsersChanged(changes, overflow);
+                    } catch (RemoteException e) {
+                        Log.w(TAG, "Failed to deliver user changes", e);
+                    }
+                }
+            });
+        } finally {
+            changeListeners.finishBroadcast();
+        }
+    }
+
+    /**
+     * 通过只读共享内存导出全部用户
+     * 返回的只是共享内存的文件描述符，10 万用户也只需一次调用，不会触发 TransactionTooLargeException
+     *
+     * @param knownVersion 客户端已持有的快照版本，首次调用传 0
+     * @return 最新的快照，不包含密码；客户端的版本已是最新时返回 null
+     */
+    @Override
+    public UserSnapshot exportUsers(long knownVersion) {
+        return EXPORT_METRICS.time(() -> {
+            admit(Category.READ, 1);
+            return userRepository.exportUsers(knownVersion);
+        });
+    }
+
+    /**
+     * 凭会话令牌删除一个用户
+     *
+     * @param token    会话令牌
+     * @param username 要删除的用户的用户名
+     * @throws SecurityException 令牌无效或已过期
+     */
+    @Override
+    public void deleteUserWithToken(String token, String username) {
+        DELETE_TOKEN_METRICS.run(() -> {
+            admit(Category.WRITE, 1);
+            requireSession(token);
+            userRepository.deleteUser(username);
+            sessionManager.invalidateUser(username);
+        });
+    }
+
+    /**
+     * 凭会话令牌更新指定用户的密码
+     *
+     * @param token       会话令牌
+     * @param username    要更新密码的用户的用户名
+     * @param newPassword 新的原始密码
+     * @throws SecurityException        令牌无效或已过期
+     * @throws ServiceSpecificException 密码哈希线程池已满时错误码为 {@link #ERROR_BUSY}，哈希或写入失败时为 {@link #ERROR_INTERNAL}
+     */
+    @Override
+    public void updateUserPasswordWithToken(String token, String username, String newPassword) {
+        UPDATE_PASSWORD_TOKEN_METRICS.run(() -> {
+            admit(Category.WRITE, 1);
+            requireSession(token);
+            updatePassword(username, newPassword);
+        });
+    }
+
+    /**
+     * 凭会话令牌按 ID 分页获取用户列表
+     *
+     * @param token    会话令牌
+     * @param afterId  从此 ID 之后开始（不含），第一页传 0
+     * @param pageSize 页大小
+     * @return 一页用户数据，不包含密码
+     * @throws SecurityException 令牌无效或已过期
+     */
+    @Override
+    public UserPage getUsersPageWithToken(String token, long afterId, int pageSize) {
+        return USERS_PAGE_TOKEN_METRICS.time(() -> {
+            admit(Category.READ, 1);
+            requireSession(token);
+            return userRepository.getUsersPage(afterId, pageSize);
+        });
+    }
+
+    /**
+     * 异步注册一个新用户，结果为是否注册成功；密码哈希线程池已满时以 {@link #ERROR_BUSY} 通知，而不是注册失败
+     *
+     * @param requestId 客户端指定的请求 ID，原样返回给回调
+     * @param username  用户名
+     * @param account   账户
+     * @param password  原始密码
+     * @param callback  结果回调，可以为 null
+     */
+    @Override
+    public void registerUserAsync(int requestId, String username, String account, String password, IAdminCallback callback) {
+        runAsync(REGISTER_ASYNC_METRICS, requestId, callback,
+                () -> CompletableFuture.completedFuture(userRepository.addUser(username, account, password) != -1));
+    }
+
+    /**
+     * 异步删除一个用户
+     *
+     * @param requestId 客户端指定的请求 ID，原样返回给回调
+     * @param username  要删除的用户的用户名
+     * @param callback  结果回调，可以为 null
+     */
+    @Override
+    public void deleteUserAsync(int requestId, String username, IAdminCallback callback) {
+        runAsync(DELETE_ASYNC_METRICS, requestId, callback, () -> {
+            CompletableFuture<Void> durable = userRepository.submitDeleteUser(username);
+            sessionManager.invalidateUser(username);
+            return durable.thenApply(ignored -> true);
+        });
+    }
+
+    /**
+     * 异步更新指定用户的密码
+     *
+     * @param requestId   客户端指定的请求 ID，原样返回给回调
+     * @param username    要更新密码的用户的用户名
+     * @param newPassword 新的原始密码
+     * @param callback    结果回调，可以为 null
+     */
+    @Override
+    public void updateUserPasswordAsync(int requestId, String username, String newPassword, IAdminCallback callback) {
+        runAsync(UPDATE_PASSWORD_ASYNC_METRICS, requestId, callback, () -> {
+            // 改密失败时旧密码仍然有效，会话只在写入成功后失效
+            return userRepository.submitUpdateUserPassword(username, newPassword).thenApply(ignored -> {
+                sessionManager.invalidateUser(username);
+                return true;
+            });
+        });
+    }
+
+    /**
+     * 异步执行的写操作，返回的 future 在写入持久化后完成
+     * 写后模式下删除和改密只是入队，工作线程不必等待事务提交
+     */
+    private interface AsyncOperation {
+        CompletableFuture<Boolean> run();
+    }
+
+    /**
+     * 在 Binder 线程上限流并入队，随即返回；操作在工作线程中执行，写入持久化后回调结果
+     * 单向调用无法向客户端抛出异常，所有失败都通过 {@link IAdminCallback#onError} 通知：
+     * 限流为 {@link #ERROR_RATE_LIMITED}，队列已满、服务正在关闭或密码哈希线程池已满为 {@link #ERROR_BUSY}，其他异常为 {@link #ERROR_INTERNAL}
+     * 延迟统计从入队开始计算，到持久化为止
+     */
+    private void runAsync(MethodMetrics metrics, int requestId, IAdminCallback callback, AsyncOperation operation) {
+        long start = System.nanoTime();
+        maintenance.noteActivity();
+        // 调用方 UID 只能在 Binder 线程上获取
+        if (!rateLimiter.tryAcquire(Binder.getCallingUid(), Category.WRITE, 1)) {
+            metrics.record(start, false);
+            notifyError(callback, requestId, ERROR_RATE_LIMITED, "WRITE rate limit exceeded");
+            return;
+        }
+        try {
+            asyncExecutor.execute(() -> {
+                CompletableFuture<Boolean> result;
+                try {
+                    result = operation.run();
+                } catch (RuntimeException e) {
+                    result = new CompletableFuture<>();
+                    result.completeExceptionally(e);
+                }
+                result.whenComplete((value, error) -> {
+                    metrics.record(start, error == null);
+                    if (error == null) {
+                        notifyComplete(callback, requestId, value);
+                        return;
+                    }
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (cause instanceof HashPoolBusyException) {
+                        notifyError(callback, requestId, ERROR_BUSY, cause.getMessage());
+                    } else {
+                        Log.e(TAG, "Async request " + requestId + " failed", error);
+                        notifyError(callback, requestId, ERROR_INTERNAL, cause.toString());
+                    }
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            metrics.record(start, false);
+            notifyError(callback, requestId, ERROR_BUSY, "Async queue is full");
+        }
+    }
+
+    private static void notifyComplete(IAdminCallback callback, int requestId, boolean success) {
+        if (callback == null) {
+            return;
+        }
+        try {
+            callback.onComplete(requestId, success);
+        } catch (RemoteException e) {
+            Log.w(TAG, "Client died before receiving result of request " + requestId);
+        }
+    }
+
+    private static void notifyError(IAdminCallback callback, int requestId, int errorCode, String message) {
+        if (callback == null) {
+            return;
+        }
+        try {
+            callback.onError(requestId, errorCode, message);
+        } catch (RemoteException e) {
+            Log.w(TAG, "Client died before receiving error of request " + requestId);
+        }
     }
 }
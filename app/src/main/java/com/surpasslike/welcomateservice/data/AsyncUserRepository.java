@@ -0,0 +1,147 @@
+package com.surpasslike.welcomateservice.data;
+
+import com.surpasslike.welcomateservice.data.model.User;
+import com.surpasslike.welcomateservice.data.model.UserChange;
+import com.surpasslike.welcomateservice.data.model.UserPage;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * UserRepository 的异步版本
+ * 所有数据库操作都在一个专用的后台线程上按提交顺序执行，结果以 CompletableFuture 返回，
+ * 供 UI 层使用，保证主线程不会因为 SQLite 或密码哈希而阻塞
+ * 单线程执行保证了“先写后读”的顺序，例如添加用户后立即刷新列表一定能看到新用户
+ * 这是一个单例，与 UserRepository 共享同一个数据源
+ */
+public class AsyncUserRepository {
+    private final UserRepository userRepository;
+    private final ExecutorService dbExecutor;
+
+    // 单例模式实现
+    private static volatile AsyncUserRepository INSTANCE;
+
+    /**
+     * 构造函数
+     *
+     * @param userRepository 同步仓库
+     * @param dbExecutor     执行数据库操作的线程池
+     */
+    public AsyncUserRepository(UserRepository userRepository, ExecutorService dbExecutor) {
+        this.userRepository = userRepository;
+        this.dbExecutor = dbExecutor;
+    }
+
+    /**
+     * 获取 AsyncUserRepository 的单例
+     *
+     * @return AsyncUserRepository 的唯一实例
+     */
+    public static AsyncUserRepository getInstance() {
+        if (INSTANCE == null) {
+            synchronized (AsyncUserRepository.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new AsyncUserRepository(UserRepository.getInstance(),
+                            Executors.newSingleThreadExecutor(r -> new Thread(r, "user-db")));
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * 添加用户变更的监听器，见 {@link UserRepository#addChangeListener(ChangeCoalescer.Listener)}
+     *
+     * @param listener 监听器，在合并线程上调用
+     */
+    public void addChangeListener(ChangeCoalescer.Listener<UserChange> listener) {
+        userRepository.addChangeListener(listener);
+    }
+
+    /**
+     * 移除用户变更的监听器
+     *
+     * @param listener 监听器
+     */
+    public void removeChangeListener(ChangeCoalescer.Listener<UserChange> listener) {
+        userRepository.removeChangeListener(listener);
+    }
+
+    /**
+     * 异步验证管理员登录
+     *
+     * @param account  用户输入的账户
+     * @param password 用户输入的原始密码
+     * @return 登录成功时完成为用户名，否则完成为 null
+     */
+    public CompletableFuture<String> loginAdmin(String account, String password) {
+        return CompletableFuture.supplyAsync(() -> userRepository.loginAdmin(account, password), dbExecutor);
+    }
+
+    /**
+     * 异步添加新用户
+     *
+     * @param username 用户名
+     * @param account  账户
+     * @param password 原始密码
+     * @return 完成为新插入行的行 ID，失败时为 -1
+     */
+    public CompletableFuture<Long> addUser(String username, String account, String password) {
+        return CompletableFuture.supplyAsync(() -> userRepository.addUser(username, account, password), dbExecutor);
+    }
+
+    /**
+     * 异步搜索用户，见 {@link UserRepository#searchUsers(String, int)}
+     *
+     * @param query 搜索文本
+     * @param limit 最多返回的数量
+     * @return 完成为匹配的用户
+     */
+    public CompletableFuture<UserPage> searchUsers(String query, int limit) {
+        return CompletableFuture.supplyAsync(() -> userRepository.searchUsers(query, limit), dbExecutor);
+    }
+
+    /**
+     * 异步获取所有用户的列表
+     *
+     * @return 完成为包含所有用户的 List
+     */
+    public CompletableFuture<List<User>> getAllUsers() {
+        return CompletableFuture.supplyAsync(userRepository::getAllUsers, dbExecutor);
+    }
+
+    /**
+     * 异步按 ID 分页获取用户列表
+     *
+     * @param afterId  从此 ID 之后开始（不含）
+     * @param pageSize 页大小
+     * @return 完成为一页用户数据
+     */
+    public CompletableFuture<UserPage> getUsersPage(long afterId, int pageSize) {
+        return CompletableFuture.supplyAsync(() -> userRepository.getUsersPage(afterId, pageSize), dbExecutor);
+    }
+
+    /**
+     * 异步根据用户名删除一个用户
+     *
+     * @param username 要删除的用户的用户名
+     * @return 删除完成时完成
+     */
+    public CompletableFuture<Void> deleteUser(String username) {
+        return CompletableFuture.runAsync(() -> userRepository.deleteUser(username), dbExecutor);
+    }
+
+    /**
+     * 异步更新指定用户的密码，见 {@link UserRepository#submitUpdateUserPassword(String, String)}
+     *
+     * @param username    要更新密码的用户的用户名
+     * @param newPassword 新的原始密码
+     * @return 新密码持久化后完成；哈希线程池已满、哈希或写入失败时以异常完成
+     */
+    public CompletableFuture<Void> updateUserPassword(String username, String newPassword) {
+        return CompletableFuture.supplyAsync(() -> userRepository.submitUpdateUserPassword(username, newPassword), dbExecutor)
+                .thenCompose(durable -> durable);
+    }
+}
@@ -0,0 +1,162 @@
+package com.surpasslike.welcomateservice.data;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把短时间内发生的多个变更合并成一批，再统一通知监听器
+ * 第一个变更到达时开始计时，窗口结束后在专用线程上把期间积累的所有变更一次性交给监听器，
+ * 批量导入数千个用户时监听器只会收到少数几次回调
+ * 一个窗口内的变更超过上限时不再逐条保留，只通知监听器发生了溢出，由监听器自行重新加载全部数据
+ * 没有监听器时变更直接丢弃，写操作不承担额外开销
+ *
+ * @param <T> 变更的类型
+ */
+public class ChangeCoalescer<T> {
+    private static final String TAG = "ChangeCoalescer";
+
+    /**
+     * 默认的合并窗口（毫秒）
+     */
+    public static final long DEFAULT_WINDOW_MS = 100;
+
+    /**
+     * 默认每批最多保留的变更数
+     */
+    public static final int DEFAULT_MAX_BATCH = 500;
+
+    /**
+     * 变更监听器，在合并线程上调用，实现不应长时间阻塞
+     *
+     * @param <T> 变更的类型
+     */
+    public interface Listener<T> {
+        /**
+         * 一批变更
+         *
+         * @param changes  按发生顺序排列的变更，只读；溢出时为空
+         * @param overflow 窗口内的变更超过上限而被丢弃，监听器应重新加载全部数据
+         */
+        void onChanges(List<T> changes, boolean overflow);
+    }
+
+    private final long windowMs;
+    private final int maxBatch;
+    private final List<Listener<T>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler;
+
+    private final Object lock = new Object();
+    private List<T> pending = new ArrayList<>();
+    private boolean overflow;
+    private boolean scheduled;
+
+    /**
+     * 构造函数
+     *
+     * @param name     合并线程的名称
+     * @param windowMs 合并窗口（毫秒）
+     * @param maxBatch 每批最多保留的变更数
+     */
+    public ChangeCoalescer(String name, long windowMs, int maxBatch) {
+        if (maxBatch <= 0) {
+            throw new IllegalArgumentException("maxBatch must be > 0: " + maxBatch);
+        }
+        this.windowMs = windowMs;
+        this.maxBatch = maxBatch;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 添加监听器，只会收到添加之后发生的变更
+     *
+     * @param listener 监听器
+     */
+    public void addListener(Listener<T> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 移除监听器
+     *
+     * @param listener 监听器
+     */
+    public void removeListener(Listener<T> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 发布一个变更，在当前窗口结束时随同一批的其他变更一起通知
+     *
+     * @param change 变更
+     */
+    public void publish(T change) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            if (!overflow) {
+                if (pending.size() < maxBatch) {
+                    pending.add(change);
+                } else {
+                    // 反正要全部重新加载，不必继续积累
+                    pending = new ArrayList<>();
+                    overflow = true;
+                }
+            }
+            scheduleLocked();
+        }
+    }
+
+    /**
+     * 通知数据已整体变化（例如从备份恢复），监听器在当前窗口结束时收到 overflow，需要重新加载
+     */
+    public void publishReset() {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            pending = new ArrayList<>();
+            overflow = true;
+            scheduleLocked();
+        }
+    }
+
+    private void scheduleLocked() {
+        if (!scheduled) {
+            scheduled = true;
+            scheduler.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        List<T> batch;
+        boolean lost;
+        synchronized (lock) {
+            batch = pending;
+            lost = overflow;
+            pending = new ArrayList<>();
+            overflow = false;
+            scheduled = false;
+        }
+        List<T> changes = Collections.unmodifiableList(batch);
+        for (Listener<T> listener : listeners) {
+            try {
+                listener.onChanges(changes, lost);
+            } catch (RuntimeException e) {
+                // 一个监听器出错不影响其他监听器，也不能让合并线程退出
+                Log.w(TAG, "Change listener " + listener + " failed on " + changes.size() + " changes", e);
+            }
+        }
+    }
+}
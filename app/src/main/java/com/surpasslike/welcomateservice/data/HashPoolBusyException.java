@@ -0,0 +1,17 @@
+package com.surpasslike.welcomateservice.data;
+
+/**
+ * 密码哈希线程池已满，请求没有被执行
+ * 与密码错误、哈希失败不同，调用方应稍后重试，而不是把它当作一次失败的登录或注册
+ */
+public class HashPoolBusyException extends RuntimeException {
+
+    /**
+     * 构造函数
+     *
+     * @param message 异常信息
+     */
+    public HashPoolBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,322 @@
+package com.surpasslike.welcomateservice.data;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * 密码哈希工具
+ * 新密码使用加盐的 PBKDF2-HMAC-SHA256 处理，存储格式为：
+ * <pre>pbkdf2_sha256$迭代次数$Base64(盐)$Base64(哈希)</pre>
+ * 旧版本存储的是未加盐的单轮 SHA-256 的 Base64 编码，仍然可以验证，并通过 {@link #needsRehash(String)} 提示调用方升级
+ * 验证时复用线程本地的 MessageDigest、SecretKeyFactory 和临时缓冲区，直接比较解码后的原始字节（常量时间），
+ * 旧格式的验证路径不产生任何临时对象，减少登录高峰时的 GC 压力并消除比较时的计时侧信道
+ * 每次哈希或验证结束后清零这些缓冲区，明文密码和计算出的哈希不会留在线程本地内存中
+ * 此类不依赖 Android API，可以直接在 JVM 上测试和基准测试
+ */
+public class PasswordHasher {
+
+    public static final String PBKDF2_PREFIX = "pbkdf2_sha256";
+
+    /**
+     * 默认迭代次数，在延迟与安全性之间折中，可通过 {@link #setIterations(int)} 调整
+     */
+    public static final int DEFAULT_ITERATIONS = 50_000;
+
+    /**
+     * 允许的最小迭代次数，防止误配置导致哈希强度过低
+     */
+    public static final int MIN_ITERATIONS = 10_000;
+
+    private static final String PBKDF2_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_LENGTH = 16;
+    private static final int KEY_LENGTH_BITS = 256;
+    private static final int HASH_LENGTH = 32;
+
+    /**
+     * SHA-256 和 PBKDF2 输出（32 字节）的 Base64 编码长度
+     */
+    private static final int ENCODED_HASH_LENGTH = 44;
+
+    static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    private final SecureRandom random = new SecureRandom();
+    private volatile int iterations;
+
+    /**
+     * 使用默认迭代次数创建哈希工具
+     */
+    public PasswordHasher() {
+        this(DEFAULT_ITERATIONS);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param iterations PBKDF2 迭代次数
+     */
+    public PasswordHasher(int iterations) {
+        setIterations(iterations);
+    }
+
+    /**
+     * 获取当前用于新哈希的迭代次数
+     *
+     * @return 迭代次数
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * 设置新哈希使用的迭代次数
+     * 已存储的哈希保留各自的迭代次数，迭代次数低于当前值的哈希会在下次登录成功时被重新计算
+     *
+     * @param iterations PBKDF2 迭代次数，不能小于 {@link #MIN_ITERATIONS}
+     */
+    public void setIterations(int iterations) {
+        if (iterations < MIN_ITERATIONS) {
+            throw new IllegalArgumentException("iterations must be >= " + MIN_ITERATIONS + ": " + iterations);
+        }
+        this.iterations = iterations;
+    }
+
+    /**
+     * 提前完成加密服务的查找和随机数生成器的播种
+     * 这两步只在进程中第一次使用时较慢，在启动时的后台线程上调用，避免由第一次登录承担
+     */
+    public void warmUp() {
+        SCRATCH.get();
+        random.nextBytes(new byte[SALT_LENGTH]);
+    }
+
+    /**
+     * 使用随机盐和当前迭代次数对密码进行哈希
+     *
+     * @param password 原始密码
+     * @return 版本化的哈希字符串
+     */
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        int cost = iterations;
+        Scratch scratch = SCRATCH.get();
+        try {
+            pbkdf2(scratch, password, salt, cost);
+            Base64.Encoder encoder = Base64.getEncoder();
+            return PBKDF2_PREFIX + '$' + cost + '$' + encoder.encodeToString(salt) + '$' + encoder.encodeToString(scratch.computed);
+        } finally {
+            scratch.clear();
+        }
+    }
+
+    /**
+     * 验证密码是否与存储的哈希匹配，同时支持 PBKDF2 格式和旧的 SHA-256 格式
+     *
+     * @param password 原始密码
+     * @param stored   数据库中存储的哈希
+     * @return 匹配时返回 true
+     */
+    public boolean verify(String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        Scratch scratch = SCRATCH.get();
+        try {
+            return verify(scratch, password, stored);
+        } finally {
+            scratch.clear();
+        }
+    }
+
+    private static boolean verify(Scratch scratch, String password, String stored) {
+        if (!isPbkdf2(stored)) {
+            if (!decodeHash(scratch, stored, 0)) {
+                return false;
+            }
+            int length = encodeUtf8(scratch, password);
+            try {
+                scratch.sha256.update(scratch.utf8, 0, length);
+                scratch.sha256.digest(scratch.computed, 0, HASH_LENGTH);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("SHA-256 digest failed", e);
+            }
+            return MessageDigest.isEqual(scratch.computed, scratch.expected);
+        }
+        // 格式：pbkdf2_sha256$迭代次数$盐$哈希
+        int costStart = PBKDF2_PREFIX.length() + 1;
+        int saltStart = stored.indexOf('$', costStart) + 1;
+        int hashStart = saltStart > 0 ? stored.indexOf('$', saltStart) + 1 : 0;
+        if (hashStart <= 0) {
+            return false;
+        }
+        int cost = parsePositiveInt(stored, costStart, saltStart - 1);
+        byte[] salt = decode(stored.substring(saltStart, hashStart - 1));
+        if (cost <= 0 || salt == null || !decodeHash(scratch, stored, hashStart)) {
+            return false;
+        }
+        pbkdf2(scratch, password, salt, cost);
+        return MessageDigest.isEqual(scratch.computed, scratch.expected);
+    }
+
+    /**
+     * 判断存储的哈希是否需要用当前参数重新计算
+     *
+     * @param stored 数据库中存储的哈希
+     * @return 旧格式或迭代次数低于当前设置时返回 true
+     */
+    public boolean needsRehash(String stored) {
+        if (stored == null || !isPbkdf2(stored)) {
+            return true;
+        }
+        int start = PBKDF2_PREFIX.length() + 1;
+        int end = stored.indexOf('$', start);
+        return end < 0 || parsePositiveInt(stored, start, end) < iterations;
+    }
+
+    private static boolean isPbkdf2(String stored) {
+        return stored.startsWith(PBKDF2_PREFIX + '$');
+    }
+
+    /**
+     * 计算 PBKDF2 哈希，结果写入 scratch.computed
+     */
+    private static void pbkdf2(Scratch scratch, String password, byte[] salt, int cost) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, cost, KEY_LENGTH_BITS);
+        try {
+            byte[] key = scratch.pbkdf2.generateSecret(spec).getEncoded();
+            System.arraycopy(key, 0, scratch.computed, 0, HASH_LENGTH);
+            Arrays.fill(key, (byte) 0);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(PBKDF2_ALGORITHM + " failed", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    /**
+     * 将 stored 从 start 开始到末尾的 Base64 哈希解码到 scratch.expected，不创建中间字符串
+     *
+     * @return 内容是合法的 32 字节哈希时返回 true
+     */
+    private static boolean decodeHash(Scratch scratch, String stored, int start) {
+        if (stored.length() - start != ENCODED_HASH_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < ENCODED_HASH_LENGTH; i++) {
+            char c = stored.charAt(start + i);
+            if (c > 0x7F) {
+                return false;
+            }
+            scratch.base64[i] = (byte) c;
+        }
+        try {
+            return Base64.getDecoder().decode(scratch.base64, scratch.expected) == HASH_LENGTH;
+        } catch (IllegalArgumentException e) {
+            return false; // 存储内容已损坏
+        }
+    }
+
+    /**
+     * 将字符串按 UTF-8 编码写入 scratch.utf8，行为与 String.getBytes(UTF_8) 一致（孤立的代理字符编码为 '?'）
+     *
+     * @return 编码后的字节数
+     */
+    static int encodeUtf8(Scratch scratch, String value) {
+        int length = value.length();
+        if (scratch.utf8.length < length * 3) {
+            scratch.utf8 = new byte[length * 3];
+        }
+        byte[] out = scratch.utf8;
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                out[n++] = (byte) c;
+            } else if (c < 0x800) {
+                out[n++] = (byte) (0xC0 | (c >> 6));
+                out[n++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out[n++] = (byte) (0xF0 | (codePoint >> 18));
+                out[n++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                out[n++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                out[n++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                out[n++] = '?';
+            } else {
+                out[n++] = (byte) (0xE0 | (c >> 12));
+                out[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[n++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return n;
+    }
+
+    /**
+     * 解析 [start, end) 范围内的正整数，不合法时返回 -1
+     */
+    private static int parsePositiveInt(String value, int start, int end) {
+        if (start >= end || end - start > 9) {
+            return -1;
+        }
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static byte[] decode(String base64) {
+        try {
+            return Base64.getDecoder().decode(base64);
+        } catch (IllegalArgumentException e) {
+            return null; // 存储内容已损坏
+        }
+    }
+
+    /**
+     * 每个线程独享的哈希对象和临时缓冲区
+     */
+    static class Scratch {
+        final MessageDigest sha256;
+        final SecretKeyFactory pbkdf2;
+        final byte[] computed = new byte[HASH_LENGTH];
+        final byte[] expected = new byte[HASH_LENGTH];
+        final byte[] base64 = new byte[ENCODED_HASH_LENGTH];
+        byte[] utf8 = new byte[64];
+
+        /**
+         * 清零保存过明文密码或哈希的缓冲区
+         */
+        void clear() {
+            Arrays.fill(utf8, (byte) 0);
+            Arrays.fill(computed, (byte) 0);
+            Arrays.fill(expected, (byte) 0);
+            Arrays.fill(base64, (byte) 0);
+        }
+
+        Scratch() {
+            try {
+                sha256 = MessageDigest.getInstance("SHA-256");
+                pbkdf2 = SecretKeyFactory.getInstance(PBKDF2_ALGORITHM);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Password hashing algorithms not available", e);
+            }
+        }
+    }
+}
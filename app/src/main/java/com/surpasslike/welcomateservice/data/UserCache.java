@@ -0,0 +1,271 @@
+package com.surpasslike.welcomateservice.data;
+
+import com.surpasslike.welcomateservice.data.model.User;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 用户表前面的内存读缓存
+ * 按账户缓存登录所需的用户名和密码哈希，并维护“用户名 -> 账户”的二级索引，
+ * 使按用户名进行的删除和改密能够精确地使对应条目失效
+ * 容量有限，超出时按 LRU 顺序淘汰；所有操作都在同一把锁下进行
+ * <p>
+ * 读穿透时先通过 {@link #generation()} 取得当前代数，查询数据库后再调用 {@link #put(CachedUser, long)}，
+ * 若期间发生过写操作导致的失效，旧数据不会被放入缓存
+ */
+public class UserCache {
+
+    /**
+     * 默认缓存的账户数量
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int capacity;
+    private final LinkedHashMap<String, CachedUser> byAccount;
+    private final Map<String, Set<String>> accountsByUsername = new HashMap<>();
+    private List<User> allUsers;
+    private long generation;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * 构造函数
+     *
+     * @param capacity 最多缓存的账户数量
+     */
+    public UserCache(int capacity) {
+        this.capacity = capacity;
+        this.byAccount = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * 按账户查找缓存的用户
+     *
+     * @param account 账户
+     * @return 缓存的条目，未命中时返回 null
+     */
+    public synchronized CachedUser get(String account) {
+        CachedUser user = byAccount.get(account);
+        if (user != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return user;
+    }
+
+    /**
+     * 获取当前代数，每次失效都会使代数加一
+     *
+     * @return 当前代数
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * 放入一个从数据库读取的条目
+     *
+     * @param user       要缓存的条目
+     * @param generation 读取数据库之前取得的代数；若此后发生过失效，则丢弃该条目
+     */
+    public synchronized void put(CachedUser user, long generation) {
+        if (generation != this.generation) {
+            return;
+        }
+        CachedUser previous = byAccount.put(user.getAccount(), user);
+        if (previous != null) {
+            unindex(previous);
+        }
+        index(user);
+        Iterator<CachedUser> it = byAccount.values().iterator();
+        while (byAccount.size() > capacity && it.hasNext()) {
+            CachedUser eldest = it.next();
+            it.remove();
+            unindex(eldest);
+            evictionCount++;
+        }
+    }
+
+    /**
+     * 获取缓存的完整用户列表
+     *
+     * @return 不可修改的用户列表，未缓存时返回 null
+     */
+    public synchronized List<User> getAllUsers() {
+        if (allUsers != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return allUsers;
+    }
+
+    /**
+     * 缓存完整用户列表
+     *
+     * @param users      从数据库读取的用户列表
+     * @param generation 读取数据库之前取得的代数
+     * @return 不可修改的用户列表
+     */
+    public synchronized List<User> putAllUsers(List<User> users, long generation) {
+        List<User> snapshot = Collections.unmodifiableList(users);
+        if (generation == this.generation) {
+            allUsers = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * 使指定账户的条目失效
+     *
+     * @param account 账户
+     */
+    public synchronized void invalidateAccount(String account) {
+        generation++;
+        allUsers = null;
+        CachedUser removed = byAccount.remove(account);
+        if (removed != null) {
+            unindex(removed);
+        }
+    }
+
+    /**
+     * 使指定用户名下所有账户的条目失效
+     *
+     * @param username 用户名
+     */
+    public synchronized void invalidateUsername(String username) {
+        generation++;
+        allUsers = null;
+        Set<String> accounts = accountsByUsername.remove(username);
+        if (accounts != null) {
+            for (String account : accounts) {
+                byAccount.remove(account);
+            }
+        }
+    }
+
+    /**
+     * 清空所有条目，用于批量写入之后
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        allUsers = null;
+        byAccount.clear();
+        accountsByUsername.clear();
+    }
+
+    /**
+     * 获取命中次数
+     *
+     * @return 命中次数
+     */
+    public synchronized long hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * 获取未命中次数
+     *
+     * @return 未命中次数
+     */
+    public synchronized long missCount() {
+        return missCount;
+    }
+
+    /**
+     * 获取因容量不足而被淘汰的条目数
+     *
+     * @return 淘汰次数
+     */
+    public synchronized long evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * 获取当前缓存的账户数量
+     *
+     * @return 条目数量
+     */
+    public synchronized int size() {
+        return byAccount.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "UserCache{size=" + byAccount.size() + "/" + capacity +
+                ", hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount + "}";
+    }
+
+    private void index(CachedUser user) {
+        Set<String> accounts = accountsByUsername.get(user.getUsername());
+        if (accounts == null) {
+            accounts = new HashSet<>();
+            accountsByUsername.put(user.getUsername(), accounts);
+        }
+        accounts.add(user.getAccount());
+    }
+
+    private void unindex(CachedUser user) {
+        Set<String> accounts = accountsByUsername.get(user.getUsername());
+        if (accounts != null) {
+            accounts.remove(user.getAccount());
+            if (accounts.isEmpty()) {
+                accountsByUsername.remove(user.getUsername());
+            }
+        }
+    }
+
+    /**
+     * 缓存条目：登录所需的用户名、账户和密码哈希
+     */
+    public static class CachedUser {
+        private final String username;
+        private final String account;
+        private final String passwordHash;
+
+        /**
+         * 构造函数
+         *
+         * @param username     用户名
+         * @param account      账户
+         * @param passwordHash 存储的密码哈希
+         */
+        public CachedUser(String username, String account, String passwordHash) {
+            this.username = username;
+            this.account = account;
+            this.passwordHash = passwordHash;
+        }
+
+        /**
+         * @return 用户名
+         */
+        public String getUsername() {
+            return username;
+        }
+
+        /**
+         * @return 账户
+         */
+        public String getAccount() {
+            return account;
+        }
+
+        /**
+         * @return 存储的密码哈希
+         */
+        public String getPasswordHash() {
+            return passwordHash;
+        }
+    }
+}
@@ -1,40 +1,248 @@
 package com.surpasslike.welcomateservice.data;
 
 import android.annotation.SuppressLint;
-import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
-import android.util.Base64;
+import android.os.Trace;
 import android.util.Log;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.surpasslike.welcomateservice.MyApplication;
+import com.surpasslike.welcomateservice.data.db.DatabaseBackup;
 import com.surpasslike.welcomateservice.data.db.DatabaseHelper;
+import com.surpasslike.welcomateservice.data.db.DatabaseMaintenance;
+import com.surpasslike.welcomateservice.data.db.Migration;
+import com.surpasslike.welcomateservice.data.db.MigrationRunner;
+import com.surpasslike.welcomateservice.data.db.SearchQuery;
+import com.surpasslike.welcomateservice.data.db.UserStatements;
 import com.surpasslike.welcomateservice.data.model.User;
+import com.surpasslike.welcomateservice.data.model.UserChange;
+import com.surpasslike.welcomateservice.data.model.UserPage;
+import com.surpasslike.welcomateservice.data.model.UserRecord;
+import com.surpasslike.welcomateservice.data.model.UserSnapshot;
+import com.surpasslike.welcomateservice.data.model.UserSnapshotCodec;
+import com.surpasslike.welcomateservice.metrics.MethodMetrics;
+import com.surpasslike.welcomateservice.metrics.Metrics;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.io.File;
+import java.io.IOException;
+import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
 
 /**
  * 用户数据的仓库层
  * 作为应用中所有用户数据的唯一真实来源 (Single Source of Truth)
  * 负责处理所有数据操作，无论是来自本地数据库还是未来的网络 API
  * 这是一个单例，以确保整个应用只有一个数据源实例
+ * 每次访问数据库都持有 {@link DatabaseHelper#getAccessLock()} 的读锁，恢复备份时据此等待所有正在进行的访问完成；
+ * 持有读锁期间不等待写后队列和哈希线程池，两者各自在需要访问数据库时获取读锁
  */
 public class UserRepository {
     private static final String TAG = "UserRepository";
+
+    /**
+     * 哈希线程数，与 CPU 核数一致，避免哈希任务占满 Binder 线程池
+     */
+    private static final int HASH_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 哈希任务队列容量，队列满时新的请求会被立即拒绝而不是无限排队
+     */
+    private static final int HASH_QUEUE_CAPACITY = 64;
+
+    /**
+     * 分页查询允许的最大页大小
+     */
+    public static final int MAX_PAGE_SIZE = 500;
+
+    /**
+     * 搜索允许返回的最多结果数
+     */
+    public static final int MAX_SEARCH_RESULTS = 100;
+
+    private static final MethodMetrics SELECT_ALL_METRICS = Metrics.register("db.selectAllUsers");
+    private static final MethodMetrics SELECT_PAGE_METRICS = Metrics.register("db.selectPage");
+    private static final MethodMetrics SNAPSHOT_METRICS = Metrics.register("db.buildSnapshot");
+    private static final MethodMetrics SEARCH_METRICS = Metrics.register("db.searchUsers");
+    private static final MethodMetrics SELECT_BY_ID_METRICS = Metrics.register("db.selectById");
+    private static final MethodMetrics SELECT_BY_IDS_METRICS = Metrics.register("db.selectByIds");
+    private static final MethodMetrics GROUP_COMMIT_METRICS = Metrics.register("db.groupCommit");
+
+    /**
+     * 写后模式的队列容量，队列满时提交方阻塞
+     */
+    private static final int WRITE_BEHIND_CAPACITY = 4096;
+
+    /**
+     * 写后模式每个事务最多包含的写操作数
+     */
+    private static final int WRITE_BEHIND_MAX_BATCH = 256;
+
+    /**
+     * 写后模式下第一个写操作入队后最多等待多久再提交（毫秒），用于凑成更大的批次
+     */
+    private static final long WRITE_BEHIND_LINGER_MS = 5;
+
     private final DatabaseHelper dbHelper;
+    private final Lock accessLock;
+    private final UserStatements statements;
+    private final DatabaseMaintenance maintenance;
+    private final DatabaseBackup backup;
+    private final Object backupLock = new Object();
+    private final PasswordHasher passwordHasher = new PasswordHasher();
+    private final UserCache cache = new UserCache(UserCache.DEFAULT_CAPACITY);
+    private final ExecutorService hashExecutor = newHashExecutor();
+    private final ChangeCoalescer<UserChange> changes = new ChangeCoalescer<>("user-changes",
+            ChangeCoalescer.DEFAULT_WINDOW_MS, ChangeCoalescer.DEFAULT_MAX_BATCH);
+
+    /**
+     * 快照版本的高 32 位，每个进程随机生成，避免服务重启后缓存代数从 0 重新计数时与客户端持有的旧版本相同
+     */
+    private final long snapshotEpoch = (long) new SecureRandom().nextInt() << 32;
+    private final Object snapshotLock = new Object();
+    private UserSnapshot snapshot;
+
+    // 写后模式：队列在第一次启用时创建；pendingWrites 按用户名记录尚未写入数据库的最新状态，供读操作叠加
+    private final Object writeBehindLock = new Object();
+    private final Map<String, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+    private volatile WriteBehindQueue<PendingWrite> writeBehind;
+    private volatile boolean writeBehindEnabled;
+
+    /**
+     * 测试用：在登录读取用户之后、读取叠加状态之前调用，用于构造与写线程交错的场景
+     */
+    @VisibleForTesting
+    volatile Runnable afterLoginLookup;
 
     // 单例模式实现
     private static volatile UserRepository INSTANCE;
 
+    // 启动预热的结果，未调用 prewarm 时为 null
+    private static volatile CompletableFuture<UserRepository> PREWARM;
+
     /**
      * 私有构造函数，防止外部直接实例化
      */
     private UserRepository() {
-        this.dbHelper = new DatabaseHelper(MyApplication.getContext());
+        this(new DatabaseHelper(MyApplication.getContext()));
+        startPendingMigrations();
+    }
+
+    /**
+     * 使用指定的数据库帮助类创建仓库，仅供测试使用
+     *
+     * @param dbHelper 数据库帮助类
+     */
+    @VisibleForTesting
+    public UserRepository(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+        this.accessLock = dbHelper.getAccessLock().readLock();
+        this.statements = new UserStatements(dbHelper);
+        this.maintenance = new DatabaseMaintenance(dbHelper);
+        this.backup = new DatabaseBackup(dbHelper);
+    }
+
+    /**
+     * 在后台线程上创建单例并预热：打开数据库（完成建表或升级）、编译热点语句、把用户表读入页缓存、准备密码哈希所需的加密服务
+     * 应在进程启动时调用一次，重复调用返回同一个结果
+     * 预热期间到达的调用不会重复这些工作：创建单例时持有类锁，打开数据库时持有 SQLiteOpenHelper 的锁，
+     * 其他线程只会等待预热线程完成，而 getInstance 本身不等待预热，主线程不会因此阻塞
+     * 各阶段耗时输出到日志，并以 Trace 区段记录，可以在 Perfetto 中查看
+     *
+     * @return 预热完成时完成为单例
+     */
+    public static CompletableFuture<UserRepository> prewarm() {
+        if (PREWARM == null) {
+            synchronized (UserRepository.class) {
+                if (PREWARM == null) {
+                    PREWARM = CompletableFuture.supplyAsync(() -> {
+                        UserRepository repository = getInstance();
+                        repository.warmUp();
+                        return repository;
+                    }, r -> new Thread(r, "db-prewarm").start());
+                    // 预热失败不影响正常使用，之后的调用会按需打开数据库，但失败原因必须留在日志中
+                    PREWARM.whenComplete((repository, error) -> {
+                        if (error != null) {
+                            Log.e(TAG, "Prewarm failed", error);
+                        }
+                    });
+                }
+            }
+        }
+        return PREWARM;
+    }
+
+    private void warmUp() {
+        long start = System.nanoTime();
+        Trace.beginSection("UserRepository.warmUp");
+        try {
+            Trace.beginSection("openDatabase");
+            try {
+                dbHelper.getWritableDatabase();
+            } finally {
+                Trace.endSection();
+            }
+            long opened = System.nanoTime();
+
+            Trace.beginSection("prepareStatements");
+            accessLock.lock();
+            try {
+                statements.warmUp();
+            } finally {
+                accessLock.unlock();
+                Trace.endSection();
+            }
+            long prepared = System.nanoTime();
+
+            // 把登录查询会访问的账户索引和表数据读入系统页缓存，第一次按账户登录不必再等待磁盘
+            Trace.beginSection("loadPages");
+            long rows;
+            accessLock.lock();
+            try {
+                SQLiteDatabase db = dbHelper.getWritableDatabase();
+                rows = DatabaseUtils.longForQuery(db, UserStatements.SQL_WARM_ACCOUNT_INDEX, null);
+                DatabaseUtils.longForQuery(db, UserStatements.SQL_WARM_USERS_TABLE, null);
+            } finally {
+                accessLock.unlock();
+                Trace.endSection();
+            }
+            long loaded = System.nanoTime();
+
+            Trace.beginSection("passwordHasher");
+            try {
+                passwordHasher.warmUp();
+            } finally {
+                Trace.endSection();
+            }
+            long end = System.nanoTime();
+
+            Log.i(TAG, "Prewarm finished in " + TimeUnit.NANOSECONDS.toMillis(end - start) + "ms"
+                    + " (open " + TimeUnit.NANOSECONDS.toMillis(opened - start)
+                    + "ms, statements " + TimeUnit.NANOSECONDS.toMillis(prepared - opened)
+                    + "ms, pages " + TimeUnit.NANOSECONDS.toMillis(loaded - prepared)
+                    + "ms for " + rows + " accounts, hasher " + TimeUnit.NANOSECONDS.toMillis(end - loaded) + "ms)");
+        } finally {
+            Trace.endSection();
+        }
     }
 
     /**
@@ -54,50 +262,302 @@ public class UserRepository {
     }
 
     /**
-     * 对给定的密码字符串进行 SHA-256 哈希处理
+     * 在后台线程中继续执行未完成的数据迁移
+     * 迁移分批进行，期间登录和其他操作照常可用；每个迁移完成后清空缓存，避免读到迁移前的数据
+     */
+    private void startPendingMigrations() {
+        Thread thread = new Thread(() -> {
+            try {
+                new MigrationRunner(dbHelper).run(new MigrationRunner.ProgressListener() {
+                    @Override
+                    public void onBatchCompleted(Migration migration, long position, long batches) {
+                        Log.d(TAG, migration + " migrated up to " + position + " (" + batches + " batches)");
+                    }
+
+                    @Override
+                    public void onMigrationFinished(Migration migration) {
+                        cache.invalidateAll();
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (SQLException | IllegalStateException e) {
+                // 已提交的批次不会丢失，下次启动时从断点继续
+                Log.e(TAG, "Data migration failed, will resume on next start", e);
+            }
+        }, "db-migration");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * 设置新密码哈希使用的 PBKDF2 迭代次数
+     * 迭代次数越高越安全，但每次登录和改密的耗时也越长
+     *
+     * @param iterations 迭代次数
+     */
+    public void setPasswordHashIterations(int iterations) {
+        passwordHasher.setIterations(iterations);
+    }
+
+    /**
+     * 获取当前的 PBKDF2 迭代次数
+     *
+     * @return 迭代次数
+     */
+    public int getPasswordHashIterations() {
+        return passwordHasher.getIterations();
+    }
+
+    /**
+     * 在哈希线程池中对密码进行哈希处理
      *
      * @param password 要哈希的原始密码
-     * @return 哈希后并经过 Base64 编码的字符串如果算法不可用，则返回 null
+     * @return 版本化的哈希字符串；如果密码为 null 或哈希失败，则返回 null
+     * @throws HashPoolBusyException 哈希线程池已满
      */
     private String hashPassword(String password) {
         if (password == null) {
             return null;
         }
+        return runOnHashExecutor(() -> passwordHasher.hash(password));
+    }
+
+    /**
+     * 创建专用于密码哈希的有界线程池
+     */
+    private static ExecutorService newHashExecutor() {
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "password-hash-" + count.incrementAndGet());
+            }
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(HASH_THREADS, HASH_THREADS,
+                30L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(HASH_QUEUE_CAPACITY), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 将哈希任务提交到哈希线程池并等待结果
+     * 线程池饱和时立即失败，不占用调用方线程进行计算
+     *
+     * @param task 哈希任务
+     * @return 任务结果；失败时返回 null
+     * @throws HashPoolBusyException 哈希线程池已满，任务没有被执行
+     */
+    private <T> T runOnHashExecutor(Callable<T> task) {
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(password.getBytes(StandardCharsets.UTF_8));
-            return Base64.encodeToString(hash, Base64.NO_WRAP);
-        } catch (NoSuchAlgorithmException e) {
-            Log.e(TAG, "SHA-256 algorithm not found", e);
+            return awaitHash(hashExecutor.submit(task));
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Password hashing pool saturated, request rejected.");
+            throw new HashPoolBusyException("Password hashing pool is saturated");
+        }
+    }
+
+    /**
+     * 等待哈希任务完成
+     *
+     * @param future 哈希任务
+     * @return 任务结果；失败或被中断时返回 null
+     */
+    private static <T> T awaitHash(Future<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Password hashing failed", e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
             return null;
         }
     }
 
     /**
      * 验证管理员登录
+     * 验证成功且存储的哈希是旧格式或参数已过时时，会在后台用当前参数重新哈希
      *
      * @param account  用户输入的账户
      * @param password 用户输入的原始密码
      * @return 如果登录成功，返回用户名；否则返回 null
+     * @throws HashPoolBusyException 哈希线程池已满，没有验证密码，不应计为一次失败的登录
      */
     public String loginAdmin(String account, String password) {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        String[] columns = {DatabaseHelper.COLUMN_USERNAME, DatabaseHelper.COLUMN_PASSWORD};
-        String selection = DatabaseHelper.COLUMN_ACCOUNT + " = ?";
-        String[] selectionArgs = {account};
-
-        try (Cursor cursor = db.query(DatabaseHelper.TABLE_USERS, columns, selection, selectionArgs, null, null, null)) {
-            if (cursor.moveToFirst()) {
-                @SuppressLint("Range") String storedPasswordHash = cursor.getString(cursor.getColumnIndex(DatabaseHelper.COLUMN_PASSWORD));
-                String inputPasswordHash = hashPassword(password);
-
-                if (inputPasswordHash != null && inputPasswordHash.equals(storedPasswordHash)) {
-                    @SuppressLint("Range") String username = cursor.getString(cursor.getColumnIndex(DatabaseHelper.COLUMN_USERNAME));
-                    return username;
-                }
+        if (password == null) {
+            return null;
+        }
+        long generation = cache.generation();
+        UserCache.CachedUser user = findByAccount(account);
+        if (user == null) {
+            return null; // 账户不存在
+        }
+        Runnable hook = afterLoginLookup;
+        if (hook != null) {
+            hook.run();
+        }
+        // 叠加尚未写入数据库的删除和改密，保证写后模式下登录结果与同步写入时一致
+        PendingWrite pending = pendingWrite(user.getUsername());
+        if (pending == null && cache.generation() != generation) {
+            // 读取用户之后有写入：写线程提交后先使缓存失效再移除叠加状态，
+            // 上面读到的哈希可能早于这次提交，而叠加状态中已经看不到它，必须在读取叠加状态之后重新读取
+            user = findByAccount(account);
+            if (user == null) {
+                return null;
+            }
+        }
+        if (pending != null && pending.type == PendingWrite.DELETE) {
+            return null;
+        }
+        String storedPasswordHash = pending != null ? pending.hashedPassword : user.getPasswordHash();
+        Boolean matches = runOnHashExecutor(() -> passwordHasher.verify(password, storedPasswordHash));
+        if (matches == null || !matches) {
+            return null;
+        }
+        if (pending == null && passwordHasher.needsRehash(storedPasswordHash)) {
+            scheduleRehash(account, password, storedPasswordHash);
+        }
+        return user.getUsername();
+    }
+
+    /**
+     * 按账户查找登录所需的用户信息，优先从缓存读取，未命中时查询数据库并放入缓存
+     *
+     * @param account 账户
+     * @return 用户信息，如果账户不存在则返回 null
+     */
+    private UserCache.CachedUser findByAccount(String account) {
+        UserCache.CachedUser user = cache.get(account);
+        if (user != null) {
+            return user;
+        }
+        long generation = cache.generation();
+        accessLock.lock();
+        try {
+            String storedPasswordHash = statements.queryPasswordHash(account);
+            if (storedPasswordHash == null) {
+                return null;
             }
+            user = new UserCache.CachedUser(statements.queryUsername(account), account, storedPasswordHash);
+        } finally {
+            accessLock.unlock();
+        }
+        cache.put(user, generation);
+        return user;
+    }
+
+    /**
+     * 获取缓存的统计信息，包括命中、未命中和淘汰次数
+     *
+     * @return 统计信息的文字描述
+     */
+    public String getCacheStats() {
+        return cache.toString();
+    }
+
+    /**
+     * 生成数据库的一致快照，登录和写操作在此期间不受阻塞
+     * 写后队列中已提交的写操作会先落盘，快照包含调用之前的所有写操作
+     *
+     * @param target 快照文件，已存在时被替换
+     * @return 快照文件的大小（字节）
+     * @throws IOException 写入快照失败
+     */
+    public long backupTo(File target) throws IOException {
+        flushPendingWrites();
+        synchronized (backupLock) {
+            return backup.snapshot(target);
+        }
+    }
+
+    /**
+     * 用快照原子地替换当前数据库，之后通知监听器重新加载，并继续较旧快照升级后待完成的数据迁移
+     * 写后队列中的写操作先落盘；替换等待正在进行的数据库访问完成，新库打开后、其他访问恢复之前清空缓存并丢弃导出的快照，
+     * 不会有读操作从缓存中得到旧库的数据
+     *
+     * @param source     由 {@link #backupTo(File)} 生成的快照
+     * @param onRestored 新库打开后、其他访问恢复之前执行，用于丢弃依赖旧库的状态（例如会话），可以为 null
+     * @throws IOException 快照无法使用，此时当前数据库保持不变
+     */
+    public void restoreFrom(File source, Runnable onRestored) throws IOException {
+        flushPendingWrites();
+        synchronized (backupLock) {
+            backup.restore(source, () -> {
+                cache.invalidateAll();
+                synchronized (snapshotLock) {
+                    snapshot = null;
+                }
+                if (onRestored != null) {
+                    onRestored.run();
+                }
+            });
+        }
+        changes.publishReset();
+        startPendingMigrations();
+    }
+
+    /**
+     * 获取数据库的空闲维护，由服务启动和停止，并在每个请求的入口记录活动
+     *
+     * @return 数据库维护
+     */
+    public DatabaseMaintenance getMaintenance() {
+        return maintenance;
+    }
+
+    /**
+     * 添加用户变更的监听器
+     * 新增、删除和改密在提交后合并为批次通知，可以据此增量更新已加载的数据，不必在每次写入后重新读取全部用户
+     *
+     * @param listener 监听器，在合并线程上调用
+     */
+    public void addChangeListener(ChangeCoalescer.Listener<UserChange> listener) {
+        changes.addListener(listener);
+    }
+
+    /**
+     * 移除用户变更的监听器
+     *
+     * @param listener 监听器
+     */
+    public void removeChangeListener(ChangeCoalescer.Listener<UserChange> listener) {
+        changes.removeListener(listener);
+    }
+
+    /**
+     * 清空内存缓存，使下一次读取直接访问数据库，仅供测试和基准测试使用
+     */
+    @VisibleForTesting
+    void clearCache() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * 在后台用当前参数重新哈希密码并写回数据库
+     * 线程池繁忙时直接放弃，下次登录会再次尝试
+     */
+    private void scheduleRehash(String account, String password, String oldHash) {
+        try {
+            hashExecutor.execute(() -> {
+                String newHash = passwordHasher.hash(password);
+                int rows;
+                accessLock.lock();
+                try {
+                    rows = statements.replacePasswordHash(account, oldHash, newHash);
+                } finally {
+                    accessLock.unlock();
+                }
+                if (rows > 0) {
+                    cache.invalidateAccount(account);
+                    Log.d(TAG, "Password hash upgraded for account " + account);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.d(TAG, "Hashing pool busy, rehash deferred.");
         }
-        return null;
     }
 
     /**
@@ -107,74 +567,603 @@ public class UserRepository {
      * @param account  账户
      * @param password 原始密码，将被哈希后存储
      * @return 新插入行的行 ID，如果发生错误则为 -1
+     * @throws HashPoolBusyException 哈希线程池已满，用户没有被添加
      */
     public long addUser(String username, String account, String password) {
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(DatabaseHelper.COLUMN_USERNAME, username);
-        values.put(DatabaseHelper.COLUMN_ACCOUNT, account);
-
+        flushPendingWrites(); // 排队中的按用户名删除不能作用到之后新增的同名用户上
         String hashedPassword = hashPassword(password);
         if (hashedPassword == null) {
             return -1; // 哈希失败
         }
-        values.put(DatabaseHelper.COLUMN_PASSWORD, hashedPassword);
+        accessLock.lock();
+        try {
+            long rowId = statements.insertUser(username, account, hashedPassword);
+            if (rowId != -1) {
+                changes.publish(new UserChange(UserChange.TYPE_ADDED, rowId, username, account));
+            }
+            return rowId;
+        } catch (SQLException e) {
+            Log.e(TAG, "Error inserting user " + account, e);
+            return -1;
+        } finally {
+            accessLock.unlock();
+            cache.invalidateAccount(account);
+        }
+    }
 
-        return db.insert(DatabaseHelper.TABLE_USERS, null, values);
+    /**
+     * 在单个事务中批量添加用户
+     * 密码在事务开始前并行哈希；随后复用当前线程预编译的 INSERT 语句，整批只提交一次，避免逐行提交带来的多次磁盘同步
+     * 在 WAL 模式下，批量写入期间其他线程的读操作不会被阻塞
+     * 单行失败（例如账户已存在）不会影响其他行
+     *
+     * @param users 要添加的用户记录，密码为原始密码，将被哈希后存储
+     * @return 与输入一一对应的行 ID 数组，失败的行为 -1
+     */
+    public long[] addUsers(List<UserRecord> users) {
+        // 先在事务外并行完成哈希，缩短写事务持有的时间
+        String[] hashedPasswords = hashPasswords(users);
+        flushPendingWrites();
+        long[] rowIds = new long[users.size()];
+        accessLock.lock();
+        try {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            db.beginTransactionNonExclusive();
+            try {
+                for (int i = 0; i < rowIds.length; i++) {
+                    UserRecord user = users.get(i);
+                    if (hashedPasswords[i] == null) {
+                        rowIds[i] = -1; // 空记录或哈希失败
+                        continue;
+                    }
+                    try {
+                        rowIds[i] = statements.insertUser(user.getUsername(), user.getAccount(), hashedPasswords[i]);
+                    } catch (SQLException e) {
+                        Log.e(TAG, "Error inserting user at index " + i, e);
+                        rowIds[i] = -1;
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            accessLock.unlock();
+            cache.invalidateAll();
+        }
+        // 事务已提交，才通知新增的用户
+        for (int i = 0; i < rowIds.length; i++) {
+            if (rowIds[i] != -1) {
+                UserRecord user = users.get(i);
+                changes.publish(new UserChange(UserChange.TYPE_ADDED, rowIds[i], user.getUsername(), user.getAccount()));
+            }
+        }
+        return rowIds;
+    }
+
+    /**
+     * 使用哈希线程池并行哈希一批密码
+     * 每次最多提交与线程数相同的任务；线程池被其他请求占满时，先等本批已提交的任务完成再重试一次，
+     * 仍然饱和则剩余的行全部失败，从不在调用方（Binder）线程上计算哈希
+     *
+     * @param users 用户记录
+     * @return 与输入一一对应的哈希数组，空记录、失败或因线程池饱和而未处理的位置为 null
+     */
+    private String[] hashPasswords(List<UserRecord> users) {
+        String[] hashes = new String[users.size()];
+        List<Future<String>> window = new ArrayList<>(HASH_THREADS);
+        int windowStart = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            UserRecord user = users.get(i);
+            String password = user != null ? user.getPassword() : null;
+            Future<String> future = null;
+            if (password != null) {
+                future = submitHash(password);
+                if (future == null && !window.isEmpty()) {
+                    awaitWindow(window, hashes, windowStart);
+                    windowStart = i;
+                    future = submitHash(password);
+                }
+                if (future == null) {
+                    Log.w(TAG, "Password hashing pool saturated, failing " + (hashes.length - i) + " remaining rows.");
+                    break;
+                }
+            }
+            window.add(future);
+            if (window.size() == HASH_THREADS) {
+                awaitWindow(window, hashes, windowStart);
+                windowStart = i + 1;
+            }
+        }
+        awaitWindow(window, hashes, windowStart);
+        return hashes;
+    }
+
+    /**
+     * 提交一个哈希任务
+     *
+     * @return 任务；线程池饱和时返回 null
+     */
+    private Future<String> submitHash(String password) {
+        try {
+            return hashExecutor.submit(() -> passwordHasher.hash(password));
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 等待窗口中的哈希任务完成，把结果写入从 windowStart 开始的位置，然后清空窗口
+     */
+    private static void awaitWindow(List<Future<String>> window, String[] hashes, int windowStart) {
+        for (int j = 0; j < window.size(); j++) {
+            if (window.get(j) != null) {
+                hashes[windowStart + j] = awaitHash(window.get(j));
+            }
+        }
+        window.clear();
     }
 
     /**
      * 获取所有用户的列表
+     * 结果会被缓存，直到下一次写操作
      *
-     * @return 包含所有用户的 List
+     * @return 包含所有用户的不可修改的 List
      */
     public List<User> getAllUsers() {
+        List<User> cached = cache.getAllUsers();
+        if (cached != null) {
+            return withoutPendingDeletes(cached);
+        }
+        long generation = cache.generation();
         List<User> userList = new ArrayList<>();
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        String[] columns = {DatabaseHelper.COLUMN_USERNAME, DatabaseHelper.COLUMN_ACCOUNT};
-        try (Cursor cursor = db.query(DatabaseHelper.TABLE_USERS, columns, null, null, null, null, null)) {
-            if (cursor.moveToFirst()) {
-                do {
-                    @SuppressLint("Range") String username = cursor.getString(cursor.getColumnIndex(DatabaseHelper.COLUMN_USERNAME));
-                    @SuppressLint("Range") String account = cursor.getString(cursor.getColumnIndex(DatabaseHelper.COLUMN_ACCOUNT));
-                    userList.add(new User(username, account, null));
-                } while (cursor.moveToNext());
+        String[] columns = {DatabaseHelper.COLUMN_ID, DatabaseHelper.COLUMN_USERNAME, DatabaseHelper.COLUMN_ACCOUNT};
+        accessLock.lock();
+        try {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            SELECT_ALL_METRICS.run(() -> {
+                try (Cursor cursor = db.query(DatabaseHelper.TABLE_USERS, columns, null, null, null, null, null)) {
+                    if (cursor.moveToFirst()) {
+                        do {
+                            @SuppressLint("Range") long id = cursor.getLong(cursor.getColumnIndex(DatabaseHelper.COLUMN_ID));
+                            @SuppressLint("Range") String username = cursor.getString(cursor.getColumnIndex(DatabaseHelper.COLUMN_USERNAME));
+                            @SuppressLint("Range") String account = cursor.getString(cursor.getColumnIndex(DatabaseHelper.COLUMN_ACCOUNT));
+                            userList.add(new User(id, username, account, null));
+                        } while (cursor.moveToNext());
+                    }
+                }
+            });
+        } finally {
+            accessLock.unlock();
+        }
+        return withoutPendingDeletes(cache.putAllUsers(userList, generation));
+    }
+
+    /**
+     * 按 ID 键集分页获取用户列表
+     * 只读取一页数据，适合大表；第一页传入 afterId = 0
+     *
+     * @param afterId  从此 ID 之后开始（不含），通常为上一页的 {@link UserPage#getNextAfterId()}
+     * @param pageSize 页大小，会被限制在 1 到 {@link #MAX_PAGE_SIZE} 之间
+     * @return 一页用户数据
+     */
+    public UserPage getUsersPage(long afterId, int pageSize) {
+        int limit = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        List<User> users = new ArrayList<>(limit + 1);
+        // 多取一行用于判断是否还有下一页
+        String[] args = {Long.toString(afterId), Integer.toString(limit + 1)};
+        accessLock.lock();
+        try {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            SELECT_PAGE_METRICS.run(() -> readUsers(db.rawQuery(UserStatements.SQL_SELECT_PAGE, args), users));
+        } finally {
+            accessLock.unlock();
+        }
+        boolean hasMore = users.size() > limit;
+        if (hasMore) {
+            users.remove(limit);
+        }
+        long nextAfterId = users.isEmpty() ? afterId : users.get(users.size() - 1).getId();
+        return new UserPage(withoutPendingDeletes(users), nextAfterId, hasMore);
+    }
+
+    /**
+     * 按 ID 查询一个用户
+     *
+     * @param id 用户 ID
+     * @return 用户，不包含密码；不存在时返回 null
+     */
+    public User getUser(long id) {
+        List<User> users = new ArrayList<>(1);
+        accessLock.lock();
+        try {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            SELECT_BY_ID_METRICS.run(() -> readUsers(db.rawQuery(UserStatements.SQL_SELECT_BY_ID, new String[]{Long.toString(id)}), users));
+        } finally {
+            accessLock.unlock();
+        }
+        User user = users.isEmpty() ? null : users.get(0);
+        return user != null && isPendingDelete(user.getUsername()) ? null : user;
+    }
+
+    /**
+     * 按一组 ID 批量查询用户，一次查询完成，避免逐个调用
+     *
+     * @param ids 用户 ID，可以重复，最多 {@link #MAX_PAGE_SIZE} 个
+     * @return 按 ID 升序的用户，不包含密码；不存在的 ID 被跳过，重复的 ID 只返回一次
+     * @throws IllegalArgumentException ID 超过 {@link #MAX_PAGE_SIZE} 个
+     */
+    public List<User> getUsersByIds(long[] ids) {
+        if (ids == null || ids.length == 0) {
+            return new ArrayList<>();
+        }
+        if (ids.length > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("At most " + MAX_PAGE_SIZE + " ids per call: " + ids.length);
+        }
+        long[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        List<String> args = new ArrayList<>(sorted.length);
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                args.add(Long.toString(sorted[i]));
+            }
+        }
+        List<User> users = new ArrayList<>(args.size());
+        accessLock.lock();
+        try {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            SELECT_BY_IDS_METRICS.run(() -> readUsers(
+                    db.rawQuery(UserStatements.selectByIdsSql(args.size()), args.toArray(new String[0])), users));
+        } finally {
+            accessLock.unlock();
+        }
+        return withoutPendingDeletes(users);
+    }
+
+    /**
+     * 按用户名和账户搜索用户
+     * 输入按非字母数字字符切分为多个词，每个词按前缀匹配用户名或账户，所有词都要匹配，例如 “ali ex” 可以找到 alice@example.com
+     * 查询走全文索引，代价只与 limit 有关；从旧版本升级后，已有用户在后台回填完成之前可能搜索不到
+     *
+     * @param query 搜索文本
+     * @param limit 最多返回的数量，超过 {@link #MAX_SEARCH_RESULTS} 时按上限处理
+     * @return 按 ID 升序的匹配用户，不包含密码；hasMore 表示还有更多匹配未返回；没有可搜索的词时返回空结果
+     */
+    public UserPage searchUsers(String query, int limit) {
+        int max = Math.max(1, Math.min(limit, MAX_SEARCH_RESULTS));
+        List<User> users = new ArrayList<>();
+        String match = SearchQuery.toMatchExpression(query);
+        if (match == null) {
+            return new UserPage(users, 0, false);
+        }
+        // 多取一行用于判断是否还有更多匹配
+        String[] args = {match, Integer.toString(max + 1)};
+        accessLock.lock();
+        try {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            SEARCH_METRICS.run(() -> readUsers(db.rawQuery(UserStatements.SQL_SEARCH, args), users));
+        } finally {
+            accessLock.unlock();
+        }
+        boolean hasMore = users.size() > max;
+        if (hasMore) {
+            users.remove(max);
+        }
+        long lastId = users.isEmpty() ? 0 : users.get(users.size() - 1).getId();
+        return new UserPage(withoutPendingDeletes(users), lastId, hasMore);
+    }
+
+    /**
+     * 导出整个用户目录的只读共享内存快照
+     * 快照以缓存代数为版本，数据没有变化时直接复用上一次构建的快照，不再查询数据库
+     *
+     * @param knownVersion 客户端已持有的快照版本，首次调用传 0
+     * @return 最新的快照；如果客户端的版本已是最新，返回 null
+     */
+    public UserSnapshot exportUsers(long knownVersion) {
+        // 先取读锁再取快照锁，与恢复备份时的顺序一致
+        accessLock.lock();
+        try {
+            synchronized (snapshotLock) {
+                // 先取版本再读数据：读取期间若有写入，版本已经前进，下次调用会重新构建
+                long version = snapshotEpoch | (cache.generation() & 0xFFFFFFFFL);
+                if (version == knownVersion) {
+                    return null;
+                }
+                if (snapshot != null && snapshot.getVersion() == version) {
+                    return snapshot;
+                }
+                // 旧快照可能仍在被其他 Binder 线程写入回复中，不主动关闭，不再被引用后由 SharedMemory 自行释放
+                snapshot = buildSnapshot(version);
+                return snapshot;
             }
+        } finally {
+            accessLock.unlock();
         }
-        return userList;
+    }
+
+    private UserSnapshot buildSnapshot(long version) {
+        UserSnapshotCodec.Encoder encoder = new UserSnapshotCodec.Encoder();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        String[] columns = {DatabaseHelper.COLUMN_ID, DatabaseHelper.COLUMN_USERNAME, DatabaseHelper.COLUMN_ACCOUNT};
+        return SNAPSHOT_METRICS.time(() -> {
+            try (Cursor cursor = db.query(DatabaseHelper.TABLE_USERS, columns, null, null, null, null, DatabaseHelper.COLUMN_ID)) {
+                while (cursor.moveToNext()) {
+                    String username = cursor.getString(1);
+                    if (!isPendingDelete(username)) {
+                        encoder.add(cursor.getLong(0), username, cursor.getString(2));
+                    }
+                }
+            }
+            return UserSnapshot.create(encoder, version);
+        });
     }
 
     /**
      * 根据用户名删除一个用户
+     * 写后模式下只是入队，立即返回；需要确认持久化时使用 {@link #submitDeleteUser(String)}
      *
      * @param username 要删除的用户的用户名
      */
     public void deleteUser(String username) {
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        String selection = DatabaseHelper.COLUMN_USERNAME + " = ?";
-        String[] selectionArgs = {username};
-        db.delete(DatabaseHelper.TABLE_USERS, selection, selectionArgs);
+        submitDeleteUser(username);
+    }
+
+    /**
+     * 根据用户名删除用户，返回持久化的 future
+     * 同步模式下直接写入，返回已完成的 future，出错时直接抛出异常；
+     * 写后模式下入队后立即返回，所在的事务提交后 future 完成，期间的读操作已经看不到这些用户
+     *
+     * @param username 要删除的用户的用户名
+     * @return 删除持久化后完成
+     */
+    public CompletableFuture<Void> submitDeleteUser(String username) {
+        if (writeBehindEnabled && username != null) {
+            return enqueue(new PendingWrite(PendingWrite.DELETE, username, null));
+        }
+        flushPendingWrites();
+        accessLock.lock();
+        try {
+            if (statements.deleteByUsername(username) > 0) {
+                changes.publish(new UserChange(UserChange.TYPE_DELETED, -1, username, null));
+            }
+        } finally {
+            accessLock.unlock();
+            cache.invalidateUsername(username);
+        }
+        return CompletableFuture.completedFuture(null);
     }
 
     /**
      * 更新指定用户的密码
+     * 写后模式下哈希完成后入队，立即返回；哈希线程池已满或哈希失败时不做任何修改，也不报告失败，
+     * 需要知道结果或确认持久化时使用 {@link #submitUpdateUserPassword(String, String)}
      *
      * @param username    要更新密码的用户的用户名
      * @param newPassword 新的原始密码
      */
     public void updateUserPassword(String username, String newPassword) {
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        ContentValues values = new ContentValues();
+        submitUpdateUserPassword(username, newPassword);
+    }
 
-        String hashedPassword = hashPassword(newPassword);
+    /**
+     * 更新指定用户的密码，返回持久化的 future
+     * 密码先提交到有界的哈希线程池计算，调用方线程等待结果但不参与计算；线程池已满或哈希失败时什么都不写入、不入队，
+     * 直接返回以异常完成的 future，旧密码保持有效
+     * 哈希完成后同步模式直接写入，写后模式入队，此后的登录立即使用新密码
+     *
+     * @param username    要更新密码的用户的用户名
+     * @param newPassword 新的原始密码
+     * @return 新密码持久化后完成；哈希线程池已满时立即以 {@link HashPoolBusyException} 完成，
+     * 哈希失败时立即以 IllegalStateException 完成，写后模式下写入失败时以写入的异常完成
+     */
+    public CompletableFuture<Void> submitUpdateUserPassword(String username, String newPassword) {
+        String hashedPassword;
+        try {
+            hashedPassword = hashPassword(newPassword);
+        } catch (HashPoolBusyException e) {
+            CompletableFuture<Void> busy = new CompletableFuture<>();
+            busy.completeExceptionally(e);
+            return busy;
+        }
         if (hashedPassword == null) {
             Log.e(TAG, "Password hashing failed, update aborted.");
-            return;
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("Password hashing failed"));
+            return failed;
+        }
+        if (writeBehindEnabled && username != null) {
+            return enqueue(new PendingWrite(PendingWrite.UPDATE_PASSWORD, username, hashedPassword));
+        }
+        flushPendingWrites();
+        accessLock.lock();
+        try {
+            if (statements.updatePasswordByUsername(username, hashedPassword) > 0) {
+                changes.publish(new UserChange(UserChange.TYPE_PASSWORD_CHANGED, -1, username, null));
+            }
+        } finally {
+            accessLock.unlock();
+            cache.invalidateUsername(username);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * 启用或关闭写后模式
+     * 启用后删除用户和修改密码先进入有界队列，由单个写线程合并成批、在一个事务中提交，
+     * 大量撤销或轮换凭据时不再每个操作各自等待一次磁盘同步；读操作会叠加排队中的写操作，登录结果不受影响
+     * 关闭后新的写操作恢复同步执行，并先等待队列中已有的写操作完成，保持执行顺序
+     *
+     * @param enabled 是否启用
+     */
+    public void setWriteBehindEnabled(boolean enabled) {
+        if (enabled && writeBehind == null) {
+            synchronized (writeBehindLock) {
+                if (writeBehind == null) {
+                    writeBehind = new WriteBehindQueue<>("user-write-behind", WRITE_BEHIND_CAPACITY,
+                            WRITE_BEHIND_MAX_BATCH, WRITE_BEHIND_LINGER_MS, this::writeBatch);
+                }
+            }
+        }
+        writeBehindEnabled = enabled;
+    }
+
+    /**
+     * 是否启用了写后模式
+     *
+     * @return 启用时返回 true
+     */
+    public boolean isWriteBehindEnabled() {
+        return writeBehindEnabled;
+    }
+
+    /**
+     * 等待所有已入队的写操作完成，没有启用过写后模式时立即返回
+     */
+    public void flushPendingWrites() {
+        WriteBehindQueue<PendingWrite> queue = writeBehind;
+        if (queue != null && queue.hasPending()) {
+            queue.flush();
+        }
+    }
+
+    /**
+     * 获取写后队列的统计信息
+     *
+     * @return 统计信息的文字描述
+     */
+    public String getWriteBehindStats() {
+        WriteBehindQueue<PendingWrite> queue = writeBehind;
+        if (queue == null) {
+            return "disabled";
+        }
+        return (writeBehindEnabled ? "enabled" : "draining") + ", queued=" + queue.size()
+                + ", pendingUsers=" + pendingWrites.size() + ", batches=" + queue.getBatchCount()
+                + ", writes=" + queue.getItemCount() + ", failed=" + queue.getFailureCount();
+    }
+
+    private CompletableFuture<Void> enqueue(PendingWrite write) {
+        // 同一用户名已有排队中的删除时，之后的改密不会让用户“复活”，保留删除状态
+        pendingWrites.merge(write.username, write,
+                (current, next) -> current.type == PendingWrite.DELETE && next.type == PendingWrite.UPDATE_PASSWORD ? current : next);
+        // 缓存中的旧密码和旧列表不能再被使用，快照版本也随之前进
+        cache.invalidateUsername(write.username);
+        CompletableFuture<Void> durable;
+        try {
+            durable = writeBehind.submit(write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pendingWrites.remove(write.username, write);
+            throw new IllegalStateException("Interrupted while queueing write for " + write.username, e);
+        } catch (RuntimeException e) {
+            pendingWrites.remove(write.username, write);
+            throw e;
+        }
+        durable.whenComplete((ignored, error) -> {
+            // 提交成功时写线程已经移除了叠加状态，这里处理写入失败的情况
+            pendingWrites.remove(write.username, write);
+            if (error != null) {
+                Log.e(TAG, "Write-behind " + write + " failed", error);
+            }
+        });
+        return durable;
+    }
+
+    /**
+     * 在写线程上把一批写操作放在一个事务中提交，提交后使缓存失效并通知变更
+     */
+    private void writeBatch(List<PendingWrite> batch) {
+        int[] rows = new int[batch.size()];
+        accessLock.lock();
+        try {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            GROUP_COMMIT_METRICS.run(() -> {
+                db.beginTransactionNonExclusive();
+                try {
+                    for (int i = 0; i < rows.length; i++) {
+                        PendingWrite write = batch.get(i);
+                        rows[i] = write.type == PendingWrite.DELETE
+                                ? statements.deleteByUsername(write.username)
+                                : statements.updatePasswordByUsername(write.username, write.hashedPassword);
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            });
+        } finally {
+            accessLock.unlock();
+        }
+        for (int i = 0; i < rows.length; i++) {
+            PendingWrite write = batch.get(i);
+            // 先使缓存失效再移除叠加状态，读操作在任何时刻看到的都是新状态；调用方的 future 完成时叠加状态已经移除
+            cache.invalidateUsername(write.username);
+            pendingWrites.remove(write.username, write);
+            if (rows[i] > 0) {
+                int type = write.type == PendingWrite.DELETE ? UserChange.TYPE_DELETED : UserChange.TYPE_PASSWORD_CHANGED;
+                changes.publish(new UserChange(type, -1, write.username, null));
+            }
+        }
+    }
+
+    /**
+     * 读取 (id, username, account) 三列的结果集，追加到列表中并关闭游标
+     */
+    private static void readUsers(Cursor cursor, List<User> users) {
+        try {
+            while (cursor.moveToNext()) {
+                users.add(new User(cursor.getLong(0), cursor.getString(1), cursor.getString(2), null));
+            }
+        } finally {
+            cursor.close();
         }
-        values.put(DatabaseHelper.COLUMN_PASSWORD, hashedPassword);
+    }
 
-        String selection = DatabaseHelper.COLUMN_USERNAME + " = ?";
-        String[] selectionArgs = {username};
-        db.update(DatabaseHelper.TABLE_USERS, values, selection, selectionArgs);
+    private PendingWrite pendingWrite(String username) {
+        return username == null || pendingWrites.isEmpty() ? null : pendingWrites.get(username);
+    }
+
+    private boolean isPendingDelete(String username) {
+        PendingWrite pending = pendingWrite(username);
+        return pending != null && pending.type == PendingWrite.DELETE;
+    }
+
+    /**
+     * 去掉删除尚在排队中的用户，没有排队中的写操作时直接返回原列表
+     */
+    private List<User> withoutPendingDeletes(List<User> users) {
+        if (pendingWrites.isEmpty()) {
+            return users;
+        }
+        List<User> visible = new ArrayList<>(users.size());
+        for (User user : users) {
+            if (!isPendingDelete(user.getUsername())) {
+                visible.add(user);
+            }
+        }
+        return visible;
+    }
+
+    /**
+     * 写后队列中的一个写操作
+     */
+    private static final class PendingWrite {
+        static final int DELETE = 0;
+        static final int UPDATE_PASSWORD = 1;
+
+        final int type;
+        final String username;
+        final String hashedPassword;
+
+        PendingWrite(int type, String username, String hashedPassword) {
+            this.type = type;
+            this.username = username;
+            this.hashedPassword = hashedPassword;
+        }
+
+        @Override
+        public String toString() {
+            return (type == DELETE ? "delete " : "updatePassword ") + username;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,254 @@
+package com.surpasslike.welcomateservice.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 写后队列：写操作先进入有界队列并立即返回，由单个写线程批量取出，在一个事务中提交（组提交）
+ * 一批在两种情况下提交：积累到 maxBatch 个，或者第一个写操作入队后等待了 lingerMs 毫秒
+ * 每个写操作对应一个 future，在它所在的事务提交后完成，调用方可以据此等待持久化
+ * 一批写入失败时逐个重试，只有真正失败的写操作以异常完成，不会连累同批的其他写操作
+ * 队列满时提交方阻塞，写入速度因此受限于磁盘，而不会无限占用内存
+ * 写操作按入队顺序执行；此类不依赖 Android API，可以直接在 JVM 上测试
+ *
+ * @param <T> 写操作的类型
+ */
+public class WriteBehindQueue<T> {
+
+    /**
+     * 空闲时写线程检查是否已关闭的间隔（毫秒）
+     * 关闭不使用中断，避免打断正在执行的事务
+     */
+    private static final long IDLE_POLL_MS = 200;
+
+    /**
+     * 批量执行写操作
+     *
+     * @param <T> 写操作的类型
+     */
+    public interface BatchWriter<T> {
+        /**
+         * 在一个事务中执行并提交一批写操作，返回即表示已经持久化
+         * 抛出异常时整批视为未执行
+         *
+         * @param batch 按入队顺序排列的写操作
+         * @throws Exception 写入失败
+         */
+        void write(List<T> batch) throws Exception;
+    }
+
+    private static final class Entry<T> {
+        final T item;
+        final CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        Entry(T item) {
+            this.item = item;
+        }
+    }
+
+    private final BlockingQueue<Entry<T>> queue;
+    private final int maxBatch;
+    private final long lingerNanos;
+    private final BatchWriter<T> writer;
+    private final Thread thread;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong items = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile CompletableFuture<Void> last = CompletableFuture.completedFuture(null);
+    private volatile boolean shutdown;
+
+    /**
+     * 构造函数，立即启动写线程
+     *
+     * @param name     写线程的名称
+     * @param capacity 队列容量
+     * @param maxBatch 每批最多的写操作数
+     * @param lingerMs 第一个写操作入队后最多等待多久再提交（毫秒），0 表示只合并已经在排队的写操作
+     * @param writer   批量执行写操作
+     */
+    public WriteBehindQueue(String name, int capacity, int maxBatch, long lingerMs, BatchWriter<T> writer) {
+        if (maxBatch <= 0) {
+            throw new IllegalArgumentException("maxBatch must be > 0: " + maxBatch);
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatch = maxBatch;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        this.writer = writer;
+        this.thread = new Thread(this::drain, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 提交一个写操作，队列满时阻塞直到有空位
+     *
+     * @param item 写操作
+     * @return 写操作所在的事务提交后完成；写入失败时以异常完成
+     * @throws InterruptedException  等待空位时被中断，写操作没有入队
+     * @throws IllegalStateException 队列已关闭
+     */
+    public CompletableFuture<Void> submit(T item) throws InterruptedException {
+        if (shutdown) {
+            throw new IllegalStateException("Write-behind queue is shut down");
+        }
+        Entry<T> entry = new Entry<>(item);
+        // 保证 last 的顺序与入队顺序一致，flush 才能以最后一个 future 代表之前的所有写操作
+        synchronized (this) {
+            queue.put(entry);
+            last = entry.durable;
+        }
+        if (shutdown && !thread.isAlive() && queue.remove(entry)) {
+            // 与 shutdown 竞争，写线程已经退出，不会再有人处理这个写操作
+            entry.durable.completeExceptionally(new IllegalStateException("Write-behind queue is shut down"));
+        }
+        return entry.durable;
+    }
+
+    /**
+     * 等待此前提交的所有写操作完成（成功或失败）
+     */
+    public void flush() {
+        CompletableFuture<Void> pending = last;
+        if (!pending.isDone() && Thread.currentThread() == thread) {
+            throw new IllegalStateException("flush() called from the writer thread");
+        }
+        try {
+            pending.join();
+        } catch (RuntimeException e) {
+            // 失败的写操作已经通过它自己的 future 报告
+        }
+    }
+
+    /**
+     * @return 正在排队、尚未开始写入的写操作数
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * 是否还有未完成的写操作
+     *
+     * @return 最后提交的写操作尚未完成时返回 true
+     */
+    public boolean hasPending() {
+        return !last.isDone();
+    }
+
+    /**
+     * 停止接收新的写操作，已入队的写操作仍会全部写入
+     */
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    /**
+     * @return 已提交的批次数
+     */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * @return 已成功写入的写操作数
+     */
+    public long getItemCount() {
+        return items.get();
+    }
+
+    /**
+     * @return 写入失败的写操作数
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    private void drain() {
+        List<Entry<T>> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            try {
+                Entry<T> first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (shutdown) {
+                        return; // 已关闭且队列已空
+                    }
+                    continue;
+                }
+                batch.add(first);
+                collect(batch);
+            } catch (InterruptedException e) {
+                // 写线程不响应中断，已取出的写操作照常提交
+                if (!batch.isEmpty()) {
+                    queue.drainTo(batch, maxBatch - batch.size());
+                }
+            }
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 在 linger 时间内继续收集写操作，直到批次已满
+     */
+    private void collect(List<Entry<T>> batch) throws InterruptedException {
+        queue.drainTo(batch, maxBatch - batch.size());
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < maxBatch && !shutdown) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            Entry<T> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            queue.drainTo(batch, maxBatch - batch.size());
+        }
+    }
+
+    private void commit(List<Entry<T>> batch) {
+        List<T> writes = new ArrayList<>(batch.size());
+        for (Entry<T> entry : batch) {
+            writes.add(entry.item);
+        }
+        try {
+            writer.write(writes);
+            batches.incrementAndGet();
+            items.addAndGet(batch.size());
+            for (Entry<T> entry : batch) {
+                entry.durable.complete(null);
+            }
+            return;
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                fail(batch.get(0), e);
+                return;
+            }
+        }
+        // 整批失败，逐个重试以找出真正失败的写操作
+        for (Entry<T> entry : batch) {
+            try {
+                writer.write(Collections.singletonList(entry.item));
+                batches.incrementAndGet();
+                items.incrementAndGet();
+                entry.durable.complete(null);
+            } catch (Exception e) {
+                fail(entry, e);
+            }
+        }
+    }
+
+    private void fail(Entry<T> entry, Exception e) {
+        failures.incrementAndGet();
+        entry.durable.completeExceptionally(e);
+    }
+}
@@ -0,0 +1,194 @@
+package com.surpasslike.welcomateservice.data.db;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 数据库的在线快照与恢复
+ * <p>
+ * 快照通过 VACUUM INTO 在一个单独的连接上生成：在 WAL 模式下它只是一个读事务，
+ * 不占用连接池中唯一的写连接，期间登录和写操作照常进行，得到的是开始时刻的一致副本，而不是可能被撕裂的文件拷贝
+ * 副本先写入临时文件并同步到磁盘，再重命名为目标文件，目标文件要么不存在，要么是完整的快照
+ * <p>
+ * 恢复时先把备份复制到数据库目录中并做完整性检查，然后持有 {@link DatabaseHelper#getAccessLock()} 的写锁：
+ * 等待所有正在使用旧库的线程完成，关闭数据库、删除旧的 WAL 和共享内存文件，再以重命名原子地替换数据库文件，
+ * 最后重新打开（较旧的备份会按正常流程升级）；不会有仍然打开着旧库的连接在替换之后写入或删除新库的 WAL
+ * 任何时刻进程被杀，数据库文件要么是旧库、要么是新库
+ */
+public class DatabaseBackup {
+    private static final String TAG = "DatabaseBackup";
+
+    private static final String[] SIDE_FILE_SUFFIXES = {"-wal", "-shm", "-journal"};
+
+    private final DatabaseHelper dbHelper;
+
+    /**
+     * 构造函数
+     *
+     * @param dbHelper 数据库帮助类
+     */
+    public DatabaseBackup(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * 生成数据库的一致快照，不阻塞并发的读写
+     *
+     * @param target 快照文件，已存在时被替换
+     * @return 快照文件的大小（字节）
+     * @throws IOException 写入或重命名快照文件失败
+     */
+    public long snapshot(File target) throws IOException {
+        File dir = target.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File tmp = new File(dir, target.getName() + ".tmp");
+        deleteWithSideFiles(tmp);
+
+        long start = System.nanoTime();
+        // 单独的连接同样打开着数据库文件，在它关闭之前恢复不能替换数据库
+        Lock access = dbHelper.getAccessLock().readLock();
+        access.lock();
+        try {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            // 单独的连接：VACUUM INTO 在 Android 看来是写语句，放在共享的数据库对象上会占用写连接直到快照完成
+            int flags = SQLiteDatabase.OPEN_READWRITE
+                    | (db.isWriteAheadLoggingEnabled() ? SQLiteDatabase.ENABLE_WRITE_AHEAD_LOGGING : 0);
+            try (SQLiteDatabase side = SQLiteDatabase.openDatabase(db.getPath(), null, flags)) {
+                side.execSQL("VACUUM INTO ?", new Object[]{tmp.getPath()});
+            } catch (SQLException e) {
+                deleteWithSideFiles(tmp);
+                throw new IOException("Snapshot of " + db.getPath() + " failed", e);
+            }
+        } finally {
+            access.unlock();
+        }
+        sync(tmp);
+        if (!tmp.renameTo(target)) {
+            deleteWithSideFiles(tmp);
+            throw new IOException("Cannot rename " + tmp + " to " + target);
+        }
+        Log.i(TAG, "Snapshot " + target + " (" + target.length() + " bytes) in "
+                + (System.nanoTime() - start) / 1_000_000 + "ms");
+        return target.length();
+    }
+
+    /**
+     * 用备份替换当前数据库
+     *
+     * @param source 由 {@link #snapshot(File)} 生成的备份文件
+     * @throws IOException 备份无法读取、未通过完整性检查或者版本比当前代码更新，此时当前数据库保持不变
+     * @see #restore(File, Runnable)
+     */
+    public void restore(File source) throws IOException {
+        restore(source, null);
+    }
+
+    /**
+     * 用备份替换当前数据库
+     * 替换前等待已经开始的数据库调用在旧库上完成，其结果随旧库一起丢弃；替换期间到达的调用等待新库打开后再执行
+     *
+     * @param source    由 {@link #snapshot(File)} 生成的备份文件
+     * @param onSwapped 新库打开后、其他线程恢复访问之前执行，用于丢弃从旧库得到的缓存和状态，可以为 null
+     * @throws IOException 备份无法读取、未通过完整性检查或者版本比当前代码更新，此时当前数据库保持不变
+     */
+    public void restore(File source, Runnable onSwapped) throws IOException {
+        File dbFile = new File(dbHelper.getWritableDatabase().getPath());
+        // 暂存文件与数据库在同一目录，保证重命名是原子的
+        File staging = new File(dbFile.getPath() + ".restore");
+        deleteWithSideFiles(staging);
+        try {
+            copy(source, staging);
+            verify(staging);
+            sync(staging);
+            Lock access = dbHelper.getAccessLock().writeLock();
+            access.lock();
+            try {
+                // 同时持有 SQLiteOpenHelper 的锁，没有持有读锁的 getWritableDatabase 也不会在替换中途打开旧文件
+                synchronized (dbHelper) {
+                    dbHelper.close();
+                    // 旧库的 WAL 不能留给新库；在重命名之前被杀时，旧库只是丢失最后一个检查点之后的提交，仍然是一致的
+                    deleteSideFiles(dbFile);
+                    if (!staging.renameTo(dbFile)) {
+                        throw new IOException("Cannot rename " + staging + " to " + dbFile);
+                    }
+                    dbHelper.getWritableDatabase();
+                }
+                if (onSwapped != null) {
+                    onSwapped.run();
+                }
+            } finally {
+                access.unlock();
+            }
+            Log.i(TAG, "Restored " + dbFile + " from " + source);
+        } finally {
+            deleteWithSideFiles(staging);
+        }
+    }
+
+    /**
+     * 检查备份是一个完整的、本版本能够打开的用户数据库
+     */
+    private static void verify(File file) throws IOException {
+        try (SQLiteDatabase db = SQLiteDatabase.openDatabase(file.getPath(), null, SQLiteDatabase.OPEN_READWRITE)) {
+            try (Cursor cursor = db.rawQuery("PRAGMA quick_check", null)) {
+                String result = cursor.moveToFirst() ? cursor.getString(0) : null;
+                if (!"ok".equals(result)) {
+                    throw new IOException("Backup " + file + " is corrupt: " + result);
+                }
+            }
+            int version = db.getVersion();
+            if (version < 1 || version > DatabaseHelper.DATABASE_VERSION) {
+                throw new IOException("Backup " + file + " has unsupported version " + version);
+            }
+            if (DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = ?",
+                    new String[]{DatabaseHelper.TABLE_USERS}) == 0) {
+                throw new IOException("Backup " + file + " has no " + DatabaseHelper.TABLE_USERS + " table");
+            }
+        } catch (SQLException e) {
+            throw new IOException("Cannot open backup " + file, e);
+        }
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(from); FileOutputStream out = new FileOutputStream(to)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+
+    /**
+     * 把文件内容同步到磁盘，之后的重命名才不会在断电后指向一个不完整的文件
+     */
+    private static void sync(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.getFD().sync();
+        }
+    }
+
+    private static void deleteSideFiles(File dbFile) {
+        for (String suffix : SIDE_FILE_SUFFIXES) {
+            new File(dbFile.getPath() + suffix).delete();
+        }
+    }
+
+    private static void deleteWithSideFiles(File dbFile) {
+        dbFile.delete();
+        deleteSideFiles(dbFile);
+    }
+}
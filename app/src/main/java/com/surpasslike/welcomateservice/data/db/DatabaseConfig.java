@@ -0,0 +1,80 @@
+package com.surpasslike.welcomateservice.data.db;
+
+/**
+ * 数据库连接配置
+ * 控制数据库文件名、日志模式、同步模式以及连接池中空闲连接的保留时间
+ */
+public class DatabaseConfig {
+
+    /**
+     * 同步模式：在 WAL 模式下，NORMAL 只在检查点时同步磁盘，提交不再逐次 fsync
+     */
+    public static final String SYNCHRONOUS_NORMAL = "NORMAL";
+
+    /**
+     * 同步模式：每次提交都同步磁盘，最安全也最慢
+     */
+    public static final String SYNCHRONOUS_FULL = "FULL";
+
+    /**
+     * 默认配置：users.db，启用 WAL，同步模式为 NORMAL，空闲连接保留 30 秒
+     */
+    public static final DatabaseConfig DEFAULT =
+            new DatabaseConfig("users.db", true, SYNCHRONOUS_NORMAL, 30_000L);
+
+    private final String name;
+    private final boolean writeAheadLogging;
+    private final String synchronousMode;
+    private final long idleConnectionTimeoutMs;
+
+    /**
+     * 构造函数
+     *
+     * @param name                    数据库文件名
+     * @param writeAheadLogging       是否启用预写日志 (WAL)，启用后读操作可以与写事务并发进行
+     * @param synchronousMode         SQLite 同步模式，例如 {@link #SYNCHRONOUS_NORMAL}
+     * @param idleConnectionTimeoutMs 连接池中的只读连接空闲多久后被关闭（毫秒）
+     */
+    public DatabaseConfig(String name, boolean writeAheadLogging, String synchronousMode, long idleConnectionTimeoutMs) {
+        this.name = name;
+        this.writeAheadLogging = writeAheadLogging;
+        this.synchronousMode = synchronousMode;
+        this.idleConnectionTimeoutMs = idleConnectionTimeoutMs;
+    }
+
+    /**
+     * 获取数据库文件名
+     *
+     * @return 数据库文件名
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 是否启用预写日志 (WAL)
+     *
+     * @return 启用时返回 true
+     */
+    public boolean isWriteAheadLogging() {
+        return writeAheadLogging;
+    }
+
+    /**
+     * 获取 SQLite 同步模式
+     *
+     * @return 同步模式字符串
+     */
+    public String getSynchronousMode() {
+        return synchronousMode;
+    }
+
+    /**
+     * 获取空闲连接的保留时间
+     *
+     * @return 毫秒数
+     */
+    public long getIdleConnectionTimeoutMs() {
+        return idleConnectionTimeoutMs;
+    }
+}
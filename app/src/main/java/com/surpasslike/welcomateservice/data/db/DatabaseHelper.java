@@ -1,20 +1,31 @@
 package com.surpasslike.welcomateservice.data.db;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
 
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 /**
  * 数据库帮助类，用于创建和管理应用的 SQLite 数据库
  * 此类负责处理数据库的创建、版本升级等
+ * 升级通过 {@link #MIGRATIONS} 中按版本排列的迁移步骤逐步完成，不会丢弃已有数据；
+ * 需要逐行搬迁的数据由 {@link MigrationRunner} 在数据库打开后分批执行
  */
 public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String TAG = "DatabaseHelper";
 
     // 数据库和表的常量定义
-    private static final String DATABASE_NAME = "users.db";
-    private static final int DATABASE_VERSION = 1;
+    // 版本 2：为 username 列添加索引
+    // 版本 3：添加用户名和账户的全文索引
+    static final int DATABASE_VERSION = 3;
 
     public static final String TABLE_USERS = "users";
     public static final String COLUMN_ID = "id";
@@ -35,12 +46,156 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                     ")";
 
     /**
-     * 构造函数
+     * account 列 UNIQUE 约束对应的索引，由 SQLite 按 sqlite_autoindex_表名_序号 自动命名，按账户登录时走这个索引
+     */
+    public static final String INDEX_USERS_ACCOUNT = "sqlite_autoindex_" + TABLE_USERS + "_1";
+
+    public static final String INDEX_USERS_USERNAME = "idx_users_username";
+
+    /**
+     * 创建用户名索引的 SQL 语句
+     * 按用户名删除和修改密码都以 username 过滤，没有索引时每次都是全表扫描
+     * 索引不是唯一索引：旧版本从未限制用户名唯一，已有数据中可能存在重名用户，
+     * 而按用户名删除/改密本身也是作用于该用户名下的所有账户；账户仍由 UNIQUE 约束保证唯一
+     */
+    private static final String CREATE_INDEX_USERS_USERNAME =
+            "CREATE INDEX IF NOT EXISTS " + INDEX_USERS_USERNAME +
+                    " ON " + TABLE_USERS + " (" + COLUMN_USERNAME + ")";
+
+    public static final String TABLE_USERS_FTS = "users_fts";
+
+    /**
+     * 创建用户名和账户全文索引的 SQL 语句
+     * 使用 FTS4 默认的 simple 分词器，所有设备都支持；prefix 选项为 2、3 个字符的前缀额外建索引，边输入边搜索时短前缀也很快
+     * 全文表自行保存一份用户名和账户（不使用外部内容表），删除尚未回填的行时不会破坏索引
+     * docid 与 users 表的 id 相同
+     */
+    private static final String CREATE_TABLE_USERS_FTS =
+            "CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_USERS_FTS + " USING fts4(" +
+                    COLUMN_USERNAME + ", " + COLUMN_ACCOUNT + ", prefix=\"2,3\")";
+
+    /**
+     * 使全文索引与用户表保持同步的触发器
+     * 修改密码不会触发重建索引，只有用户名或账户变化时才更新
+     */
+    private static final String[] CREATE_TRIGGERS_USERS_FTS = {
+            "CREATE TRIGGER IF NOT EXISTS users_fts_ai AFTER INSERT ON " + TABLE_USERS + " BEGIN " +
+                    "INSERT INTO " + TABLE_USERS_FTS + " (docid, " + COLUMN_USERNAME + ", " + COLUMN_ACCOUNT + ")" +
+                    " VALUES (new." + COLUMN_ID + ", new." + COLUMN_USERNAME + ", new." + COLUMN_ACCOUNT + "); END",
+            "CREATE TRIGGER IF NOT EXISTS users_fts_ad AFTER DELETE ON " + TABLE_USERS + " BEGIN " +
+                    "DELETE FROM " + TABLE_USERS_FTS + " WHERE docid = old." + COLUMN_ID + "; END",
+            "CREATE TRIGGER IF NOT EXISTS users_fts_au AFTER UPDATE OF " + COLUMN_USERNAME + ", " + COLUMN_ACCOUNT +
+                    " ON " + TABLE_USERS + " BEGIN " +
+                    "UPDATE " + TABLE_USERS_FTS + " SET " + COLUMN_USERNAME + " = new." + COLUMN_USERNAME + ", " +
+                    COLUMN_ACCOUNT + " = new." + COLUMN_ACCOUNT + " WHERE docid = old." + COLUMN_ID + "; END"
+    };
+
+    /**
+     * 把一段 ID 范围内的已有用户补进全文索引，跳过迁移开始后已由触发器写入的行
+     */
+    private static final String SQL_BACKFILL_USERS_FTS =
+            "INSERT INTO " + TABLE_USERS_FTS + " (docid, " + COLUMN_USERNAME + ", " + COLUMN_ACCOUNT + ")" +
+                    " SELECT " + COLUMN_ID + ", " + COLUMN_USERNAME + ", " + COLUMN_ACCOUNT + " FROM " + TABLE_USERS +
+                    " WHERE " + COLUMN_ID + " > ?1 AND " + COLUMN_ID + " <= ?2 AND " + COLUMN_ID + " NOT IN" +
+                    " (SELECT docid FROM " + TABLE_USERS_FTS + " WHERE docid > ?1 AND docid <= ?2)";
+
+    /**
+     * 按版本升序排列的迁移步骤，新增版本时在末尾追加一步并提升 {@link #DATABASE_VERSION}
+     */
+    static final List<Migration> MIGRATIONS = Collections.unmodifiableList(Arrays.asList(
+            new Migration(2) {
+                @Override
+                public void migrateSchema(SQLiteDatabase db) {
+                    db.execSQL(CREATE_INDEX_USERS_USERNAME);
+                }
+            },
+            new Migration(3) {
+                @Override
+                public void migrateSchema(SQLiteDatabase db) {
+                    createSearchIndex(db);
+                }
+
+                @Override
+                public boolean hasDataMigration() {
+                    return true;
+                }
+
+                @Override
+                public long migrateBatch(SQLiteDatabase db, long afterId, int batchSize) {
+                    long last;
+                    String[] args = {Long.toString(afterId), Integer.toString(batchSize)};
+                    try (Cursor cursor = db.rawQuery("SELECT MAX(" + COLUMN_ID + ") FROM (SELECT " + COLUMN_ID +
+                            " FROM " + TABLE_USERS + " WHERE " + COLUMN_ID + " > ? ORDER BY " + COLUMN_ID + " LIMIT ?)", args)) {
+                        if (!cursor.moveToFirst() || cursor.isNull(0)) {
+                            return DONE;
+                        }
+                        last = cursor.getLong(0);
+                    }
+                    db.execSQL(SQL_BACKFILL_USERS_FTS, new Object[]{afterId, last});
+                    return last;
+                }
+            }
+    ));
+
+    private final DatabaseConfig config;
+    private final List<Migration> migrations;
+    private final ReentrantReadWriteLock accessLock = new ReentrantReadWriteLock();
+
+    /**
+     * 构造函数，使用默认配置
      *
      * @param context 应用上下文
      */
     public DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DatabaseConfig.DEFAULT);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param context 应用上下文
+     * @param config  数据库连接配置
+     */
+    public DatabaseHelper(Context context, DatabaseConfig config) {
+        this(context, config, DATABASE_VERSION, MIGRATIONS);
+    }
+
+    /**
+     * 使用指定的版本和迁移步骤创建，仅供测试使用
+     *
+     * @param context    应用上下文
+     * @param config     数据库连接配置
+     * @param version    数据库版本
+     * @param migrations 按版本升序排列的迁移步骤
+     */
+    @VisibleForTesting
+    DatabaseHelper(Context context, DatabaseConfig config, int version, List<Migration> migrations) {
+        super(context, config.getName(), null, version);
+        this.config = config;
+        this.migrations = migrations;
+        setOpenParams(new SQLiteDatabase.OpenParams.Builder()
+                .setSynchronousMode(config.getSynchronousMode())
+                .setIdleConnectionTimeout(config.getIdleConnectionTimeoutMs())
+                .build());
+    }
+
+    /**
+     * 在数据库打开后、建表或升级之前调用，用于配置连接
+     * 启用 WAL 后，写事务进行时 Binder 线程上的登录查询可以使用连接池中的只读连接并发执行
+     * 新建的数据库启用增量 vacuum，删除用户留下的空闲页可以由 {@link DatabaseMaintenance} 逐步回收；
+     * 已有的数据库设置此项不会立即生效，由维护在空闲时做一次完整的 VACUUM 来启用
+     *
+     * @param db SQLiteDatabase 实例
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+        if (config.isWriteAheadLogging()) {
+            db.enableWriteAheadLogging();
+        } else {
+            db.disableWriteAheadLogging();
+        }
     }
 
     /**
@@ -52,11 +207,16 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public void onCreate(SQLiteDatabase db) {
         Log.d(TAG, "Creating database and users table...");
         db.execSQL(CREATE_TABLE_USERS);
+        db.execSQL(CREATE_INDEX_USERS_USERNAME);
+        createSearchIndex(db);
+        db.execSQL(MigrationRunner.CREATE_TABLE_MIGRATION_STATE);
         Log.d(TAG, "Database created successfully.");
     }
 
     /**
      * 在数据库版本需要升级时调用
+     * 按版本依次执行每个迁移步骤的结构变更，保留已有的用户数据；整个过程由 SQLiteOpenHelper 包在同一个事务中
+     * 需要搬迁数据的步骤只在这里登记，实际搬迁由 {@link MigrationRunner} 在事务之外分批完成
      *
      * @param db         SQLiteDatabase 实例
      * @param oldVersion 旧版本号
@@ -64,11 +224,51 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        Log.w(TAG, "Upgrading database from version " + oldVersion + " to " + newVersion + ", which will destroy all old data.");
-        // 简单的升级策略：删除旧表并重新创建
-        // 注意：在生产环境中，这应该被一个迁移策略所取代，以保留用户数据
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
-        onCreate(db);
+        Log.i(TAG, "Upgrading database from version " + oldVersion + " to " + newVersion);
+        db.execSQL(MigrationRunner.CREATE_TABLE_MIGRATION_STATE);
+        for (Migration migration : migrations) {
+            int version = migration.getVersion();
+            if (version > oldVersion && version <= newVersion) {
+                Log.d(TAG, "Applying schema changes of " + migration);
+                migration.migrateSchema(db);
+                if (migration.hasDataMigration()) {
+                    MigrationRunner.schedule(db, migration);
+                }
+            }
+        }
         Log.d(TAG, "Database upgraded successfully.");
     }
+
+    /**
+     * 创建全文索引及其同步触发器，已有的用户需要另外回填
+     *
+     * @param db SQLiteDatabase 实例
+     */
+    private static void createSearchIndex(SQLiteDatabase db) {
+        db.execSQL(CREATE_TABLE_USERS_FTS);
+        for (String trigger : CREATE_TRIGGERS_USERS_FTS) {
+            db.execSQL(trigger);
+        }
+    }
+
+    /**
+     * 获取数据库的访问锁
+     * 每次使用数据库（查询、写事务、维护的每一步、迁移的每一批、快照）都持有读锁，读锁之间互不阻塞；
+     * 恢复在替换数据库文件时持有写锁，等待已经开始的使用完成，替换期间到达的使用等待新库打开
+     * 持有读锁时不能等待写后队列或密码哈希线程池，这些线程自己也会获取读锁
+     *
+     * @return 访问锁
+     */
+    public ReentrantReadWriteLock getAccessLock() {
+        return accessLock;
+    }
+
+    /**
+     * 获取按版本升序排列的迁移步骤
+     *
+     * @return 迁移步骤列表
+     */
+    public List<Migration> getMigrations() {
+        return migrations;
+    }
 }
@@ -0,0 +1,398 @@
+package com.surpasslike.welcomateservice.data.db;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.io.PrintWriter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 空闲时的数据库维护：WAL 检查点、增量 vacuum 回收空闲页、ANALYZE / PRAGMA optimize 更新查询规划器的统计信息
+ * 维护在单独的后台线程上定期执行，每一步都是一个短事务，按时间片推进，步与步之间释放写锁；
+ * 最近 {@link #IDLE_MS} 毫秒内有请求到达时暂停，等服务空闲后再继续，不与登录、注册等请求争抢数据库
+ * 每一步都持有 {@link DatabaseHelper#getAccessLock()} 的读锁，停顿和等待空闲时释放，恢复数据库最多等待一个时间片；
+ * 数据库在两步之间被恢复操作替换时，旧库已经关闭，本次维护以失败结束，下一个周期在新库上进行
+ * 每次维护的结果（回收的页数、检查点写回的帧数、是否更新了统计信息）保留下来，在服务的 dump 中输出
+ */
+public class DatabaseMaintenance {
+    private static final String TAG = "DatabaseMaintenance";
+
+    /**
+     * 服务启动后第一次维护的延迟（毫秒），避开启动时的请求高峰
+     */
+    public static final long INITIAL_DELAY_MS = TimeUnit.MINUTES.toMillis(2);
+
+    /**
+     * 两次维护之间的间隔（毫秒）
+     */
+    public static final long INTERVAL_MS = TimeUnit.MINUTES.toMillis(30);
+
+    /**
+     * 最近一次请求之后多久没有新请求才视为空闲（毫秒）
+     */
+    static final long IDLE_MS = 2_000;
+
+    /**
+     * 一直不空闲时最多等待多久（毫秒），超过后放弃本次维护，等下一个周期
+     */
+    static final long MAX_DEFER_MS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * 每个时间片的长度（毫秒），时间片之间停顿 {@link #PAUSE_MS} 毫秒并重新检查是否空闲
+     */
+    static final long SLICE_MS = 20;
+
+    /**
+     * 两个时间片之间的停顿（毫秒），让等待中的写操作有机会获得写锁
+     */
+    static final long PAUSE_MS = 50;
+
+    /**
+     * 每步增量 vacuum 回收的页数，每步一个短事务
+     */
+    static final int VACUUM_STEP_PAGES = 64;
+
+    /**
+     * 旧数据库没有启用增量 vacuum 时，空闲页至少达到多少才做一次性的完整 VACUUM 来启用它
+     */
+    static final long CONVERT_MIN_FREE_PAGES = 256;
+
+    /**
+     * ANALYZE 每个索引最多检查的行数，使统计信息的更新时间与表的大小无关
+     */
+    private static final int ANALYSIS_LIMIT = 400;
+
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    /**
+     * 一次维护的结果
+     */
+    public static final class Report {
+        long startMillis;
+        long durationMs;
+        long pagesBefore;
+        long pagesAfter;
+        long freePagesBefore;
+        long freePagesAfter;
+        long pageSize;
+        long walFrames = -1;
+        long walCheckpointed = -1;
+        boolean converted;
+        boolean analyzed;
+        int deferrals;
+        boolean completed;
+        String error;
+
+        /**
+         * @return 本次回收的字节数
+         */
+        public long getReclaimedBytes() {
+            return Math.max(0, pagesBefore - pagesAfter) * pageSize;
+        }
+
+        /**
+         * @return 是否执行完所有步骤，因一直不空闲或出错而中止时为 false
+         */
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        /**
+         * @return 维护结束时剩余的空闲页数
+         */
+        public long getFreePagesAfter() {
+            return freePagesAfter;
+        }
+
+        /**
+         * @return 是否更新了查询规划器的统计信息
+         */
+        public boolean isAnalyzed() {
+            return analyzed;
+        }
+
+        /**
+         * @return 因为有请求而暂停的次数
+         */
+        public int getDeferrals() {
+            return deferrals;
+        }
+
+        @Override
+        public String toString() {
+            return (completed ? "completed" : "aborted" + (error != null ? " (" + error + ")" : ""))
+                    + " in " + durationMs + "ms"
+                    + ", pages " + pagesBefore + "->" + pagesAfter
+                    + ", free " + freePagesBefore + "->" + freePagesAfter
+                    + ", reclaimed " + getReclaimedBytes() / 1024 + "KiB"
+                    + (converted ? ", enabled incremental vacuum" : "")
+                    + ", wal checkpointed " + walCheckpointed + "/" + walFrames + " frames"
+                    + ", analyzed=" + analyzed
+                    + ", deferrals=" + deferrals;
+        }
+    }
+
+    private final DatabaseHelper dbHelper;
+    private final Lock accessLock;
+    private final ScheduledExecutorService executor;
+    private final long idleNanos;
+    private volatile long lastActivityNanos = System.nanoTime();
+    private volatile Report lastReport;
+    private ScheduledFuture<?> periodic;
+    private long runs;
+    private long totalReclaimedBytes;
+
+    /**
+     * 构造函数，不会立即开始维护，需要调用 {@link #start()}
+     *
+     * @param dbHelper 数据库帮助类
+     */
+    public DatabaseMaintenance(DatabaseHelper dbHelper) {
+        this(dbHelper, IDLE_MS);
+    }
+
+    @VisibleForTesting
+    DatabaseMaintenance(DatabaseHelper dbHelper, long idleMs) {
+        this.dbHelper = dbHelper;
+        this.accessLock = dbHelper.getAccessLock().readLock();
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMs);
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-maintenance");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * 开始定期维护，重复调用无效
+     */
+    public synchronized void start() {
+        if (periodic == null) {
+            periodic = executor.scheduleWithFixedDelay(this::runQuietly, INITIAL_DELAY_MS, INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 停止定期维护，正在进行的维护会在当前步骤结束后中止
+     */
+    public synchronized void stop() {
+        if (periodic != null) {
+            periodic.cancel(true);
+            periodic = null;
+        }
+    }
+
+    /**
+     * 立即在维护线程上执行一次维护，不影响定期维护的节奏
+     */
+    public void requestRun() {
+        executor.execute(this::runQuietly);
+    }
+
+    /**
+     * 记录一次请求，之后 {@link #IDLE_MS} 毫秒内维护暂停
+     * 在每个请求的入口调用，开销只是一次 volatile 写
+     */
+    public void noteActivity() {
+        lastActivityNanos = System.nanoTime();
+    }
+
+    /**
+     * 获取最近一次维护的结果
+     *
+     * @return 还没有执行过维护时返回 null
+     */
+    public Report getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * 输出维护的统计信息
+     *
+     * @param writer 输出目标
+     */
+    public void dump(PrintWriter writer) {
+        Report report = lastReport;
+        synchronized (this) {
+            writer.println("Database maintenance: runs=" + runs + ", reclaimed " + totalReclaimedBytes / 1024 + "KiB total");
+        }
+        writer.println("  last run: " + (report == null ? "never" : report));
+    }
+
+    private void runQuietly() {
+        try {
+            runNow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 在当前线程上执行一次完整的维护，等待空闲时阻塞
+     *
+     * @return 维护结果
+     * @throws InterruptedException 等待空闲时被中断，已完成的步骤仍然有效
+     */
+    @VisibleForTesting
+    Report runNow() throws InterruptedException {
+        Report report = new Report();
+        report.startMillis = System.currentTimeMillis();
+        long start = System.nanoTime();
+        try {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            report.pageSize = pragma(db, "page_size");
+            report.pagesBefore = pragma(db, "page_count");
+            report.freePagesBefore = pragma(db, "freelist_count");
+            report.completed = awaitIdle(report) && checkpoint(db, report)
+                    && vacuum(db, report) && analyze(db, report);
+            report.pagesAfter = pragma(db, "page_count");
+            report.freePagesAfter = pragma(db, "freelist_count");
+        } catch (SQLException | IllegalStateException e) {
+            // 维护期间数据库可能被恢复操作关闭，下一个周期再继续
+            Log.w(TAG, "Maintenance failed", e);
+            report.error = e.toString();
+        } finally {
+            report.durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            lastReport = report;
+            synchronized (this) {
+                runs++;
+                totalReclaimedBytes += report.getReclaimedBytes();
+            }
+        }
+        Log.i(TAG, "Maintenance " + report);
+        return report;
+    }
+
+    /**
+     * 被动检查点：只写回不与读写冲突的 WAL 帧，从不等待锁
+     */
+    private boolean checkpoint(SQLiteDatabase db, Report report) {
+        accessLock.lock();
+        try (Cursor cursor = db.rawQuery("PRAGMA wal_checkpoint(PASSIVE)", null)) {
+            if (cursor.moveToFirst()) {
+                report.walFrames = cursor.getLong(1);
+                report.walCheckpointed = cursor.getLong(2);
+            }
+        } finally {
+            accessLock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * 按时间片逐步回收空闲页，每步一个短事务
+     * 旧数据库没有启用增量 vacuum 时，空闲页足够多才做一次完整的 VACUUM 来启用，之后的维护都是增量的
+     */
+    private boolean vacuum(SQLiteDatabase db, Report report) throws InterruptedException {
+        if (pragma(db, "auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+            if (pragma(db, "freelist_count") < CONVERT_MIN_FREE_PAGES || !awaitIdle(report)) {
+                return true;
+            }
+            Log.i(TAG, "Enabling incremental vacuum, rebuilding database once");
+            accessLock.lock();
+            try {
+                db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+                db.execSQL("VACUUM");
+            } finally {
+                accessLock.unlock();
+            }
+            report.converted = true;
+            return true;
+        }
+        while (pragma(db, "freelist_count") > 0) {
+            if (!awaitIdle(report)) {
+                return false;
+            }
+            long sliceEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SLICE_MS);
+            accessLock.lock();
+            try {
+                do {
+                    db.beginTransactionNonExclusive();
+                    try {
+                        // 必须读完结果，每读一行回收一页
+                        try (Cursor cursor = db.rawQuery("PRAGMA incremental_vacuum(" + VACUUM_STEP_PAGES + ")", null)) {
+                            cursor.getCount();
+                        }
+                        db.setTransactionSuccessful();
+                    } finally {
+                        db.endTransaction();
+                    }
+                } while (System.nanoTime() < sliceEnd && pragma(db, "freelist_count") > 0);
+            } finally {
+                accessLock.unlock();
+            }
+            Thread.sleep(PAUSE_MS);
+        }
+        return true;
+    }
+
+    /**
+     * 从未收集过统计信息时执行 ANALYZE，否则交给 PRAGMA optimize 判断哪些表需要重新统计
+     * analysis_limit 限制每个索引检查的行数，使耗时与表的大小无关
+     */
+    private boolean analyze(SQLiteDatabase db, Report report) throws InterruptedException {
+        if (!awaitIdle(report)) {
+            return false;
+        }
+        accessLock.lock();
+        try {
+            db.execSQL("PRAGMA analysis_limit = " + ANALYSIS_LIMIT);
+            boolean hasStats = DatabaseUtils.longForQuery(db,
+                    "SELECT COUNT(*) FROM sqlite_master WHERE name = 'sqlite_stat1'", null) > 0;
+            if (hasStats) {
+                try (Cursor cursor = db.rawQuery("PRAGMA optimize", null)) {
+                    cursor.getCount();
+                }
+            } else {
+                db.execSQL("ANALYZE");
+            }
+        } finally {
+            accessLock.unlock();
+        }
+        report.analyzed = true;
+        return true;
+    }
+
+    /**
+     * 等待直到最近 {@link #IDLE_MS} 毫秒内没有请求
+     *
+     * @return 空闲时返回 true；等待超过 {@link #MAX_DEFER_MS} 毫秒时返回 false
+     */
+    private boolean awaitIdle(Report report) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_DEFER_MS);
+        while (true) {
+            long busyFor = lastActivityNanos + idleNanos - System.nanoTime();
+            if (busyFor <= 0) {
+                return true;
+            }
+            if (System.nanoTime() + busyFor > deadline) {
+                Log.d(TAG, "Service busy, deferring maintenance to the next run");
+                return false;
+            }
+            report.deferrals++;
+            TimeUnit.NANOSECONDS.sleep(busyFor);
+        }
+    }
+
+    /**
+     * 在读锁内读取一个 PRAGMA 的值
+     */
+    private long pragma(SQLiteDatabase db, String name) {
+        accessLock.lock();
+        try {
+            return DatabaseUtils.longForQuery(db, "PRAGMA " + name, null);
+        } finally {
+            accessLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.surpasslike.welcomateservice.data.db;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * 一个数据库版本的迁移步骤
+ * 迁移分为两部分：
+ * <ul>
+ *     <li>{@link #migrateSchema(SQLiteDatabase)}：在 onUpgrade 的事务中执行，只应包含建表、加列、建索引等快速的结构变更</li>
+ *     <li>{@link #migrateBatch(SQLiteDatabase, long, int)}：数据迁移，由 {@link MigrationRunner} 在数据库打开之后分批执行，
+ *     每批一个短事务，处理进度持久化到 migration_state 表中，进程被杀后可以从上次的位置继续</li>
+ * </ul>
+ * 数据迁移进行期间旧的读写路径仍在使用，因此迁移应采用“先扩展、后收缩”的方式：
+ * 先添加新结构并保持旧结构可用，全部数据搬完后再在 {@link #finish(SQLiteDatabase)} 中切换
+ */
+public abstract class Migration {
+
+    /**
+     * {@link #migrateBatch(SQLiteDatabase, long, int)} 的返回值，表示没有更多数据需要迁移
+     */
+    public static final long DONE = -1;
+
+    private final int version;
+
+    /**
+     * 构造函数
+     *
+     * @param version 执行此迁移后的数据库版本
+     */
+    protected Migration(int version) {
+        this.version = version;
+    }
+
+    /**
+     * @return 执行此迁移后的数据库版本
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * 执行结构变更，在 onUpgrade 的事务中调用，期间会持有写锁，因此不能包含按行处理的数据搬迁
+     *
+     * @param db SQLiteDatabase 实例
+     */
+    public abstract void migrateSchema(SQLiteDatabase db);
+
+    /**
+     * 是否有需要在后台分批执行的数据迁移
+     *
+     * @return 有数据迁移时返回 true，默认没有
+     */
+    public boolean hasDataMigration() {
+        return false;
+    }
+
+    /**
+     * 迁移一批数据，调用方已开启事务，方法返回后提交事务并保存进度
+     * 实现应按主键等单调递增的位置推进，使重复执行同一批次不会产生副作用
+     *
+     * @param db        SQLiteDatabase 实例
+     * @param afterId   上一批处理到的位置（不含），首次调用为 0
+     * @param batchSize 本批最多处理的行数
+     * @return 本批处理到的位置，没有更多数据时返回 {@link #DONE}
+     */
+    public long migrateBatch(SQLiteDatabase db, long afterId, int batchSize) {
+        return DONE;
+    }
+
+    /**
+     * 所有批次完成后调用，与最后一批在同一事务中执行，用于切换到新结构或清理旧结构
+     *
+     * @param db SQLiteDatabase 实例
+     */
+    public void finish(SQLiteDatabase db) {
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{version=" + version + "}";
+    }
+}
@@ -0,0 +1,223 @@
+package com.surpasslike.welcomateservice.data.db;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 分批执行数据迁移，并把进度持久化到 migration_state 表
+ * onUpgrade 只完成结构变更并登记需要搬迁数据的版本，数据库打开之后由此类在后台线程中逐批处理：
+ * 每批一个短事务，批与批之间释放写锁并短暂停顿，使注册、改密等写操作不会被长时间阻塞
+ * （WAL 模式下登录等读操作本来就不会被写事务阻塞）
+ * 进度与每批的数据在同一事务中提交，进程在任意时刻被杀，下次启动都会从最后一个已提交的批次之后继续
+ * 每批持有 {@link DatabaseHelper#getAccessLock()} 的读锁；数据库在两批之间被恢复操作替换时，
+ * 旧库已经关闭，下一批抛出 IllegalStateException，由恢复之后重新启动的迁移在新库上继续
+ */
+public class MigrationRunner {
+    private static final String TAG = "MigrationRunner";
+
+    /**
+     * 默认每批处理的行数
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * 默认两批之间的停顿时间（毫秒），让等待中的写操作有机会获得写锁
+     */
+    public static final long DEFAULT_PAUSE_MS = 10;
+
+    static final String TABLE_MIGRATION_STATE = "migration_state";
+    private static final String COLUMN_VERSION = "version";
+    private static final String COLUMN_AFTER_ID = "after_id";
+    private static final String COLUMN_BATCHES = "batches";
+
+    /**
+     * 创建迁移进度表的 SQL 语句，每个待完成的数据迁移对应一行
+     */
+    static final String CREATE_TABLE_MIGRATION_STATE =
+            "CREATE TABLE IF NOT EXISTS " + TABLE_MIGRATION_STATE + " (" +
+                    COLUMN_VERSION + " INTEGER PRIMARY KEY, " +
+                    COLUMN_AFTER_ID + " INTEGER NOT NULL DEFAULT 0, " +
+                    COLUMN_BATCHES + " INTEGER NOT NULL DEFAULT 0" +
+                    ")";
+
+    /**
+     * 迁移进度的回调，在执行迁移的线程上调用
+     */
+    public interface ProgressListener {
+        /**
+         * 一批数据已提交
+         *
+         * @param migration 正在执行的迁移
+         * @param position  已处理到的位置
+         * @param batches   该迁移累计完成的批次数（包括进程重启之前的批次）
+         */
+        void onBatchCompleted(Migration migration, long position, long batches);
+
+        /**
+         * 迁移的所有数据已搬迁完成，{@link Migration#finish(SQLiteDatabase)} 已提交
+         *
+         * @param migration 完成的迁移
+         */
+        void onMigrationFinished(Migration migration);
+    }
+
+    private final DatabaseHelper dbHelper;
+    private final Lock accessLock;
+    private final int batchSize;
+    private final long pauseMs;
+
+    /**
+     * 使用默认批大小和停顿时间创建
+     *
+     * @param dbHelper 数据库帮助类，提供迁移步骤列表
+     */
+    public MigrationRunner(DatabaseHelper dbHelper) {
+        this(dbHelper, DEFAULT_BATCH_SIZE, DEFAULT_PAUSE_MS);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param dbHelper  数据库帮助类，提供迁移步骤列表
+     * @param batchSize 每批处理的行数
+     * @param pauseMs   两批之间的停顿时间（毫秒）
+     */
+    public MigrationRunner(DatabaseHelper dbHelper, int batchSize, long pauseMs) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be > 0: " + batchSize);
+        }
+        this.dbHelper = dbHelper;
+        this.accessLock = dbHelper.getAccessLock().readLock();
+        this.batchSize = batchSize;
+        this.pauseMs = pauseMs;
+    }
+
+    /**
+     * 在 onUpgrade 的事务中登记一个需要搬迁数据的迁移
+     *
+     * @param db        SQLiteDatabase 实例
+     * @param migration 迁移步骤
+     */
+    static void schedule(SQLiteDatabase db, Migration migration) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_VERSION, migration.getVersion());
+        db.insertWithOnConflict(TABLE_MIGRATION_STATE, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+    }
+
+    /**
+     * 获取尚未完成的数据迁移数量
+     *
+     * @return 待完成的迁移数量
+     */
+    public int getPendingCount() {
+        accessLock.lock();
+        try {
+            return loadPendingVersions(dbHelper.getReadableDatabase()).size();
+        } finally {
+            accessLock.unlock();
+        }
+    }
+
+    /**
+     * 按版本顺序执行所有待完成的数据迁移，直到全部完成
+     * 应在后台线程调用；中途抛出异常时已提交的批次不会丢失，下次调用会从断点继续
+     *
+     * @param listener 进度回调，可以为 null
+     * @throws InterruptedException 批次之间的停顿被中断时抛出，已提交的进度仍然保留
+     */
+    public void run(ProgressListener listener) throws InterruptedException {
+        Map<Integer, Migration> migrations = new HashMap<>();
+        for (Migration migration : dbHelper.getMigrations()) {
+            migrations.put(migration.getVersion(), migration);
+        }
+        SQLiteDatabase db;
+        List<long[]> pending;
+        accessLock.lock();
+        try {
+            db = dbHelper.getWritableDatabase();
+            pending = loadPendingVersions(db);
+        } finally {
+            accessLock.unlock();
+        }
+        for (long[] state : pending) {
+            Migration migration = migrations.get((int) state[0]);
+            if (migration == null) {
+                Log.w(TAG, "No migration registered for pending version " + state[0] + ", skipping");
+                continue;
+            }
+            Log.i(TAG, "Running " + migration + " from position " + state[1] + " (" + state[2] + " batches done)");
+            runMigration(db, migration, state[1], state[2], listener);
+        }
+    }
+
+    private void runMigration(SQLiteDatabase db, Migration migration, long afterId, long batches,
+                              ProgressListener listener) throws InterruptedException {
+        String[] whereArgs = {Integer.toString(migration.getVersion())};
+        while (true) {
+            long position;
+            accessLock.lock();
+            try {
+                db.beginTransactionNonExclusive();
+                try {
+                    position = migration.migrateBatch(db, afterId, batchSize);
+                    if (position == Migration.DONE) {
+                        migration.finish(db);
+                        db.delete(TABLE_MIGRATION_STATE, COLUMN_VERSION + " = ?", whereArgs);
+                    } else {
+                        if (position <= afterId) {
+                            throw new IllegalStateException(migration + " made no progress after position " + afterId);
+                        }
+                        ContentValues values = new ContentValues();
+                        values.put(COLUMN_AFTER_ID, position);
+                        values.put(COLUMN_BATCHES, batches + 1);
+                        db.update(TABLE_MIGRATION_STATE, values, COLUMN_VERSION + " = ?", whereArgs);
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            } finally {
+                accessLock.unlock();
+            }
+            if (position == Migration.DONE) {
+                Log.i(TAG, migration + " finished after " + batches + " batches");
+                if (listener != null) {
+                    listener.onMigrationFinished(migration);
+                }
+                return;
+            }
+            afterId = position;
+            batches++;
+            if (listener != null) {
+                listener.onBatchCompleted(migration, afterId, batches);
+            }
+            if (pauseMs > 0) {
+                Thread.sleep(pauseMs);
+            }
+        }
+    }
+
+    /**
+     * 读取待完成的迁移，按版本升序
+     *
+     * @return 每个元素为 {版本, 已处理到的位置, 已完成批次数}
+     */
+    private static List<long[]> loadPendingVersions(SQLiteDatabase db) {
+        List<long[]> pending = new ArrayList<>();
+        String[] columns = {COLUMN_VERSION, COLUMN_AFTER_ID, COLUMN_BATCHES};
+        try (Cursor cursor = db.query(TABLE_MIGRATION_STATE, columns, null, null, null, null, COLUMN_VERSION)) {
+            while (cursor.moveToNext()) {
+                pending.add(new long[]{cursor.getLong(0), cursor.getLong(1), cursor.getLong(2)});
+            }
+        }
+        return pending;
+    }
+}
@@ -0,0 +1,58 @@
+package com.surpasslike.welcomateservice.data.db;
+
+/**
+ * 把用户输入的搜索文本转换为 FTS4 的 MATCH 表达式
+ * 分词规则与 FTS4 默认的 simple 分词器一致：ASCII 字母和数字以及所有非 ASCII 字符组成词，其余字符都是分隔符，ASCII 字母不区分大小写
+ * 每个词都按前缀匹配并要求同时出现，例如输入 “Ali ex” 可以匹配账户为 alice@example.com 的用户
+ * 输入中的引号、星号、括号等都被当作分隔符丢弃，词统一转为小写，因此不会被解释为 FTS 的运算符（运算符只识别大写的 AND/OR/NOT/NEAR）
+ * 此类不依赖 Android API，可以直接在 JVM 上测试
+ */
+public final class SearchQuery {
+
+    /**
+     * 最多使用的词数，更多的词几乎不会缩小结果，只会增加查询开销
+     */
+    static final int MAX_TERMS = 8;
+
+    private SearchQuery() {
+    }
+
+    /**
+     * 生成 MATCH 表达式
+     *
+     * @param input 用户输入的搜索文本
+     * @return MATCH 表达式；输入中没有可搜索的词时返回 null
+     */
+    public static String toMatchExpression(String input) {
+        if (input == null) {
+            return null;
+        }
+        StringBuilder expression = new StringBuilder(input.length() + 8);
+        int terms = 0;
+        boolean inTerm = false;
+        for (int i = 0; i < input.length() && (terms < MAX_TERMS || inTerm); i++) {
+            char c = input.charAt(i);
+            if (isTokenChar(c)) {
+                if (!inTerm) {
+                    if (terms > 0) {
+                        expression.append(' ');
+                    }
+                    inTerm = true;
+                    terms++;
+                }
+                expression.append(c < 128 ? Character.toLowerCase(c) : c);
+            } else if (inTerm) {
+                expression.append('*');
+                inTerm = false;
+            }
+        }
+        if (inTerm) {
+            expression.append('*');
+        }
+        return terms == 0 ? null : expression.toString();
+    }
+
+    private static boolean isTokenChar(char c) {
+        return c >= 128 || (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
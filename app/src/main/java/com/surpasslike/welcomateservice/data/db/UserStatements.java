@@ -0,0 +1,358 @@
+package com.surpasslike.welcomateservice.data.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import com.surpasslike.welcomateservice.metrics.MethodMetrics;
+import com.surpasslike.welcomateservice.metrics.Metrics;
+
+/**
+ * 用户表热点语句的预编译缓存
+ * 每条热点 SQL 只在首次使用时编译一次，之后在同一线程内反复复用，避免每次调用都重新拼接 SQL 和 ContentValues
+ * SQLiteStatement 的参数绑定保存在对象本身，不能在线程间共享，因此按线程（Binder 线程池中的每个线程、主线程）各持有一组语句
+ * 底层连接自带按 SQL 文本索引的预编译语句缓存，相同的 SQL 文本在同一连接上只会被解析一次
+ * 每条语句的执行耗时记录在 {@link Metrics} 中，名称以 "db." 开头
+ */
+public class UserStatements {
+
+    public static final String SQL_INSERT_USER =
+            "INSERT INTO " + DatabaseHelper.TABLE_USERS + " (" +
+                    DatabaseHelper.COLUMN_USERNAME + ", " +
+                    DatabaseHelper.COLUMN_ACCOUNT + ", " +
+                    DatabaseHelper.COLUMN_PASSWORD + ") VALUES (?, ?, ?)";
+
+    public static final String SQL_SELECT_PASSWORD_BY_ACCOUNT =
+            "SELECT " + DatabaseHelper.COLUMN_PASSWORD + " FROM " + DatabaseHelper.TABLE_USERS +
+                    " WHERE " + DatabaseHelper.COLUMN_ACCOUNT + " = ?";
+
+    public static final String SQL_SELECT_USERNAME_BY_ACCOUNT =
+            "SELECT " + DatabaseHelper.COLUMN_USERNAME + " FROM " + DatabaseHelper.TABLE_USERS +
+                    " WHERE " + DatabaseHelper.COLUMN_ACCOUNT + " = ?";
+
+    public static final String SQL_DELETE_BY_USERNAME =
+            "DELETE FROM " + DatabaseHelper.TABLE_USERS +
+                    " WHERE " + DatabaseHelper.COLUMN_USERNAME + " = ?";
+
+    public static final String SQL_UPDATE_PASSWORD_BY_USERNAME =
+            "UPDATE " + DatabaseHelper.TABLE_USERS + " SET " + DatabaseHelper.COLUMN_PASSWORD + " = ?" +
+                    " WHERE " + DatabaseHelper.COLUMN_USERNAME + " = ?";
+
+    public static final String SQL_REPLACE_PASSWORD_BY_ACCOUNT =
+            "UPDATE " + DatabaseHelper.TABLE_USERS + " SET " + DatabaseHelper.COLUMN_PASSWORD + " = ?" +
+                    " WHERE " + DatabaseHelper.COLUMN_ACCOUNT + " = ? AND " + DatabaseHelper.COLUMN_PASSWORD + " = ?";
+
+    /**
+     * 预热登录路径的账户索引：强制完整遍历 account 的唯一索引
+     * 不加 INDEXED BY 时 COUNT(*) 会选择最小的索引（用户名索引），登录用到的账户索引仍然不在页缓存中
+     */
+    public static final String SQL_WARM_ACCOUNT_INDEX =
+            "SELECT COUNT(" + DatabaseHelper.COLUMN_ACCOUNT + ") FROM " + DatabaseHelper.TABLE_USERS +
+                    " INDEXED BY " + DatabaseHelper.INDEX_USERS_ACCOUNT;
+
+    /**
+     * 预热登录路径的表数据：全表扫描并读取密码列，登录按账户索引找到行后从这里读取密码哈希
+     */
+    public static final String SQL_WARM_USERS_TABLE =
+            "SELECT SUM(LENGTH(" + DatabaseHelper.COLUMN_PASSWORD + ")) FROM " + DatabaseHelper.TABLE_USERS;
+
+    /**
+     * 键集分页查询：按 ID 升序返回指定 ID 之后的若干行，直接走主键，代价与页码无关
+     */
+    public static final String SQL_SELECT_PAGE =
+            "SELECT " + DatabaseHelper.COLUMN_ID + ", " + DatabaseHelper.COLUMN_USERNAME + ", " + DatabaseHelper.COLUMN_ACCOUNT +
+                    " FROM " + DatabaseHelper.TABLE_USERS +
+                    " WHERE " + DatabaseHelper.COLUMN_ID + " > ? ORDER BY " + DatabaseHelper.COLUMN_ID + " LIMIT ?";
+
+    /**
+     * 按 ID 查询一个用户，不读取密码列
+     */
+    public static final String SQL_SELECT_BY_ID =
+            "SELECT " + DatabaseHelper.COLUMN_ID + ", " + DatabaseHelper.COLUMN_USERNAME + ", " + DatabaseHelper.COLUMN_ACCOUNT +
+                    " FROM " + DatabaseHelper.TABLE_USERS + " WHERE " + DatabaseHelper.COLUMN_ID + " = ?";
+
+    /**
+     * 生成按一组 ID 查询用户的 SQL，结果按 ID 升序，每个 ID 都走主键查找
+     *
+     * @param count ID 的数量，即占位符的个数，必须大于 0
+     * @return SQL 语句
+     */
+    public static String selectByIdsSql(int count) {
+        StringBuilder sql = new StringBuilder(
+                "SELECT " + DatabaseHelper.COLUMN_ID + ", " + DatabaseHelper.COLUMN_USERNAME + ", " + DatabaseHelper.COLUMN_ACCOUNT +
+                        " FROM " + DatabaseHelper.TABLE_USERS + " WHERE " + DatabaseHelper.COLUMN_ID + " IN (?");
+        for (int i = 1; i < count; i++) {
+            sql.append(", ?");
+        }
+        return sql.append(") ORDER BY ").append(DatabaseHelper.COLUMN_ID).toString();
+    }
+
+    /**
+     * 全文搜索：先在全文索引中按 docid 顺序取前若干个匹配，再按主键回表，结果按 ID 升序
+     * 只有 LIMIT 之内的匹配会被回表，匹配再多代价也只与 LIMIT 有关
+     */
+    public static final String SQL_SEARCH =
+            "SELECT u." + DatabaseHelper.COLUMN_ID + ", u." + DatabaseHelper.COLUMN_USERNAME + ", u." + DatabaseHelper.COLUMN_ACCOUNT +
+                    " FROM (SELECT docid FROM " + DatabaseHelper.TABLE_USERS_FTS + " WHERE " + DatabaseHelper.TABLE_USERS_FTS +
+                    " MATCH ? ORDER BY docid LIMIT ?) AS m" +
+                    " JOIN " + DatabaseHelper.TABLE_USERS + " AS u ON u." + DatabaseHelper.COLUMN_ID + " = m.docid" +
+                    " ORDER BY u." + DatabaseHelper.COLUMN_ID;
+
+    private static final MethodMetrics INSERT_USER_METRICS = Metrics.register("db.insertUser");
+    private static final MethodMetrics SELECT_PASSWORD_METRICS = Metrics.register("db.queryPasswordHash");
+    private static final MethodMetrics SELECT_USERNAME_METRICS = Metrics.register("db.queryUsername");
+    private static final MethodMetrics DELETE_BY_USERNAME_METRICS = Metrics.register("db.deleteByUsername");
+    private static final MethodMetrics UPDATE_PASSWORD_METRICS = Metrics.register("db.updatePasswordByUsername");
+    private static final MethodMetrics REPLACE_PASSWORD_METRICS = Metrics.register("db.replacePasswordHash");
+
+    private final SQLiteOpenHelper dbHelper;
+    private final ThreadLocal<Holder> holders = new ThreadLocal<>();
+
+    /**
+     * 构造函数
+     *
+     * @param dbHelper 提供数据库连接的帮助类
+     */
+    public UserStatements(SQLiteOpenHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * 编译所有语句，在启动时的后台线程上调用
+     * 底层连接会缓存编译结果，语句对象关闭后缓存仍然保留，之后任何线程编译相同的 SQL 都不必再解析
+     */
+    public void warmUp() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        String[] sqls = {SQL_INSERT_USER, SQL_SELECT_PASSWORD_BY_ACCOUNT, SQL_SELECT_USERNAME_BY_ACCOUNT,
+                SQL_DELETE_BY_USERNAME, SQL_UPDATE_PASSWORD_BY_USERNAME, SQL_REPLACE_PASSWORD_BY_ACCOUNT, SQL_SELECT_PAGE};
+        for (String sql : sqls) {
+            db.compileStatement(sql).close();
+        }
+    }
+
+    /**
+     * 插入一个用户
+     *
+     * @param username       用户名
+     * @param account        账户
+     * @param hashedPassword 已哈希的密码
+     * @return 新插入行的行 ID
+     */
+    public long insertUser(String username, String account, String hashedPassword) {
+        SQLiteStatement statement = holder().insertUser();
+        return INSERT_USER_METRICS.time(() -> {
+            try {
+                bindStringOrNull(statement, 1, username);
+                bindStringOrNull(statement, 2, account);
+                bindStringOrNull(statement, 3, hashedPassword);
+                return statement.executeInsert();
+            } finally {
+                statement.clearBindings();
+            }
+        });
+    }
+
+    /**
+     * 根据账户查询存储的密码哈希
+     *
+     * @param account 账户
+     * @return 密码哈希，如果账户不存在则返回 null
+     */
+    public String queryPasswordHash(String account) {
+        return simpleQueryForString(holder().selectPassword(), account, SELECT_PASSWORD_METRICS);
+    }
+
+    /**
+     * 根据账户查询用户名
+     *
+     * @param account 账户
+     * @return 用户名，如果账户不存在则返回 null
+     */
+    public String queryUsername(String account) {
+        return simpleQueryForString(holder().selectUsername(), account, SELECT_USERNAME_METRICS);
+    }
+
+    /**
+     * 根据用户名删除用户
+     *
+     * @param username 用户名
+     * @return 受影响的行数
+     */
+    public int deleteByUsername(String username) {
+        SQLiteStatement statement = holder().deleteByUsername();
+        return DELETE_BY_USERNAME_METRICS.time(() -> {
+            try {
+                bindStringOrNull(statement, 1, username);
+                return statement.executeUpdateDelete();
+            } finally {
+                statement.clearBindings();
+            }
+        });
+    }
+
+    /**
+     * 根据用户名更新密码哈希
+     *
+     * @param username       用户名
+     * @param hashedPassword 新的密码哈希
+     * @return 受影响的行数
+     */
+    public int updatePasswordByUsername(String username, String hashedPassword) {
+        SQLiteStatement statement = holder().updatePassword();
+        return UPDATE_PASSWORD_METRICS.time(() -> {
+            try {
+                bindStringOrNull(statement, 1, hashedPassword);
+                bindStringOrNull(statement, 2, username);
+                return statement.executeUpdateDelete();
+            } finally {
+                statement.clearBindings();
+            }
+        });
+    }
+
+    /**
+     * 仅当存储的哈希仍为预期值时替换为新哈希，用于登录时的哈希升级
+     * 若期间密码已被修改，则不会覆盖新密码
+     *
+     * @param account      账户
+     * @param expectedHash 预期的旧哈希
+     * @param newHash      新哈希
+     * @return 受影响的行数
+     */
+    public int replacePasswordHash(String account, String expectedHash, String newHash) {
+        SQLiteStatement statement = holder().replacePassword();
+        return REPLACE_PASSWORD_METRICS.time(() -> {
+            try {
+                bindStringOrNull(statement, 1, newHash);
+                bindStringOrNull(statement, 2, account);
+                bindStringOrNull(statement, 3, expectedHash);
+                return statement.executeUpdateDelete();
+            } finally {
+                statement.clearBindings();
+            }
+        });
+    }
+
+    /**
+     * 为预编译语句绑定字符串参数，null 值绑定为 SQL NULL
+     *
+     * @param statement 预编译语句
+     * @param index     参数位置（从 1 开始）
+     * @param value     要绑定的值
+     */
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * 执行单值查询，没有结果时返回 null 而不是抛出异常
+     */
+    private static String simpleQueryForString(SQLiteStatement statement, String arg, MethodMetrics metrics) {
+        return metrics.time(() -> {
+            try {
+                bindStringOrNull(statement, 1, arg);
+                return statement.simpleQueryForString();
+            } catch (SQLiteDoneException e) {
+                return null; // 没有匹配的行
+            } finally {
+                statement.clearBindings();
+            }
+        });
+    }
+
+    /**
+     * 获取当前线程的语句集合
+     * 数据库被关闭或重新打开后，旧的语句会失效，此时为当前线程重新创建
+     */
+    private Holder holder() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        Holder holder = holders.get();
+        if (holder == null || holder.db != db) {
+            if (holder != null) {
+                holder.close();
+            }
+            holder = new Holder(db);
+            holders.set(holder);
+        }
+        return holder;
+    }
+
+    /**
+     * 单个线程持有的一组预编译语句，按需延迟编译
+     */
+    private static class Holder {
+        final SQLiteDatabase db;
+        SQLiteStatement insertUser;
+        SQLiteStatement selectPassword;
+        SQLiteStatement selectUsername;
+        SQLiteStatement deleteByUsername;
+        SQLiteStatement updatePassword;
+        SQLiteStatement replacePassword;
+
+        Holder(SQLiteDatabase db) {
+            this.db = db;
+        }
+
+        SQLiteStatement insertUser() {
+            if (insertUser == null) {
+                insertUser = db.compileStatement(SQL_INSERT_USER);
+            }
+            return insertUser;
+        }
+
+        SQLiteStatement selectPassword() {
+            if (selectPassword == null) {
+                selectPassword = db.compileStatement(SQL_SELECT_PASSWORD_BY_ACCOUNT);
+            }
+            return selectPassword;
+        }
+
+        SQLiteStatement selectUsername() {
+            if (selectUsername == null) {
+                selectUsername = db.compileStatement(SQL_SELECT_USERNAME_BY_ACCOUNT);
+            }
+            return selectUsername;
+        }
+
+        SQLiteStatement deleteByUsername() {
+            if (deleteByUsername == null) {
+                deleteByUsername = db.compileStatement(SQL_DELETE_BY_USERNAME);
+            }
+            return deleteByUsername;
+        }
+
+        SQLiteStatement updatePassword() {
+            if (updatePassword == null) {
+                updatePassword = db.compileStatement(SQL_UPDATE_PASSWORD_BY_USERNAME);
+            }
+            return updatePassword;
+        }
+
+        SQLiteStatement replacePassword() {
+            if (replacePassword == null) {
+                replacePassword = db.compileStatement(SQL_REPLACE_PASSWORD_BY_ACCOUNT);
+            }
+            return replacePassword;
+        }
+
+        void close() {
+            closeQuietly(insertUser);
+            closeQuietly(selectPassword);
+            closeQuietly(selectUsername);
+            closeQuietly(deleteByUsername);
+            closeQuietly(updatePassword);
+            closeQuietly(replacePassword);
+        }
+
+        private static void closeQuietly(SQLiteStatement statement) {
+            if (statement != null) {
+                statement.close();
+            }
+        }
+    }
+}
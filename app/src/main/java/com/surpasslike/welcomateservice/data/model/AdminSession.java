@@ -0,0 +1,91 @@
+package com.surpasslike.welcomateservice.data.model;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 登录成功后返回给客户端的会话
+ * 客户端在之后的调用中携带令牌证明身份，不必再发送密码
+ */
+public class AdminSession implements Parcelable {
+    private final String token;
+    private final String username;
+    private final long expiresInMs;
+
+    /**
+     * 构造函数
+     *
+     * @param token       不透明的会话令牌
+     * @param username    登录的用户名
+     * @param expiresInMs 距离令牌过期的毫秒数
+     */
+    public AdminSession(String token, String username, long expiresInMs) {
+        this.token = token;
+        this.username = username;
+        this.expiresInMs = expiresInMs;
+    }
+
+    /**
+     * 从 Parcel 中恢复会话
+     *
+     * @param in 包含序列化数据的 Parcel
+     */
+    protected AdminSession(Parcel in) {
+        token = in.readString();
+        username = in.readString();
+        expiresInMs = in.readLong();
+    }
+
+    public static final Creator<AdminSession> CREATOR = new Creator<AdminSession>() {
+        @Override
+        public AdminSession createFromParcel(Parcel in) {
+            return new AdminSession(in);
+        }
+
+        @Override
+        public AdminSession[] newArray(int size) {
+            return new AdminSession[size];
+        }
+    };
+
+    /**
+     * 获取会话令牌
+     *
+     * @return 令牌字符串
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * 获取登录的用户名
+     *
+     * @return 用户名字符串
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * 获取距离令牌过期的时间
+     *
+     * @return 毫秒数
+     */
+    public long getExpiresInMs() {
+        return expiresInMs;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(@NonNull Parcel dest, int flags) {
+        dest.writeString(token);
+        dest.writeString(username);
+        dest.writeLong(expiresInMs);
+    }
+}
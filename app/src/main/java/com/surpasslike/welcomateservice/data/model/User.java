@@ -5,23 +5,46 @@ package com.surpasslike.welcomateservice.data.model;
  * POJO (Plain Old Java Object)，用于封装用户数据
  */
 public class User {
+    private final long id;
     private final String username;
     private final String account;
     private final String password; // 通常在模型中不建议直接持有密码，但此处为保持与原有结构一致
 
     /**
-     * 构造函数
+     * 构造函数，用于尚未写入数据库、没有 ID 的用户
      *
      * @param username 用户名
      * @param account  用户账户
      * @param password 用户密码（或密码哈希）
      */
     public User(String username, String account, String password) {
+        this(-1, username, account, password);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param id       数据库中的行 ID
+     * @param username 用户名
+     * @param account  用户账户
+     * @param password 用户密码（或密码哈希）
+     */
+    public User(long id, String username, String account, String password) {
+        this.id = id;
         this.username = username;
         this.account = account;
         this.password = password;
     }
 
+    /**
+     * 获取数据库中的行 ID
+     *
+     * @return 行 ID，未知时为 -1
+     */
+    public long getId() {
+        return id;
+    }
+
     /**
      * 获取用户名
      *
@@ -0,0 +1,121 @@
+package com.surpasslike.welcomateservice.data.model;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 一个用户的变更，推送给监听用户变化的客户端
+ * 删除和改密只按用户名执行，这两类变更中的 ID 为 -1、账户为 null
+ */
+public class UserChange implements Parcelable {
+
+    /**
+     * 新增了用户
+     */
+    public static final int TYPE_ADDED = 1;
+
+    /**
+     * 删除了具有该用户名的所有用户
+     */
+    public static final int TYPE_DELETED = 2;
+
+    /**
+     * 修改了具有该用户名的用户的密码
+     */
+    public static final int TYPE_PASSWORD_CHANGED = 3;
+
+    private final int type;
+    private final long id;
+    private final String username;
+    private final String account;
+
+    /**
+     * 构造函数
+     *
+     * @param type     变更类型，TYPE_ 常量之一
+     * @param id       用户 ID，未知时为 -1
+     * @param username 用户名
+     * @param account  账户，未知时为 null
+     */
+    public UserChange(int type, long id, String username, String account) {
+        this.type = type;
+        this.id = id;
+        this.username = username;
+        this.account = account;
+    }
+
+    /**
+     * 从 Parcel 中恢复变更
+     *
+     * @param in 包含序列化数据的 Parcel
+     */
+    protected UserChange(Parcel in) {
+        type = in.readInt();
+        id = in.readLong();
+        username = in.readString();
+        account = in.readString();
+    }
+
+    public static final Creator<UserChange> CREATOR = new Creator<UserChange>() {
+        @Override
+        public UserChange createFromParcel(Parcel in) {
+            return new UserChange(in);
+        }
+
+        @Override
+        public UserChange[] newArray(int size) {
+            return new UserChange[size];
+        }
+    };
+
+    /**
+     * 获取变更类型
+     *
+     * @return TYPE_ 常量之一
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * 获取用户 ID
+     *
+     * @return 用户 ID，未知时为 -1
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * 获取用户名
+     *
+     * @return 用户名字符串
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * 获取账户
+     *
+     * @return 账户字符串，未知时为 null
+     */
+    public String getAccount() {
+        return account;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(@NonNull Parcel dest, int flags) {
+        dest.writeInt(type);
+        dest.writeLong(id);
+        dest.writeString(username);
+        dest.writeString(account);
+    }
+}
@@ -0,0 +1,121 @@
+package com.surpasslike.welcomateservice.data.model;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+
+import java.util.Objects;
+
+/**
+ * 通过 AIDL 返回给客户端的精简用户信息，只有 ID、用户名和账户，不包含任何密码信息
+ * 不可变；手写的编组只写入三个字段：ID 为定长 long，字符串以 UTF-8 写入（writeString8），
+ * 用户名和账户通常是 ASCII，比默认的 UTF-16 字符串少占一半空间，也不携带类型标记或空的密码字段
+ */
+public final class UserInfo implements Parcelable {
+    private final long id;
+    private final String username;
+    private final String account;
+
+    /**
+     * 构造函数
+     *
+     * @param id       数据库中的行 ID
+     * @param username 用户名
+     * @param account  用户账户
+     */
+    public UserInfo(long id, String username, String account) {
+        this.id = id;
+        this.username = username;
+        this.account = account;
+    }
+
+    /**
+     * 从用户实体创建，丢弃密码
+     *
+     * @param user 用户实体
+     * @return 精简用户信息
+     */
+    public static UserInfo of(User user) {
+        return new UserInfo(user.getId(), user.getUsername(), user.getAccount());
+    }
+
+    /**
+     * 从 Parcel 中恢复用户信息
+     *
+     * @param in 包含序列化数据的 Parcel
+     */
+    private UserInfo(Parcel in) {
+        id = in.readLong();
+        username = in.readString8();
+        account = in.readString8();
+    }
+
+    public static final Creator<UserInfo> CREATOR = new Creator<UserInfo>() {
+        @Override
+        public UserInfo createFromParcel(Parcel in) {
+            return new UserInfo(in);
+        }
+
+        @Override
+        public UserInfo[] newArray(int size) {
+            return new UserInfo[size];
+        }
+    };
+
+    /**
+     * 获取数据库中的行 ID
+     *
+     * @return 行 ID
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * 获取用户名
+     *
+     * @return 用户名字符串
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * 获取用户账户
+     *
+     * @return 账户字符串
+     */
+    public String getAccount() {
+        return account;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(@NonNull Parcel dest, int flags) {
+        dest.writeLong(id);
+        dest.writeString8(username);
+        dest.writeString8(account);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof UserInfo)) {
+            return false;
+        }
+        UserInfo other = (UserInfo) o;
+        return id == other.id && Objects.equals(username, other.username) && Objects.equals(account, other.account);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, username, account);
+    }
+}
@@ -0,0 +1,109 @@
+package com.surpasslike.welcomateservice.data.model;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 用户列表的一页数据，基于 ID 的键集分页 (keyset pagination)
+ * 下一页从 {@link #getNextAfterId()} 之后开始查询，不需要 OFFSET，翻页代价与页码无关
+ * 可通过 AIDL 传递，只包含 ID、用户名和账户，不包含任何密码信息
+ */
+public class UserPage implements Parcelable {
+    private final List<User> users;
+    private final long nextAfterId;
+    private final boolean hasMore;
+
+    /**
+     * 构造函数
+     *
+     * @param users       本页的用户，按 ID 升序排列
+     * @param nextAfterId 查询下一页时使用的起始 ID（本页最后一个用户的 ID）
+     * @param hasMore     是否还有下一页
+     */
+    public UserPage(List<User> users, long nextAfterId, boolean hasMore) {
+        this.users = Collections.unmodifiableList(users);
+        this.nextAfterId = nextAfterId;
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * 从 Parcel 中恢复分页数据
+     *
+     * @param in 包含序列化数据的 Parcel
+     */
+    protected UserPage(Parcel in) {
+        int size = in.readInt();
+        List<User> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            long id = in.readLong();
+            String username = in.readString();
+            String account = in.readString();
+            list.add(new User(id, username, account, null));
+        }
+        users = Collections.unmodifiableList(list);
+        nextAfterId = in.readLong();
+        hasMore = in.readInt() != 0;
+    }
+
+    public static final Creator<UserPage> CREATOR = new Creator<UserPage>() {
+        @Override
+        public UserPage createFromParcel(Parcel in) {
+            return new UserPage(in);
+        }
+
+        @Override
+        public UserPage[] newArray(int size) {
+            return new UserPage[size];
+        }
+    };
+
+    /**
+     * 获取本页的用户
+     *
+     * @return 不可修改的用户列表
+     */
+    public List<User> getUsers() {
+        return users;
+    }
+
+    /**
+     * 获取查询下一页时使用的起始 ID
+     *
+     * @return 本页最后一个用户的 ID
+     */
+    public long getNextAfterId() {
+        return nextAfterId;
+    }
+
+    /**
+     * 是否还有下一页
+     *
+     * @return 还有更多数据时返回 true
+     */
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(@NonNull Parcel dest, int flags) {
+        dest.writeInt(users.size());
+        for (User user : users) {
+            dest.writeLong(user.getId());
+            dest.writeString(user.getUsername());
+            dest.writeString(user.getAccount());
+        }
+        dest.writeLong(nextAfterId);
+        dest.writeInt(hasMore ? 1 : 0);
+    }
+}
@@ -0,0 +1,91 @@
+package com.surpasslike.welcomateservice.data.model;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 批量注册时使用的用户记录
+ * 可通过 AIDL 在客户端与服务端之间传递，仅用于写入方向（携带原始密码）
+ */
+public class UserRecord implements Parcelable {
+    private final String username;
+    private final String account;
+    private final String password;
+
+    /**
+     * 构造函数
+     *
+     * @param username 用户名
+     * @param account  用户账户
+     * @param password 原始密码，将在服务端哈希后存储
+     */
+    public UserRecord(String username, String account, String password) {
+        this.username = username;
+        this.account = account;
+        this.password = password;
+    }
+
+    /**
+     * 从 Parcel 中恢复用户记录
+     *
+     * @param in 包含序列化数据的 Parcel
+     */
+    protected UserRecord(Parcel in) {
+        username = in.readString();
+        account = in.readString();
+        password = in.readString();
+    }
+
+    public static final Creator<UserRecord> CREATOR = new Creator<UserRecord>() {
+        @Override
+        public UserRecord createFromParcel(Parcel in) {
+            return new UserRecord(in);
+        }
+
+        @Override
+        public UserRecord[] newArray(int size) {
+            return new UserRecord[size];
+        }
+    };
+
+    /**
+     * 获取用户名
+     *
+     * @return 用户名字符串
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * 获取用户账户
+     *
+     * @return 用户账户字符串
+     */
+    public String getAccount() {
+        return account;
+    }
+
+    /**
+     * 获取原始密码
+     *
+     * @return 密码字符串
+     */
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(@NonNull Parcel dest, int flags) {
+        dest.writeString(username);
+        dest.writeString(account);
+        dest.writeString(password);
+    }
+}
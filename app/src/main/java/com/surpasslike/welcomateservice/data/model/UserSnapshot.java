@@ -0,0 +1,138 @@
+package com.surpasslike.welcomateservice.data.model;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
+import android.system.OsConstants;
+
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 用户目录的只读快照
+ * 数据以 {@link UserSnapshotCodec} 的格式保存在 SharedMemory 中，跨进程传递的只是文件描述符，
+ * 不受 Binder 事务 1MB 的限制，也不需要经过内核逐字节复制；内存区域被设置为只读，客户端只能以只读方式映射
+ * 客户端使用完毕后应调用 {@link #close()} 释放共享内存
+ */
+public class UserSnapshot implements Parcelable, Closeable {
+    private final long version;
+    private final int count;
+    private final SharedMemory memory;
+
+    private UserSnapshot(long version, int count, SharedMemory memory) {
+        this.version = version;
+        this.count = count;
+        this.memory = memory;
+    }
+
+    /**
+     * 从 Parcel 中恢复快照
+     *
+     * @param in 包含序列化数据的 Parcel
+     */
+    protected UserSnapshot(Parcel in) {
+        version = in.readLong();
+        count = in.readInt();
+        memory = in.readParcelable(SharedMemory.class.getClassLoader(), SharedMemory.class);
+    }
+
+    public static final Creator<UserSnapshot> CREATOR = new Creator<UserSnapshot>() {
+        @Override
+        public UserSnapshot createFromParcel(Parcel in) {
+            return new UserSnapshot(in);
+        }
+
+        @Override
+        public UserSnapshot[] newArray(int size) {
+            return new UserSnapshot[size];
+        }
+    };
+
+    /**
+     * 把编码好的数据写入新的共享内存，并设置为只读
+     *
+     * @param encoder 已追加所有行的编码器
+     * @param version 快照版本
+     * @return 新的快照
+     */
+    public static UserSnapshot create(UserSnapshotCodec.Encoder encoder, long version) {
+        SharedMemory memory = null;
+        try {
+            memory = SharedMemory.create("user-snapshot", encoder.size());
+            ByteBuffer buffer = memory.mapReadWrite();
+            try {
+                encoder.writeTo(buffer, version);
+            } finally {
+                SharedMemory.unmap(buffer);
+            }
+            memory.setProtect(OsConstants.PROT_READ);
+            return new UserSnapshot(version, encoder.getCount(), memory);
+        } catch (ErrnoException e) {
+            if (memory != null) {
+                memory.close();
+            }
+            throw new IllegalStateException("Failed to create user snapshot", e);
+        }
+    }
+
+    /**
+     * 获取快照版本，数据没有变化时版本不变
+     *
+     * @return 快照版本
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 获取快照中的用户数量
+     *
+     * @return 用户数量
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * 只读映射共享内存并解码所有用户
+     *
+     * @return 用户列表，密码为 null
+     */
+    public List<User> readUsers() {
+        try {
+            ByteBuffer buffer = memory.mapReadOnly();
+            try {
+                return UserSnapshotCodec.decode(buffer);
+            } finally {
+                SharedMemory.unmap(buffer);
+            }
+        } catch (ErrnoException e) {
+            throw new IllegalStateException("Failed to map user snapshot", e);
+        }
+    }
+
+    /**
+     * 释放共享内存
+     */
+    @Override
+    public void close() {
+        memory.close();
+    }
+
+    @Override
+    public int describeContents() {
+        return CONTENTS_FILE_DESCRIPTOR;
+    }
+
+    @Override
+    public void writeToParcel(@NonNull Parcel dest, int flags) {
+        dest.writeLong(version);
+        dest.writeInt(count);
+        // 服务端会把同一个快照返回给多个客户端，不能随返回值一起关闭共享内存，因此不传递 flags
+        dest.writeParcelable(memory, 0);
+    }
+}
@@ -0,0 +1,152 @@
+package com.surpasslike.welcomateservice.data.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 用户快照的二进制格式（大端序）：
+ * <pre>
+ * 头部：magic(int "WUS1") | version(long) | count(int)
+ * 每行：id(long) | username | account
+ * 字符串：长度(int，-1 表示 null) | UTF-8 字节
+ * </pre>
+ * 不包含密码；此类不依赖 Android API，可以直接在 JVM 上测试
+ */
+public final class UserSnapshotCodec {
+
+    public static final int MAGIC = 0x57555331;
+
+    /**
+     * 头部长度：magic(4) + version(8) + count(4)
+     */
+    public static final int HEADER_SIZE = 16;
+
+    private UserSnapshotCodec() {
+    }
+
+    /**
+     * 逐行追加用户并编码，内部缓冲区按需扩容
+     */
+    public static class Encoder {
+        private ByteBuffer body = ByteBuffer.allocate(4096);
+        private int count;
+
+        /**
+         * 追加一行
+         *
+         * @param id       用户 ID
+         * @param username 用户名
+         * @param account  账户
+         */
+        public void add(long id, String username, String account) {
+            byte[] name = username != null ? username.getBytes(StandardCharsets.UTF_8) : null;
+            byte[] acct = account != null ? account.getBytes(StandardCharsets.UTF_8) : null;
+            ensureCapacity(8 + 4 + (name != null ? name.length : 0) + 4 + (acct != null ? acct.length : 0));
+            body.putLong(id);
+            putBytes(name);
+            putBytes(acct);
+            count++;
+        }
+
+        /**
+         * @return 已追加的行数
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return 编码后的总字节数，包括头部
+         */
+        public int size() {
+            return HEADER_SIZE + body.position();
+        }
+
+        /**
+         * 把头部和所有行写入目标缓冲区
+         *
+         * @param target  剩余空间不小于 {@link #size()} 的缓冲区
+         * @param version 快照版本
+         */
+        public void writeTo(ByteBuffer target, long version) {
+            target.putInt(MAGIC);
+            target.putLong(version);
+            target.putInt(count);
+            target.put(body.array(), 0, body.position());
+        }
+
+        private void putBytes(byte[] bytes) {
+            if (bytes == null) {
+                body.putInt(-1);
+            } else {
+                body.putInt(bytes.length);
+                body.put(bytes);
+            }
+        }
+
+        private void ensureCapacity(int needed) {
+            if (body.remaining() < needed) {
+                int capacity = Math.max(body.capacity() * 2, body.position() + needed);
+                ByteBuffer grown = ByteBuffer.allocate(capacity);
+                grown.put(body.array(), 0, body.position());
+                body = grown;
+            }
+        }
+    }
+
+    /**
+     * 读取快照的版本
+     *
+     * @param buffer 从位置 0 开始的快照数据
+     * @return 快照版本
+     * @throws IllegalArgumentException 数据不是合法的快照
+     */
+    public static long readVersion(ByteBuffer buffer) {
+        checkHeader(buffer);
+        return buffer.getLong(4);
+    }
+
+    /**
+     * 解码快照中的所有用户，不会修改 buffer 的位置
+     *
+     * @param buffer 从位置 0 开始的快照数据
+     * @return 用户列表，密码为 null
+     * @throws IllegalArgumentException 数据不是合法的快照
+     */
+    public static List<User> decode(ByteBuffer buffer) {
+        checkHeader(buffer);
+        ByteBuffer in = buffer.duplicate();
+        in.position(HEADER_SIZE);
+        int count = buffer.getInt(12);
+        List<User> users = new ArrayList<>(count);
+        byte[] scratch = new byte[64];
+        for (int i = 0; i < count; i++) {
+            long id = in.getLong();
+            String username = readString(in, scratch);
+            String account = readString(in, scratch);
+            users.add(new User(id, username, account, null));
+        }
+        return users;
+    }
+
+    private static void checkHeader(ByteBuffer buffer) {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a user snapshot");
+        }
+    }
+
+    private static String readString(ByteBuffer in, byte[] scratch) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (scratch.length < length) {
+            scratch = Arrays.copyOf(scratch, length);
+        }
+        in.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,124 @@
+package com.surpasslike.welcomateservice.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个方法的调用统计：调用次数、失败次数和延迟分布
+ * 通过 {@link Metrics#register(String)} 获取，用法：
+ * <pre>
+ * return METRICS.time(() -> repository.getUsersPage(afterId, pageSize));
+ * METRICS.run(() -> repository.deleteUser(username));
+ * </pre>
+ * 调用抛出异常时计为失败，异常原样抛出；需要自行决定成功与否的调用（例如异步回调）直接使用 {@link #record(long, boolean)}
+ */
+public class MethodMetrics {
+
+    /**
+     * 有返回值的调用
+     *
+     * @param <T> 返回值类型
+     * @param <E> 可能抛出的异常类型
+     */
+    public interface Call<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /**
+     * 没有返回值的调用
+     *
+     * @param <E> 可能抛出的异常类型
+     */
+    public interface Task<E extends Exception> {
+        void run() throws E;
+    }
+
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    MethodMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 记录一次调用
+     *
+     * @param startNanos 调用开始时的 {@link System#nanoTime()}
+     * @param success    调用是否正常完成，抛出异常时为 false
+     */
+    public void record(long startNanos, boolean success) {
+        latency.record(System.nanoTime() - startNanos);
+        if (!success) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * 执行调用并记录耗时，抛出异常时计为失败
+     *
+     * @param call 要执行的调用
+     * @return 调用的返回值
+     * @throws E 调用抛出的异常
+     */
+    public <T, E extends Exception> T time(Call<T, E> call) throws E {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = call.call();
+            success = true;
+            return result;
+        } finally {
+            record(start, success);
+        }
+    }
+
+    /**
+     * 执行调用并记录耗时，抛出异常时计为失败
+     *
+     * @param task 要执行的调用
+     * @throws E 调用抛出的异常
+     */
+    public <E extends Exception> void run(Task<E> task) throws E {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            task.run();
+            success = true;
+        } finally {
+            record(start, success);
+        }
+    }
+
+    /**
+     * @return 方法名
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return 延迟直方图
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return 调用次数，包括失败的调用
+     */
+    public long getCalls() {
+        return latency.getCount();
+    }
+
+    /**
+     * @return 抛出异常的调用次数
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    void reset() {
+        latency.reset();
+        errors.reset();
+    }
+}
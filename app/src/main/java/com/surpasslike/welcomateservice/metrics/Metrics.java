@@ -0,0 +1,88 @@
+package com.surpasslike.welcomateservice.metrics;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 进程内的方法统计注册表
+ * 各个类在静态字段中注册自己的 {@link MethodMetrics}，热点路径上只访问该字段，不查表；
+ * AdminService.dump() 通过 {@link #dump(PrintWriter)} 把所有统计输出到 dumpsys
+ */
+public final class Metrics {
+
+    private static final ConcurrentMap<String, MethodMetrics> REGISTRY = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * 获取指定名称的统计，不存在时创建
+     *
+     * @param name 方法名，例如 "IAdminService.loginAdmin"
+     * @return 该名称对应的唯一实例
+     */
+    public static MethodMetrics register(String name) {
+        MethodMetrics metrics = REGISTRY.get(name);
+        if (metrics == null) {
+            MethodMetrics created = new MethodMetrics(name);
+            metrics = REGISTRY.putIfAbsent(name, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * 获取所有已注册的统计，按名称排序
+     *
+     * @return 统计列表
+     */
+    public static List<MethodMetrics> getAll() {
+        List<MethodMetrics> all = new ArrayList<>(REGISTRY.values());
+        Collections.sort(all, new Comparator<MethodMetrics>() {
+            @Override
+            public int compare(MethodMetrics a, MethodMetrics b) {
+                return a.getName().compareTo(b.getName());
+            }
+        });
+        return all;
+    }
+
+    /**
+     * 清空所有统计
+     */
+    public static void reset() {
+        for (MethodMetrics metrics : REGISTRY.values()) {
+            metrics.reset();
+        }
+    }
+
+    /**
+     * 以表格形式输出所有统计，延迟单位为微秒
+     *
+     * @param pw 输出目标
+     */
+    public static void dump(PrintWriter pw) {
+        pw.println(String.format(Locale.ROOT, "%-40s %10s %8s %10s %10s %10s %10s %10s",
+                "method", "calls", "errors", "mean_us", "p50_us", "p90_us", "p99_us", "max_us"));
+        for (MethodMetrics metrics : getAll()) {
+            LatencyHistogram latency = metrics.getLatency();
+            pw.println(String.format(Locale.ROOT, "%-40s %10d %8d %10s %10s %10s %10s %10s",
+                    metrics.getName(), metrics.getCalls(), metrics.getErrors(),
+                    micros(latency.getMeanNanos()), micros(latency.getPercentileNanos(50)),
+                    micros(latency.getPercentileNanos(90)), micros(latency.getPercentileNanos(99)),
+                    micros(latency.getMaxNanos())));
+        }
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1000.0);
+    }
+}
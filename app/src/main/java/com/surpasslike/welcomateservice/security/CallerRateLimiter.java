@@ -0,0 +1,199 @@
+package com.surpasslike.welcomateservice.security;
+
+import java.io.PrintWriter;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按调用方 UID 的准入控制
+ * 每个 UID 对每类方法各有一个 {@link TokenBucket}，超过限额的调用被立即拒绝而不是排队，
+ * 避免单个客户端的突发请求占满 Binder 线程池，保护其他调用方的延迟
+ * 查找使用 ConcurrentHashMap 的无锁读，令牌桶本身只需一次 CAS
+ */
+public class CallerRateLimiter {
+
+    /**
+     * 方法的类别，不同类别的代价不同，分别限流
+     */
+    public enum Category {
+        /**
+         * 登录：每次都要计算 PBKDF2
+         */
+        LOGIN,
+        /**
+         * 注册、删除、改密等写操作
+         */
+        WRITE,
+        /**
+         * 分页查询等只读操作
+         */
+        READ,
+        /**
+         * 批量注册，按行数计费；与 {@link #WRITE} 分开计数，一次大批量导入不会让同一调用方的删除、改密等写操作被拒绝
+         */
+        BATCH
+    }
+
+    /**
+     * 一个类别的限额
+     */
+    public static class Limit {
+        final double ratePerSecond;
+        final int burst;
+
+        /**
+         * 构造函数
+         *
+         * @param ratePerSecond 每秒允许的调用次数
+         * @param burst         允许的最大突发次数
+         */
+        public Limit(double ratePerSecond, int burst) {
+            this.ratePerSecond = ratePerSecond;
+            this.burst = burst;
+        }
+    }
+
+    /**
+     * 默认限额：登录每秒 10 次、突发 20 次；写操作每秒 20 次、突发 50 次；读操作每秒 50 次、突发 100 次；
+     * 批量注册每秒 500 行、突发 5000 行，5000 行以内的导入在桶满时一次通过
+     */
+    public static final Limit DEFAULT_LOGIN_LIMIT = new Limit(10, 20);
+    public static final Limit DEFAULT_WRITE_LIMIT = new Limit(20, 50);
+    public static final Limit DEFAULT_READ_LIMIT = new Limit(50, 100);
+    public static final Limit DEFAULT_BATCH_LIMIT = new Limit(500, 5000);
+
+    /**
+     * 跟踪的 UID 数量上限，超过时回收已补满的桶
+     */
+    private static final int MAX_TRACKED_UIDS = 1024;
+
+    private final Limit[] limits = new Limit[Category.values().length];
+    private final ConcurrentMap<Integer, TokenBucket[]> buckets = new ConcurrentHashMap<>();
+    private final LongAdder[] rejected = new LongAdder[Category.values().length];
+    private final Clock clock;
+
+    /**
+     * 使用默认限额创建
+     */
+    public CallerRateLimiter() {
+        this(DEFAULT_LOGIN_LIMIT, DEFAULT_WRITE_LIMIT, DEFAULT_READ_LIMIT);
+    }
+
+    /**
+     * 构造函数，批量注册使用默认限额
+     *
+     * @param login 登录的限额
+     * @param write 写操作的限额
+     * @param read  读操作的限额
+     */
+    public CallerRateLimiter(Limit login, Limit write, Limit read) {
+        this(login, write, read, DEFAULT_BATCH_LIMIT);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param login 登录的限额
+     * @param write 写操作的限额
+     * @param read  读操作的限额
+     * @param batch 批量注册的限额，按行计
+     */
+    public CallerRateLimiter(Limit login, Limit write, Limit read, Limit batch) {
+        this(login, write, read, batch, System::nanoTime);
+    }
+
+    CallerRateLimiter(Limit login, Limit write, Limit read, Clock clock) {
+        this(login, write, read, DEFAULT_BATCH_LIMIT, clock);
+    }
+
+    CallerRateLimiter(Limit login, Limit write, Limit read, Limit batch, Clock clock) {
+        limits[Category.LOGIN.ordinal()] = login;
+        limits[Category.WRITE.ordinal()] = write;
+        limits[Category.READ.ordinal()] = read;
+        limits[Category.BATCH.ordinal()] = batch;
+        for (int i = 0; i < rejected.length; i++) {
+            rejected[i] = new LongAdder();
+        }
+        this.clock = clock;
+    }
+
+    /**
+     * 尝试为一次调用获取令牌
+     *
+     * @param uid      调用方 UID，通常为 Binder.getCallingUid()
+     * @param category 方法类别
+     * @param permits  需要的令牌数，批量操作按行数计算；超过突发上限的批量只在桶满时被允许，
+     *                 并按全部行数计费，之后同一类别的调用要等欠下的令牌补回，其他类别不受影响
+     * @return 允许调用时返回 true，超过限额时返回 false
+     */
+    public boolean tryAcquire(int uid, Category category, int permits) {
+        long now = clock.nanoTime();
+        TokenBucket[] callerBuckets = buckets.get(uid);
+        if (callerBuckets == null) {
+            callerBuckets = newBuckets(now);
+            TokenBucket[] existing = buckets.putIfAbsent(uid, callerBuckets);
+            if (existing != null) {
+                callerBuckets = existing;
+            } else if (buckets.size() > MAX_TRACKED_UIDS) {
+                evictIdle(now);
+            }
+        }
+        if (callerBuckets[category.ordinal()].tryAcquire(Math.max(1, permits), now)) {
+            return true;
+        }
+        rejected[category.ordinal()].increment();
+        return false;
+    }
+
+    /**
+     * 获取某类调用被拒绝的次数
+     *
+     * @param category 方法类别
+     * @return 拒绝次数
+     */
+    public long getRejectedCount(Category category) {
+        return rejected[category.ordinal()].sum();
+    }
+
+    /**
+     * 输出限额和拒绝次数
+     *
+     * @param pw 输出目标
+     */
+    public void dump(PrintWriter pw) {
+        pw.println("Rate limits (tracked uids=" + buckets.size() + "):");
+        for (Category category : Category.values()) {
+            Limit limit = limits[category.ordinal()];
+            pw.println(String.format(Locale.ROOT, "  %-6s rate=%.1f/s burst=%d rejected=%d",
+                    category, limit.ratePerSecond, limit.burst, getRejectedCount(category)));
+        }
+    }
+
+    private TokenBucket[] newBuckets(long now) {
+        TokenBucket[] result = new TokenBucket[limits.length];
+        for (int i = 0; i < limits.length; i++) {
+            result[i] = new TokenBucket(limits[i].ratePerSecond, limits[i].burst, now);
+        }
+        return result;
+    }
+
+    /**
+     * 回收所有桶都已补满的 UID，被回收的 UID 下次调用时会得到一个新的满桶，与保留时的效果相同
+     */
+    private void evictIdle(long now) {
+        Iterator<Map.Entry<Integer, TokenBucket[]>> it = buckets.entrySet().iterator();
+        while (it.hasNext()) {
+            boolean idle = true;
+            for (TokenBucket bucket : it.next().getValue()) {
+                idle &= bucket.isIdle(now);
+            }
+            if (idle) {
+                it.remove();
+            }
+        }
+    }
+}
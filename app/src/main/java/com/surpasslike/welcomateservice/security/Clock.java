@@ -0,0 +1,11 @@
+package com.surpasslike.welcomateservice.security;
+
+/**
+ * 单调时间来源，默认使用 System::nanoTime，测试中可以替换
+ */
+interface Clock {
+    /**
+     * @return 当前时间（纳秒），只用于计算时间差
+     */
+    long nanoTime();
+}
@@ -0,0 +1,247 @@
+package com.surpasslike.welcomateservice.security;
+
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 登录失败跟踪与暴力破解限制
+ * 分别按账户和按调用方 UID 记录连续失败次数，超过免费次数后按指数退避封禁一段时间，
+ * 封禁期间的登录请求在计算哈希和查询数据库之前就被拒绝，攻击时几乎不消耗 CPU
+ * 失败记录保存在分段加锁的有界 LRU 表中：每段一把锁、容量固定，超出容量时淘汰最久未失败的记录，
+ * 超过过期时间没有新的失败时记录自动失效，因此内存占用有上限，大量随机账户也不会撑爆内存
+ */
+public class LoginThrottle {
+
+    /**
+     * 一类键（账户或调用方）的退避策略
+     */
+    public static class Policy {
+        final int freeAttempts;
+        final long baseDelayNanos;
+        final long maxDelayNanos;
+        final long expiryNanos;
+
+        /**
+         * 构造函数
+         *
+         * @param freeAttempts 开始封禁前允许的连续失败次数
+         * @param baseDelayMs  首次封禁的时长（毫秒），之后每次失败翻倍
+         * @param maxDelayMs   封禁时长上限（毫秒）
+         * @param expiryMs     距最后一次失败超过此时长（毫秒）后清除记录
+         */
+        public Policy(int freeAttempts, long baseDelayMs, long maxDelayMs, long expiryMs) {
+            this.freeAttempts = freeAttempts;
+            this.baseDelayNanos = TimeUnit.MILLISECONDS.toNanos(baseDelayMs);
+            this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+            this.expiryNanos = TimeUnit.MILLISECONDS.toNanos(expiryMs);
+        }
+    }
+
+    /**
+     * 默认的账户策略：连续失败 5 次后从 1 秒开始退避，最长 15 分钟
+     */
+    public static final Policy DEFAULT_ACCOUNT_POLICY = new Policy(5, 1_000, 15 * 60_000, 15 * 60_000);
+
+    /**
+     * 默认的调用方策略：一个客户端可能代表多个用户登录，因此允许更多的失败次数
+     */
+    public static final Policy DEFAULT_CALLER_POLICY = new Policy(20, 1_000, 15 * 60_000, 15 * 60_000);
+
+    private static final int STRIPES = 16;
+    private static final int CAPACITY_PER_STRIPE = 256;
+
+    /**
+     * 指数退避的最大翻倍次数，防止移位溢出
+     */
+    private static final int MAX_BACKOFF_SHIFT = 20;
+
+    private final FailureTable<String> accounts;
+    private final FailureTable<Integer> callers;
+    private final LongAdder throttled = new LongAdder();
+    private final Clock clock;
+
+    /**
+     * 使用默认策略创建
+     */
+    public LoginThrottle() {
+        this(DEFAULT_ACCOUNT_POLICY, DEFAULT_CALLER_POLICY);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param accountPolicy 按账户的策略
+     * @param callerPolicy  按调用方 UID 的策略
+     */
+    public LoginThrottle(Policy accountPolicy, Policy callerPolicy) {
+        this(accountPolicy, callerPolicy, System::nanoTime);
+    }
+
+    LoginThrottle(Policy accountPolicy, Policy callerPolicy, Clock clock) {
+        this.accounts = new FailureTable<>(accountPolicy);
+        this.callers = new FailureTable<>(callerPolicy);
+        this.clock = clock;
+    }
+
+    /**
+     * 检查本次登录是否被封禁，应在任何哈希或数据库操作之前调用
+     *
+     * @param account 登录的账户，可以为 null
+     * @param uid     调用方 UID
+     * @return 还需等待的毫秒数，0 表示允许登录
+     */
+    public long checkAllowed(String account, int uid) {
+        long now = clock.nanoTime();
+        long remaining = callers.remainingNanos(uid, now);
+        if (account != null) {
+            remaining = Math.max(remaining, accounts.remainingNanos(account, now));
+        }
+        if (remaining > 0) {
+            throttled.increment();
+            return Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining));
+        }
+        return 0;
+    }
+
+    /**
+     * 记录一次失败的登录
+     *
+     * @param account 登录的账户，可以为 null
+     * @param uid     调用方 UID
+     */
+    public void recordFailure(String account, int uid) {
+        long now = clock.nanoTime();
+        callers.recordFailure(uid, now);
+        if (account != null) {
+            accounts.recordFailure(account, now);
+        }
+    }
+
+    /**
+     * 记录一次成功的登录，清除该账户的失败记录
+     * 调用方的失败记录保留，避免攻击者用自己的账户登录一次来重置计数
+     *
+     * @param account 登录的账户
+     */
+    public void recordSuccess(String account) {
+        if (account != null) {
+            accounts.clear(account);
+        }
+    }
+
+    /**
+     * @return 因封禁而被拒绝的登录次数
+     */
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    /**
+     * 输出统计信息
+     *
+     * @param pw 输出目标
+     */
+    public void dump(PrintWriter pw) {
+        pw.println(String.format(Locale.ROOT, "Login throttle: throttled=%d trackedAccounts=%d trackedCallers=%d",
+                getThrottledCount(), accounts.size(), callers.size()));
+    }
+
+    /**
+     * 一条失败记录
+     */
+    private static class Failure {
+        int count;
+        long lastFailureNanos;
+        long blockedUntilNanos;
+    }
+
+    /**
+     * 分段加锁的有界失败记录表
+     */
+    private static class FailureTable<K> {
+        private final Policy policy;
+        private final Stripe<K>[] stripes;
+
+        @SuppressWarnings("unchecked")
+        FailureTable(Policy policy) {
+            this.policy = policy;
+            this.stripes = new Stripe[STRIPES];
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new Stripe<>();
+            }
+        }
+
+        long remainingNanos(K key, long now) {
+            Stripe<K> stripe = stripeFor(key);
+            synchronized (stripe) {
+                Failure failure = stripe.get(key);
+                if (failure == null) {
+                    return 0;
+                }
+                if (now - failure.lastFailureNanos > policy.expiryNanos) {
+                    stripe.remove(key);
+                    return 0;
+                }
+                return Math.max(0, failure.blockedUntilNanos - now);
+            }
+        }
+
+        void recordFailure(K key, long now) {
+            Stripe<K> stripe = stripeFor(key);
+            synchronized (stripe) {
+                Failure failure = stripe.get(key);
+                if (failure == null || now - failure.lastFailureNanos > policy.expiryNanos) {
+                    failure = new Failure();
+                    stripe.put(key, failure);
+                }
+                failure.count++;
+                failure.lastFailureNanos = now;
+                if (failure.count >= policy.freeAttempts) {
+                    int shift = Math.min(failure.count - policy.freeAttempts, MAX_BACKOFF_SHIFT);
+                    long delay = Math.min(policy.baseDelayNanos << shift, policy.maxDelayNanos);
+                    failure.blockedUntilNanos = now + delay;
+                }
+            }
+        }
+
+        void clear(K key) {
+            Stripe<K> stripe = stripeFor(key);
+            synchronized (stripe) {
+                stripe.remove(key);
+            }
+        }
+
+        int size() {
+            int size = 0;
+            for (Stripe<K> stripe : stripes) {
+                synchronized (stripe) {
+                    size += stripe.size();
+                }
+            }
+            return size;
+        }
+
+        private Stripe<K> stripeFor(K key) {
+            int h = key.hashCode();
+            return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+        }
+    }
+
+    /**
+     * 一个分段：按访问顺序排列的 LRU 表，超出容量时淘汰最久未访问的记录
+     */
+    private static class Stripe<K> extends LinkedHashMap<K, Failure> {
+        Stripe() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Failure> eldest) {
+            return size() > CAPACITY_PER_STRIPE;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.surpasslike.welcomateservice.security;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 内存中的会话管理
+ * 登录成功后签发一个随机的不透明令牌，之后的调用凭令牌证明身份，不必每次重新发送密码并计算 PBKDF2
+ * 校验令牌只是一次 ConcurrentHashMap 查找；令牌绑定签发时的调用方 UID，其他应用拿到令牌也无法使用
+ * 会话有固定的有效期，过期的会话在访问时或会话数达到上限时清除；服务进程重启后所有会话失效
+ */
+public class SessionManager {
+
+    /**
+     * 默认会话有效期：15 分钟
+     */
+    public static final long DEFAULT_TTL_MS = 15 * 60_000;
+
+    /**
+     * 同时存在的会话数上限
+     */
+    private static final int MAX_SESSIONS = 10_000;
+
+    private static final int TOKEN_BYTES = 32;
+
+    /**
+     * 一个已登录的会话
+     */
+    public static class Session {
+        private final String token;
+        private final String username;
+        private final String account;
+        private final int uid;
+        private final long expiresAtNanos;
+
+        Session(String token, String username, String account, int uid, long expiresAtNanos) {
+            this.token = token;
+            this.username = username;
+            this.account = account;
+            this.uid = uid;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        /**
+         * @return 会话令牌
+         */
+        public String getToken() {
+            return token;
+        }
+
+        /**
+         * @return 登录的用户名
+         */
+        public String getUsername() {
+            return username;
+        }
+
+        /**
+         * @return 登录的账户
+         */
+        public String getAccount() {
+            return account;
+        }
+    }
+
+    private final ConcurrentMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final long ttlNanos;
+    private final Clock clock;
+
+    /**
+     * 使用默认有效期创建
+     */
+    public SessionManager() {
+        this(DEFAULT_TTL_MS);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param ttlMs 会话有效期（毫秒）
+     */
+    public SessionManager(long ttlMs) {
+        this(ttlMs, System::nanoTime);
+    }
+
+    SessionManager(long ttlMs, Clock clock) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.clock = clock;
+    }
+
+    /**
+     * 为登录成功的用户创建会话
+     *
+     * @param username 用户名
+     * @param account  账户
+     * @param uid      调用方 UID，令牌只对该 UID 有效
+     * @return 新的会话
+     */
+    public Session create(String username, String account, int uid) {
+        long now = clock.nanoTime();
+        if (sessions.size() >= MAX_SESSIONS) {
+            evict(now);
+        }
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        Session session = new Session(token, username, account, uid, now + ttlNanos);
+        sessions.put(token, session);
+        return session;
+    }
+
+    /**
+     * 校验令牌
+     *
+     * @param token 会话令牌
+     * @param uid   当前调用方 UID
+     * @return 有效的会话；令牌不存在、已过期或不属于该调用方时返回 null
+     */
+    public Session validate(String token, int uid) {
+        if (token == null) {
+            return null;
+        }
+        Session session = sessions.get(token);
+        if (session == null || session.uid != uid) {
+            return null;
+        }
+        if (clock.nanoTime() - session.expiresAtNanos >= 0) {
+            sessions.remove(token, session);
+            return null;
+        }
+        return session;
+    }
+
+    /**
+     * 注销会话，令牌立即失效
+     *
+     * @param token 会话令牌
+     * @param uid   当前调用方 UID，只能注销自己的会话
+     */
+    public void invalidate(String token, int uid) {
+        Session session = token != null ? sessions.get(token) : null;
+        if (session != null && session.uid == uid) {
+            sessions.remove(token, session);
+        }
+    }
+
+    /**
+     * 使某个用户的所有会话失效，在删除用户或修改密码后调用
+     * 需要遍历所有会话，只在这些低频的写操作中使用
+     *
+     * @param username 用户名
+     */
+    public void invalidateUser(String username) {
+        Iterator<Session> it = sessions.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().username.equals(username)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 使所有会话失效，在用备份替换数据库后调用：会话对应的用户可能已经不存在，或者密码已经不同
+     */
+    public void invalidateAll() {
+        sessions.clear();
+    }
+
+    /**
+     * @return 会话有效期（毫秒）
+     */
+    public long getTtlMs() {
+        return TimeUnit.NANOSECONDS.toMillis(ttlNanos);
+    }
+
+    /**
+     * @return 当前的会话数，包括尚未清除的过期会话
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * 清除过期会话；如果仍然达到上限，再清除最早到期的会话
+     */
+    private void evict(long now) {
+        Map.Entry<String, Session> soonest = null;
+        Iterator<Map.Entry<String, Session>> it = sessions.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Session> entry = it.next();
+            if (now - entry.getValue().expiresAtNanos >= 0) {
+                it.remove();
+            } else if (soonest == null || entry.getValue().expiresAtNanos - soonest.getValue().expiresAtNanos < 0) {
+                soonest = entry;
+            }
+        }
+        if (sessions.size() >= MAX_SESSIONS && soonest != null) {
+            sessions.remove(soonest.getKey(), soonest.getValue());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.surpasslike.welcomateservice.security;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶
+ * 采用 GCRA（通用信元速率算法）实现，与令牌桶等价：只保存一个“理论到达时间”，
+ * 每次获取令牌只需一次 CAS，不需要定时补充令牌，也不需要加锁
+ */
+public class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * 构造函数
+     *
+     * @param ratePerSecond 每秒补充的令牌数
+     * @param burst         桶容量，即允许的最大突发次数
+     * @param nowNanos      当前时间（纳秒），桶初始为满
+     */
+    public TokenBucket(double ratePerSecond, int burst, long nowNanos) {
+        if (ratePerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("rate and burst must be > 0: " + ratePerSecond + ", " + burst);
+        }
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+        this.burstNanos = intervalNanos * burst;
+        this.theoreticalArrival = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * 尝试获取令牌，令牌不足时立即返回 false，不等待
+     * 超过桶容量的请求只在桶满时被允许，并按全部令牌数计费：桶进入欠账状态，
+     * 之后的请求要等欠下的令牌按速率补回、桶重新有余量时才被允许
+     *
+     * @param permits  需要的令牌数
+     * @param nowNanos 当前时间（纳秒）
+     * @return 获取成功时返回 true
+     */
+    public boolean tryAcquire(int permits, long nowNanos) {
+        long cost = intervalNanos * permits;
+        while (true) {
+            long tat = theoreticalArrival.get();
+            long next = Math.max(tat, nowNanos) + cost;
+            if (next - nowNanos > burstNanos && (cost <= burstNanos || tat - nowNanos > 0)) {
+                return false;
+            }
+            if (theoreticalArrival.compareAndSet(tat, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 判断桶是否已经补满，即长时间没有使用，可以被回收
+     *
+     * @param nowNanos 当前时间（纳秒）
+     * @return 桶已满时返回 true
+     */
+    public boolean isIdle(long nowNanos) {
+        return theoreticalArrival.get() - nowNanos <= 0;
+    }
+}
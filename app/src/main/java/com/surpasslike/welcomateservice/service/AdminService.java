@@ -8,6 +8,13 @@ import android.util.Log;
 import androidx.annotation.Nullable;
 
 import com.surpasslike.welcomateservice.aidl.AdminApiImpl;
+import com.surpasslike.welcomateservice.data.UserRepository;
+import com.surpasslike.welcomateservice.metrics.Metrics;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
 
 /**
  * 后台服务，作为 AIDL 接口的宿主
@@ -17,11 +24,16 @@ import com.surpasslike.welcomateservice.aidl.AdminApiImpl;
 public class AdminService extends Service {
     private static final String TAG = "AdminService";
 
+    /**
+     * 默认的快照文件，位于 files 目录，由自动备份带走；数据库本身不参与自动备份，见 backup_rules.xml
+     */
+    static final String BACKUP_FILE = "backups/users.db";
+
     /**
      * AIDL 接口的实现实例
      * 为了效率，我们只创建一个实例
      */
-    private IBinder binder;
+    private AdminApiImpl binder;
 
     /**
      * 服务首次创建时调用
@@ -31,6 +43,7 @@ public class AdminService extends Service {
     public void onCreate() {
         super.onCreate();
         binder = new AdminApiImpl();
+        UserRepository.getInstance().getMaintenance().start();
         Log.d(TAG, "AdminService has been created.");
     }
 
@@ -47,12 +60,75 @@ public class AdminService extends Service {
         return binder;
     }
 
+    /**
+     * 输出服务的运行统计，通过 adb shell dumpsys activity service com.surpasslike.welcomateservice/.service.AdminService 查看
+     * 包括每个 AIDL 方法和数据库语句的调用次数、失败次数以及延迟分布（p50/p90/p99/max），各类调用的限额与拒绝次数、登录封禁情况、会话数、变更监听器数、缓存命中情况，以及最近一次数据库维护回收的空间
+     * 参数 reset 会在输出后清空所有统计；参数 write-behind on|off 切换删除用户和修改密码的写后模式；
+     * 参数 maintenance 立即在后台执行一次数据库维护，结果在下一次 dump 中输出；
+     * 参数 backup [路径] 生成数据库快照，默认写入 {@link #BACKUP_FILE}；参数 restore [路径] 用快照替换数据库
+     *
+     * @param fd     输出的文件描述符
+     * @param writer 输出目标
+     * @param args   dumpsys 传入的参数
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        writer.println("AdminService metrics:");
+        Metrics.dump(writer);
+        writer.println();
+        if (binder != null) {
+            binder.getRateLimiter().dump(writer);
+            binder.getLoginThrottle().dump(writer);
+            writer.println("Sessions: " + binder.getSessionManager().size());
+            writer.println("Change listeners: " + binder.getChangeListenerCount());
+            writer.println();
+        }
+        UserRepository repository = UserRepository.getInstance();
+        if (args != null && args.length > 1 && "write-behind".equals(args[0])) {
+            repository.setWriteBehindEnabled("on".equals(args[1]));
+        }
+        writer.println("User cache: " + repository.getCacheStats());
+        writer.println("Write-behind: " + repository.getWriteBehindStats());
+        repository.getMaintenance().dump(writer);
+        if (args != null && args.length > 0 && "maintenance".equals(args[0])) {
+            repository.getMaintenance().requestRun();
+            writer.println("Maintenance requested.");
+        }
+        if (args != null && args.length > 0 && ("backup".equals(args[0]) || "restore".equals(args[0]))) {
+            File file = args.length > 1 ? new File(args[1]) : new File(getFilesDir(), BACKUP_FILE);
+            try {
+                if ("backup".equals(args[0])) {
+                    writer.println("Backup written to " + file + " (" + repository.backupTo(file) + " bytes)");
+                } else {
+                    // 旧库上建立的会话随替换一起失效
+                    if (binder != null) {
+                        binder.restoreFrom(file);
+                    } else {
+                        repository.restoreFrom(file, null);
+                    }
+                    writer.println("Database restored from " + file);
+                }
+            } catch (IOException e) {
+                writer.println(args[0] + " failed: " + e);
+            }
+        }
+        if (args != null && args.length > 0 && "reset".equals(args[0])) {
+            Metrics.reset();
+            writer.println("Metrics reset.");
+        }
+    }
+
     /**
      * 服务销毁时调用
+     * 不在主线程上等待异步请求和写后队列，它们在后台线程上处理完，同进程的界面不会因此卡顿
      */
     @Override
     public void onDestroy() {
         super.onDestroy();
+        if (binder != null) {
+            binder.shutdown();
+        }
+        UserRepository.getInstance().getMaintenance().stop();
         Log.d(TAG, "AdminService has been destroyed.");
     }
 }
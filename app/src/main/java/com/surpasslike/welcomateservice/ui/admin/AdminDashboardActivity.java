@@ -1,5 +1,6 @@
 package com.surpasslike.welcomateservice.ui.admin;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.lifecycle.ViewModelProvider;
@@ -8,6 +9,8 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import android.content.DialogInterface;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.View;
 import android.widget.EditText;
 import android.widget.Toast;
@@ -16,13 +19,18 @@ import com.surpasslike.welcomateservice.R;
 import com.surpasslike.welcomateservice.data.model.User;
 import com.surpasslike.welcomateservice.databinding.ActivityAdminDashboardBinding;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class AdminDashboardActivity extends AppCompatActivity {
 
+    // 距离列表底部还有多少项时开始加载下一页
+    private static final int PREFETCH_DISTANCE = 10;
+
     private ActivityAdminDashboardBinding binding;
     private AdminViewModel adminViewModel;
     private List<User> userList;
+    private List<User> searchResults;
     private AdminUserAdapter adapter;
 
     @Override
@@ -34,33 +42,85 @@ public class AdminDashboardActivity extends AppCompatActivity {
         adminViewModel = new ViewModelProvider(this).get(AdminViewModel.class);
         // 初始化 RecyclerView 和用户列表
         RecyclerView recyclerView = binding.recyclerView;
-        userList = adminViewModel.getAllUsers();
+        userList = new ArrayList<>();
         adapter = new AdminUserAdapter(userList);
-        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
         recyclerView.setAdapter(adapter);
+        // 点击用户修改密码，长按删除
+        adapter.setOnUserClickListener(new AdminUserAdapter.OnUserClickListener() {
+            @Override
+            public void onUserClick(User user) {
+                showChangePasswordDialog(user.getUsername());
+            }
 
-        binding.btnChangePassword.setOnClickListener(new View.OnClickListener() {
             @Override
-            public void onClick(View v) {
-                //实现修改指定用户密码功能
-                showUserListDialog();
+            public void onUserLongClick(User user) {
+                showDeleteUserDialog(user.getUsername());
+            }
+        });
+        // 滚动到接近底部时加载下一页，搜索结果不分页
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy > 0 && !adminViewModel.isSearching() && adminViewModel.hasMoreUsers()
+                        && layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - PREFETCH_DISTANCE) {
+                    adminViewModel.loadNextPage();
+                }
             }
         });
 
-        binding.btnAddUser.setOnClickListener(new View.OnClickListener() {
+        // 观察用户列表和各项操作的结果，数据库操作都在后台线程完成
+        adminViewModel.getUsers().observe(this, users -> {
+            userList = users;
+            showUsers();
+        });
+        adminViewModel.getSearchResults().observe(this, results -> {
+            searchResults = results;
+            showUsers();
+        });
+        // 边输入边搜索，ViewModel 会等输入停顿后才查询
+        binding.etSearch.addTextChangedListener(new TextWatcher() {
             @Override
-            public void onClick(View v) {
-                // 实现增加用户的功能
-                showAddUserDialog();
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
 
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                adminViewModel.setSearchQuery(s.toString());
             }
         });
+        adminViewModel.getAddUserResult().observe(this, event -> {
+            Boolean success = event.getContentIfNotHandled();
+            if (success != null) {
+                showToast(success ? "User added" : "Failed to add user");
+            }
+        });
+        adminViewModel.getUserDeleted().observe(this, event -> {
+            if (event.getContentIfNotHandled() != null) {
+                showToast("User deleted");
+            }
+        });
+        adminViewModel.getPasswordChanged().observe(this, event -> {
+            String username = event.getContentIfNotHandled();
+            if (username != null) {
+                showToast("Password changed for " + username);
+            }
+        });
+        if (adminViewModel.getUsers().getValue() == null) {
+            adminViewModel.refreshUsers();
+        }
 
-        binding.btnDeleteUser.setOnClickListener(new View.OnClickListener() {
+        binding.btnAddUser.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                // 实现删除用户的功能
-                showDeleteUserDialog();
+                // 实现增加用户的功能
+                showAddUserDialog();
+
             }
         });
     }
@@ -70,34 +130,9 @@ public class AdminDashboardActivity extends AppCompatActivity {
         Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
     }
 
-    //显示用户列表对话框
-    private void showUserListDialog() {
-        AlertDialog.Builder builder = new AlertDialog.Builder(this);
-        builder.setTitle("Select User to Change Password");
-
-        //将其替换为数据库中的实际用户列表
-        List<User> userList = adminViewModel.getAllUsers();
-
-        // 将用户列表转换为要在对话框中显示的用户名数组
-        String[] usernames = new String[userList.size()];
-        for (int i = 0; i < userList.size(); i++) {
-            usernames[i] = userList.get(i).getUsername();
-        }
-
-        // 在对话框中显示用户名列表
-        builder.setItems(usernames, new DialogInterface.OnClickListener() {
-            @Override
-            public void onClick(DialogInterface dialog, int which) {
-                // 获取所选用户名
-                String selectedUsername = userList.get(which).getUsername();
-
-                // 调用方法以更改所选用户的密码
-                showChangePasswordDialog(selectedUsername);
-            }
-        });
-
-        //显示对话框
-        builder.create().show();
+    // 正在搜索时显示搜索结果，否则显示已分页加载的全部用户
+    private void showUsers() {
+        adapter.setUserList(searchResults != null ? searchResults : userList);
     }
 
     //显示更改密码对话框
@@ -116,11 +151,8 @@ public class AdminDashboardActivity extends AppCompatActivity {
                 // 获取新密码
                 String newPassword = etNewPassword.getText().toString();
 
-                // 调用方法以更改所选用户的密码
+                // 调用方法以更改所选用户的密码，完成后通过 LiveData 提示
                 adminViewModel.changeUserPassword(username, newPassword);
-                userList = adminViewModel.getAllUsers(); // 添加用户后刷新用户列表
-                adapter.setUserList(userList); // 使用新用户列表更新适配器
-                showToast("Password changed for " + username);
             }
         });
 
@@ -153,15 +185,8 @@ public class AdminDashboardActivity extends AppCompatActivity {
                 String newAccount = etNewAccount.getText().toString();
                 String newPassword = etNewPassword.getText().toString();
 
-                // 调用方法以添加新用户
-                long rowId = adminViewModel.addUser(newUsername, newAccount, newPassword);
-                if (rowId != -1) {
-                    showToast("User added");
-                    userList = adminViewModel.getAllUsers(); // 添加用户后刷新用户列表
-                    adapter.setUserList(userList); // 使用新用户列表更新适配器
-                } else {
-                    showToast("Failed to add user");
-                }
+                // 调用方法以添加新用户，结果和刷新后的用户列表通过 LiveData 返回
+                adminViewModel.addUser(newUsername, newAccount, newPassword);
             }
         });
 
@@ -175,25 +200,17 @@ public class AdminDashboardActivity extends AppCompatActivity {
         builder.create().show();
     }
 
-    private void showDeleteUserDialog() {
+    // 删除用户前确认
+    private void showDeleteUserDialog(String username) {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle("Delete User");
-
-        View view = getLayoutInflater().inflate(R.layout.dialog_delete_user, null);
-        final EditText etUsernameToDelete = view.findViewById(R.id.etUsernameToDelete);
-        builder.setView(view);
+        builder.setMessage("Delete " + username + "?");
 
         builder.setPositiveButton("Delete", new DialogInterface.OnClickListener() {
             @Override
             public void onClick(DialogInterface dialog, int which) {
-                // 从输入字段中获取要删除的用户名
-                String usernameToDelete = etUsernameToDelete.getText().toString();
-
-                // 调用方法删除用户
-                adminViewModel.deleteUser(usernameToDelete);
-                showToast("User deleted");
-                userList = adminViewModel.getAllUsers(); // 删除用户后刷新用户列表
-                adapter.setUserList(userList); // 使用更新的用户列表更新适配器
+                // 调用方法删除用户，完成后通过 LiveData 提示，列表通过变更通知更新
+                adminViewModel.deleteUser(username);
             }
         });
 
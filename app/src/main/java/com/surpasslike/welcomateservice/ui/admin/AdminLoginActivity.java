@@ -33,6 +33,14 @@ public class AdminLoginActivity extends AppCompatActivity {
         // 初始化 ViewModel
         adminViewModel = new ViewModelProvider(this).get(AdminViewModel.class);
 
+        // 观察登录结果
+        adminViewModel.getLoginResult().observe(this, event -> {
+            Boolean loginSuccess = event.getContentIfNotHandled();
+            if (loginSuccess != null) {
+                onLoginResult(loginSuccess);
+            }
+        });
+
         // 设置登录按钮的点击监听器
         binding.btnLogin.setOnClickListener(v -> handleLogin());
 
@@ -44,7 +52,7 @@ public class AdminLoginActivity extends AppCompatActivity {
 
     /**
      * 处理登录逻辑
-     * 获取用户输入，调用 ViewModel 进行验证，并根据结果进行界面跳转或提示
+     * 获取用户输入，调用 ViewModel 在后台进行验证，结果通过 LiveData 返回
      */
     private void handleLogin() {
         String account = binding.etUsername.getText().toString().trim();
@@ -56,9 +64,18 @@ public class AdminLoginActivity extends AppCompatActivity {
             return;
         }
 
-        // 通过 ViewModel 验证管理员登录
-        boolean loginSuccess = adminViewModel.loginAdmin(account, password);
+        // 通过 ViewModel 验证管理员登录，验证期间禁用按钮防止重复提交
+        binding.btnLogin.setEnabled(false);
+        adminViewModel.loginAdmin(account, password);
+    }
 
+    /**
+     * 处理登录结果，根据结果进行界面跳转或提示
+     *
+     * @param loginSuccess 登录是否成功
+     */
+    private void onLoginResult(boolean loginSuccess) {
+        binding.btnLogin.setEnabled(true);
         if (loginSuccess) {
             // 登录成功，跳转到管理员仪表盘
             showToast("Login successful!");
@@ -33,13 +33,21 @@ public class AdminRegisterActivity extends AppCompatActivity {
         // 初始化 ViewModel
         adminViewModel = new ViewModelProvider(this).get(AdminViewModel.class);
 
+        // 观察注册结果
+        adminViewModel.getAddUserResult().observe(this, event -> {
+            Boolean success = event.getContentIfNotHandled();
+            if (success != null) {
+                onRegisterResult(success);
+            }
+        });
+
         // 设置注册按钮的点击监听器
         binding.btnRegister.setOnClickListener(v -> handleRegister());
     }
 
     /**
      * 处理注册逻辑
-     * 获取用户输入，进行基本验证，然后调用 ViewModel 进行用户注册
+     * 获取用户输入，进行基本验证，然后调用 ViewModel 在后台进行用户注册，结果通过 LiveData 返回
      */
     private void handleRegister() {
         String username = binding.etUsername.getText().toString().trim();
@@ -52,10 +60,19 @@ public class AdminRegisterActivity extends AppCompatActivity {
             return;
         }
 
-        // 通过 ViewModel 添加新用户
-        long rowId = adminViewModel.addUser(username, account, password);
+        // 通过 ViewModel 添加新用户，注册期间禁用按钮防止重复提交
+        binding.btnRegister.setEnabled(false);
+        adminViewModel.addUser(username, account, password);
+    }
 
-        if (rowId != -1) {
+    /**
+     * 处理注册结果
+     *
+     * @param success 注册是否成功
+     */
+    private void onRegisterResult(boolean success) {
+        binding.btnRegister.setEnabled(true);
+        if (success) {
             showToast("Registration successful!");
             // 注册成功后关闭当前页面，返回到登录页面
             finish();
@@ -6,19 +6,60 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.surpasslike.welcomateservice.R;
 import com.surpasslike.welcomateservice.data.model.User;
 
 import java.util.List;
+import java.util.Objects;
 
 /**
  * 用于在 RecyclerView 中显示用户列表的适配器
+ * 使用 AsyncListDiffer 在后台线程计算新旧列表的差异，只刷新真正变化的行，
+ * 并以数据库中的用户 ID 作为稳定 ID
  */
 public class AdminUserAdapter extends RecyclerView.Adapter<AdminUserAdapter.UserViewHolder> {
 
-    private List<User> userList;
+    /**
+     * 以用户 ID 判断是否为同一行，以用户名和账户判断内容是否变化
+     */
+    private static final DiffUtil.ItemCallback<User> DIFF_CALLBACK = new DiffUtil.ItemCallback<User>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull User oldItem, @NonNull User newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull User oldItem, @NonNull User newItem) {
+            return Objects.equals(oldItem.getUsername(), newItem.getUsername())
+                    && Objects.equals(oldItem.getAccount(), newItem.getAccount());
+        }
+    };
+
+    /**
+     * 列表项的点击监听器
+     */
+    public interface OnUserClickListener {
+        /**
+         * 点击了一个用户
+         *
+         * @param user 被点击的用户
+         */
+        void onUserClick(User user);
+
+        /**
+         * 长按了一个用户
+         *
+         * @param user 被长按的用户
+         */
+        void onUserLongClick(User user);
+    }
+
+    private final AsyncListDiffer<User> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    private OnUserClickListener clickListener;
 
     /**
      * 构造函数
@@ -26,7 +67,17 @@ public class AdminUserAdapter extends RecyclerView.Adapter<AdminUserAdapter.User
      * @param userList 初始的用户数据列表
      */
     public AdminUserAdapter(List<User> userList) {
-        this.userList = userList;
+        setHasStableIds(true);
+        differ.submitList(userList);
+    }
+
+    /**
+     * 设置列表项的点击监听器
+     *
+     * @param listener 监听器，可以为 null
+     */
+    public void setOnUserClickListener(OnUserClickListener listener) {
+        this.clickListener = listener;
     }
 
     /**
@@ -40,7 +91,30 @@ public class AdminUserAdapter extends RecyclerView.Adapter<AdminUserAdapter.User
     @Override
     public UserViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_user, parent, false);
-        return new UserViewHolder(view);
+        UserViewHolder holder = new UserViewHolder(view);
+        view.setOnClickListener(v -> {
+            User user = userAt(holder);
+            if (user != null && clickListener != null) {
+                clickListener.onUserClick(user);
+            }
+        });
+        view.setOnLongClickListener(v -> {
+            User user = userAt(holder);
+            if (user != null && clickListener != null) {
+                clickListener.onUserLongClick(user);
+                return true;
+            }
+            return false;
+        });
+        return holder;
+    }
+
+    /**
+     * 获取 ViewHolder 当前对应的用户，列表正在更新而位置无效时返回 null
+     */
+    private User userAt(UserViewHolder holder) {
+        int position = holder.getBindingAdapterPosition();
+        return position == RecyclerView.NO_POSITION ? null : differ.getCurrentList().get(position);
     }
 
     /**
@@ -51,7 +125,7 @@ public class AdminUserAdapter extends RecyclerView.Adapter<AdminUserAdapter.User
      */
     @Override
     public void onBindViewHolder(@NonNull UserViewHolder holder, int position) {
-        User user = userList.get(position);
+        User user = differ.getCurrentList().get(position);
         holder.tvUsername.setText(user.getUsername());
         holder.tvAccount.setText(user.getAccount());
         // 安全起见，我们不在此处显示密码或密码哈希
@@ -64,18 +138,29 @@ public class AdminUserAdapter extends RecyclerView.Adapter<AdminUserAdapter.User
      */
     @Override
     public int getItemCount() {
-        return userList != null ? userList.size() : 0;
+        return differ.getCurrentList().size();
+    }
+
+    /**
+     * 返回指定位置的稳定 ID，即用户在数据库中的 ID
+     *
+     * @param position 列表中的位置
+     * @return 用户 ID
+     */
+    @Override
+    public long getItemId(int position) {
+        return differ.getCurrentList().get(position).getId();
     }
 
     /**
      * 更新适配器的数据集
+     * 差异在后台线程计算，完成后只对新增、删除或变化的行发出通知
+     * 传入的列表在提交后不应再被修改
      *
      * @param newUserList 新的用户列表
      */
     public void setUserList(List<User> newUserList) {
-        this.userList = newUserList;
-        // 刷新整个列表注意：对于大型列表，使用 DiffUtil 会更高效
-        notifyDataSetChanged();
+        differ.submitList(newUserList);
     }
 
     /**
@@ -1,78 +1,356 @@
 package com.surpasslike.welcomateservice.ui.admin;
 
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
+import com.surpasslike.welcomateservice.data.AsyncUserRepository;
+import com.surpasslike.welcomateservice.data.ChangeCoalescer;
 import com.surpasslike.welcomateservice.data.UserRepository;
 import com.surpasslike.welcomateservice.data.model.User;
+import com.surpasslike.welcomateservice.data.model.UserChange;
+import com.surpasslike.welcomateservice.data.model.UserPage;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
 
 /**
  * Admin UI 的 ViewModel
  * 负责为 UI 提供数据，并处理用户的交互逻辑
- * 它将所有数据操作委托给 UserRepository
+ * 它将所有数据操作委托给 AsyncUserRepository，在后台线程执行，
+ * 结果通过 LiveData 发布到主线程，Activity 只需观察而不会被数据库操作阻塞
+ * 已加载的用户列表根据仓库推送的变更增量更新，无论变更来自界面还是 AIDL 客户端，都不需要重新读取整个列表
+ * 搜索在输入停顿后才发出查询，并丢弃过期的结果，快速输入时不会在数据库线程上堆积请求
  */
 public class AdminViewModel extends ViewModel {
-    private final UserRepository userRepository;
+    private static final String TAG = "AdminViewModel";
+
+    /**
+     * 用户列表每页加载的数量
+     */
+    public static final int PAGE_SIZE = 50;
+
+    /**
+     * 输入停顿多久后才执行搜索（毫秒）
+     */
+    public static final long SEARCH_DEBOUNCE_MS = 250;
+
+    /**
+     * 搜索最多显示的结果数
+     */
+    public static final int SEARCH_LIMIT = 50;
+
+    private final AsyncUserRepository userRepository;
+    private final Handler mainHandler;
+    private final Executor mainExecutor;
+    private final ChangeCoalescer.Listener<UserChange> changeListener;
+
+    private final MutableLiveData<List<User>> users = new MutableLiveData<>();
+    private final MutableLiveData<List<User>> searchResults = new MutableLiveData<>();
+    private final MutableLiveData<Event<Boolean>> loginResult = new MutableLiveData<>();
+    private final MutableLiveData<Event<Boolean>> addUserResult = new MutableLiveData<>();
+    private final MutableLiveData<Event<String>> userDeleted = new MutableLiveData<>();
+    private final MutableLiveData<Event<String>> passwordChanged = new MutableLiveData<>();
+
+    // 已加载的用户列表及分页状态，只在主线程上访问
+    private final List<User> loadedUsers = new ArrayList<>();
+    private long nextAfterId = 0;
+    private boolean hasMore = true;
+    private boolean loadingPage;
+    private int listGeneration;
+
+    // 搜索状态，只在主线程上访问
+    private final Runnable searchTask = this::runSearch;
+    private String searchQuery = "";
+    private int searchGeneration;
 
     /**
      * 构造函数
      * 初始化用户仓库
      */
     public AdminViewModel() {
-        this.userRepository = UserRepository.getInstance();
+        this.userRepository = AsyncUserRepository.getInstance();
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        this.mainExecutor = mainHandler::post;
+        this.changeListener = (changes, overflow) -> mainExecutor.execute(() -> applyChanges(changes, overflow));
+        userRepository.addChangeListener(changeListener);
+    }
+
+    @Override
+    protected void onCleared() {
+        userRepository.removeChangeListener(changeListener);
+        mainHandler.removeCallbacks(searchTask);
+    }
+
+    /**
+     * 已加载的用户列表
+     *
+     * @return 可观察的用户列表
+     */
+    public LiveData<List<User>> getUsers() {
+        return users;
+    }
+
+    /**
+     * 当前搜索的结果，没有在搜索时为 null
+     *
+     * @return 可观察的搜索结果
+     */
+    public LiveData<List<User>> getSearchResults() {
+        return searchResults;
     }
 
     /**
-     * 验证管理员登录
+     * 登录结果，true 表示登录成功
+     *
+     * @return 可观察的登录结果事件
+     */
+    public LiveData<Event<Boolean>> getLoginResult() {
+        return loginResult;
+    }
+
+    /**
+     * 添加用户的结果，true 表示添加成功
+     *
+     * @return 可观察的添加结果事件
+     */
+    public LiveData<Event<Boolean>> getAddUserResult() {
+        return addUserResult;
+    }
+
+    /**
+     * 用户删除完成的事件，内容为被删除的用户名
+     *
+     * @return 可观察的删除事件
+     */
+    public LiveData<Event<String>> getUserDeleted() {
+        return userDeleted;
+    }
+
+    /**
+     * 密码修改完成的事件，内容为被修改密码的用户名
+     *
+     * @return 可观察的改密事件
+     */
+    public LiveData<Event<String>> getPasswordChanged() {
+        return passwordChanged;
+    }
+
+    /**
+     * 验证管理员登录，结果通过 {@link #getLoginResult()} 发布
      *
      * @param account  用户输入的账户
      * @param password 用户输入的原始密码
-     * @return 如果登录成功，返回 true；否则返回 false
      */
-    public boolean loginAdmin(String account, String password) {
+    public void loginAdmin(String account, String password) {
         // loginAdmin 返回的是用户名，如果不为 null 则表示成功
-        return userRepository.loginAdmin(account, password) != null;
+        userRepository.loginAdmin(account, password).whenCompleteAsync((username, error) -> {
+            if (error != null) {
+                Log.e(TAG, "Login failed", error);
+            }
+            loginResult.setValue(new Event<>(error == null && username != null));
+        }, mainExecutor);
     }
 
     /**
-     * 添加一个新用户
+     * 添加一个新用户，结果通过 {@link #getAddUserResult()} 发布，新用户随后通过变更通知加入列表
      *
      * @param username 用户名
      * @param account  账户
      * @param password 原始密码
-     * @return 新插入行的行 ID，如果发生错误则为 -1
      */
-    public long addUser(String username, String account, String password) {
-        return userRepository.addUser(username, account, password);
+    public void addUser(String username, String account, String password) {
+        userRepository.addUser(username, account, password).whenCompleteAsync((rowId, error) -> {
+            if (error != null) {
+                Log.e(TAG, "Add user failed", error);
+            }
+            addUserResult.setValue(new Event<>(error == null && rowId != -1));
+        }, mainExecutor);
     }
 
     /**
-     * 获取所有用户的列表
+     * 重新从第一页开始加载用户列表，结果通过 {@link #getUsers()} 发布
+     * 会加载至少与当前已加载数量相同的行数，使列表刷新后保持原有的浏览范围
+     */
+    public void refreshUsers() {
+        int target = Math.min(Math.max(PAGE_SIZE, loadedUsers.size()), UserRepository.MAX_PAGE_SIZE);
+        int generation = ++listGeneration;
+        loadingPage = true;
+        userRepository.getUsersPage(0, target).whenCompleteAsync((page, error) -> {
+            if (generation != listGeneration) {
+                return; // 已经有更新的刷新请求
+            }
+            loadedUsers.clear();
+            nextAfterId = 0;
+            hasMore = true;
+            onPageLoaded(page, error);
+        }, mainExecutor);
+    }
+
+    /**
+     * 加载下一页用户并追加到已加载的列表，结果通过 {@link #getUsers()} 发布
+     * 如果没有更多数据或正在加载，则忽略此次调用
+     */
+    public void loadNextPage() {
+        if (!hasMore || loadingPage) {
+            return;
+        }
+        int generation = listGeneration;
+        loadingPage = true;
+        userRepository.getUsersPage(nextAfterId, PAGE_SIZE).whenCompleteAsync((page, error) -> {
+            if (generation == listGeneration) {
+                onPageLoaded(page, error);
+            }
+        }, mainExecutor);
+    }
+
+    /**
+     * 更新搜索文本，输入停顿 {@link #SEARCH_DEBOUNCE_MS} 毫秒后执行搜索，结果通过 {@link #getSearchResults()} 发布
+     * 文本为空时结束搜索，搜索结果变为 null
      *
-     * @return 包含所有用户的 List
+     * @param query 搜索框中的文本
      */
-    public List<User> getAllUsers() {
-        return userRepository.getAllUsers();
+    public void setSearchQuery(String query) {
+        String trimmed = query == null ? "" : query.trim();
+        if (trimmed.equals(searchQuery)) {
+            return;
+        }
+        searchQuery = trimmed;
+        searchGeneration++;
+        mainHandler.removeCallbacks(searchTask);
+        if (trimmed.isEmpty()) {
+            searchResults.setValue(null);
+        } else {
+            mainHandler.postDelayed(searchTask, SEARCH_DEBOUNCE_MS);
+        }
     }
 
     /**
-     * 根据用户名删除一个用户
+     * 是否正在搜索
+     *
+     * @return 搜索文本不为空时返回 true
+     */
+    public boolean isSearching() {
+        return !searchQuery.isEmpty();
+    }
+
+    private void runSearch() {
+        int generation = searchGeneration;
+        userRepository.searchUsers(searchQuery, SEARCH_LIMIT).whenCompleteAsync((page, error) -> {
+            if (generation != searchGeneration) {
+                return; // 搜索文本已经变化
+            }
+            if (error != null) {
+                Log.e(TAG, "Search failed", error);
+                return;
+            }
+            searchResults.setValue(page.getUsers());
+        }, mainExecutor);
+    }
+
+    /**
+     * 是否还有未加载的用户
+     *
+     * @return 还有下一页时返回 true
+     */
+    public boolean hasMoreUsers() {
+        return hasMore;
+    }
+
+    private void onPageLoaded(UserPage page, Throwable error) {
+        loadingPage = false;
+        if (error != null) {
+            Log.e(TAG, "Loading users failed", error);
+            return;
+        }
+        loadedUsers.addAll(page.getUsers());
+        nextAfterId = page.getNextAfterId();
+        hasMore = page.hasMore();
+        users.setValue(new ArrayList<>(loadedUsers));
+    }
+
+    /**
+     * 把一批用户变更应用到已加载的列表
+     * 列表按 ID 升序，新用户的 ID 总是最大，只有已加载到末尾时才追加，否则它会出现在之后加载的页中；
+     * 加载进行中或变更过多时无法判断结果是否已包含这些变更，直接重新加载
+     */
+    private void applyChanges(List<UserChange> changes, boolean overflow) {
+        if (isSearching()) {
+            // 搜索结果有上限，重新查询的代价很小
+            searchGeneration++;
+            mainHandler.removeCallbacks(searchTask);
+            runSearch();
+        }
+        if (overflow || loadingPage) {
+            refreshUsers();
+            return;
+        }
+        boolean changed = false;
+        for (UserChange change : changes) {
+            switch (change.getType()) {
+                case UserChange.TYPE_ADDED:
+                    // 写入后窗口结束前完成的刷新可能已经读到了这个用户
+                    if (!hasMore && !containsUser(change.getId())) {
+                        loadedUsers.add(new User(change.getId(), change.getUsername(), change.getAccount(), null));
+                        changed = true;
+                    }
+                    break;
+                case UserChange.TYPE_DELETED:
+                    changed |= loadedUsers.removeIf(user -> Objects.equals(user.getUsername(), change.getUsername()));
+                    break;
+                default:
+                    break; // 列表中不显示密码
+            }
+        }
+        if (changed) {
+            users.setValue(new ArrayList<>(loadedUsers));
+        }
+    }
+
+    private boolean containsUser(long id) {
+        for (int i = loadedUsers.size() - 1; i >= 0; i--) {
+            if (loadedUsers.get(i).getId() == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 根据用户名删除一个用户，完成后通过 {@link #getUserDeleted()} 通知，列表通过变更通知更新
      *
      * @param username 要删除的用户的用户名
      */
     public void deleteUser(String username) {
-        userRepository.deleteUser(username);
+        userRepository.deleteUser(username).whenCompleteAsync((ignored, error) -> {
+            if (error != null) {
+                Log.e(TAG, "Delete user failed", error);
+                return;
+            }
+            userDeleted.setValue(new Event<>(username));
+        }, mainExecutor);
     }
 
     /**
-     * 更新指定用户的密码
+     * 更新指定用户的密码，完成后通过 {@link #getPasswordChanged()} 通知
+     * 列表中不显示密码，因此无需刷新用户列表
      *
      * @param username    要更新密码的用户的用户名
      * @param newPassword 新的原始密码
      */
     public void changeUserPassword(String username, String newPassword) {
-        userRepository.updateUserPassword(username, newPassword);
+        userRepository.updateUserPassword(username, newPassword).whenCompleteAsync((ignored, error) -> {
+            if (error != null) {
+                Log.e(TAG, "Change password failed", error);
+                return;
+            }
+            passwordChanged.setValue(new Event<>(username));
+        }, mainExecutor);
     }
 }
-
@@ -0,0 +1,34 @@
+package com.surpasslike.welcomateservice.ui.admin;
+
+/**
+ * 通过 LiveData 发送的一次性事件
+ * 例如登录结果、提示消息等，屏幕旋转后重新订阅时不应再次处理
+ *
+ * @param <T> 事件内容的类型
+ */
+public class Event<T> {
+    private final T content;
+    private boolean handled;
+
+    /**
+     * 构造函数
+     *
+     * @param content 事件内容
+     */
+    public Event(T content) {
+        this.content = content;
+    }
+
+    /**
+     * 获取尚未处理的事件内容，并将其标记为已处理
+     *
+     * @return 事件内容；如果已经处理过则返回 null
+     */
+    public T getContentIfNotHandled() {
+        if (handled) {
+            return null;
+        }
+        handled = true;
+        return content;
+    }
+}
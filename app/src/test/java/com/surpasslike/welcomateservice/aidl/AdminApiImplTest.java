@@ -0,0 +1,347 @@
+package com.surpasslike.welcomateservice.aidl;
+
+import android.content.Context;
+import android.os.Binder;
+import android.os.ServiceSpecificException;
+
+import com.surpasslike.welcomateservice.IAdminCallback;
+import com.surpasslike.welcomateservice.data.HashPoolBusyException;
+import com.surpasslike.welcomateservice.data.model.AdminSession;
+import com.surpasslike.welcomateservice.data.PasswordHasher;
+import com.surpasslike.welcomateservice.data.UserRepository;
+import com.surpasslike.welcomateservice.data.db.DatabaseConfig;
+import com.surpasslike.welcomateservice.data.db.DatabaseHelper;
+import com.surpasslike.welcomateservice.security.CallerRateLimiter;
+import com.surpasslike.welcomateservice.security.CallerRateLimiter.Limit;
+import com.surpasslike.welcomateservice.security.LoginThrottle;
+import com.surpasslike.welcomateservice.security.SessionManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.io.File;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * AdminApiImpl 的本地单元测试，在 Robolectric 的原生 SQLite 上运行
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class AdminApiImplTest {
+    private static final String DB_NAME = "users-admin-api-test.db";
+    private static final Limit UNLIMITED = new Limit(100_000, 100_000);
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private FakeRepository repository;
+    private LoginThrottle loginThrottle;
+    private AdminApiImpl api;
+    private final RecordingCallback callback = new RecordingCallback();
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context,
+                new DatabaseConfig(DB_NAME, true, DatabaseConfig.SYNCHRONOUS_NORMAL, 30_000L));
+        repository = new FakeRepository(dbHelper);
+        repository.setPasswordHashIterations(PasswordHasher.MIN_ITERATIONS);
+        loginThrottle = new LoginThrottle();
+        api = newApi(new CallerRateLimiter(UNLIMITED, UNLIMITED, UNLIMITED));
+    }
+
+    @After
+    public void tearDown() {
+        api.shutdown().join();
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void login_reportsBusyHashPoolWithoutCountingFailure() {
+        assertTrue(api.registerUser("alice", "alice@example.com", "secret"));
+        repository.hashPoolBusy = true;
+        for (int i = 0; i < 10; i++) {
+            try {
+                api.loginAdmin("alice@example.com", "secret");
+                fail("expected busy");
+            } catch (ServiceSpecificException expected) {
+                assertEquals(AdminApiImpl.ERROR_BUSY, expected.errorCode);
+            }
+        }
+        // 繁忙不是密码错误，账户没有因此被封禁
+        assertEquals(0, loginThrottle.checkAllowed("alice@example.com", Binder.getCallingUid()));
+
+        repository.hashPoolBusy = false;
+        assertEquals("alice", api.loginAdmin("alice@example.com", "secret"));
+    }
+
+    @Test
+    public void updatePassword_reportsBusyHashPoolAndKeepsSessions() {
+        assertTrue(api.registerUser("alice", "alice@example.com", "secret"));
+        AdminSession session = api.loginAdminSession("alice@example.com", "secret");
+        assertNotNull(session);
+        repository.hashPoolBusy = true;
+        try {
+            api.updateUserPassword("alice", "new");
+            fail("expected busy");
+        } catch (ServiceSpecificException expected) {
+            assertEquals(AdminApiImpl.ERROR_BUSY, expected.errorCode);
+        }
+        try {
+            api.updateUserPasswordWithToken(session.getToken(), "alice", "new");
+            fail("expected busy");
+        } catch (ServiceSpecificException expected) {
+            assertEquals(AdminApiImpl.ERROR_BUSY, expected.errorCode);
+        }
+
+        // 密码没有改变，会话仍然有效
+        assertNotNull(api.getUsersPageWithToken(session.getToken(), 0, 10));
+        repository.hashPoolBusy = false;
+        assertEquals("alice", api.loginAdmin("alice@example.com", "secret"));
+        api.updateUserPassword("alice", "new");
+        assertEquals(0, api.getSessionManager().size());
+        assertEquals("alice", api.loginAdmin("alice@example.com", "new"));
+    }
+
+    @Test
+    public void restoreFrom_invalidatesSessions() throws Exception {
+        File backupFile = new File(context.getCacheDir(), "users-admin-api-test-backup.db");
+        try {
+            assertTrue(api.registerUser("alice", "alice@example.com", "secret"));
+            repository.backupTo(backupFile);
+            AdminSession session = api.loginAdminSession("alice@example.com", "secret");
+            assertNotNull(session);
+
+            api.restoreFrom(backupFile);
+
+            // 会话建立在旧库上，替换之后必须重新登录
+            assertEquals(0, api.getSessionManager().size());
+            try {
+                api.getUsersPageWithToken(session.getToken(), 0, 10);
+                fail("expected session to be invalidated");
+            } catch (SecurityException expected) {
+                // 令牌已失效
+            }
+        } finally {
+            backupFile.delete();
+        }
+    }
+
+    @Test
+    public void registerUserAsync_completesOnWorker() throws Exception {
+        api.registerUserAsync(1, "alice", "alice@example.com", "secret", callback);
+        assertEquals(Result.complete(1, true), callback.take());
+        api.registerUserAsync(2, "alice", "alice@example.com", "secret", callback);
+        assertEquals(Result.complete(2, false), callback.take());
+    }
+
+    @Test
+    public void registerUserAsync_reportsRateLimit() throws Exception {
+        AdminApiImpl limited = newApi(new CallerRateLimiter(UNLIMITED, new Limit(1, 1), UNLIMITED));
+        repository.gate = new CountDownLatch(1);
+        try {
+            limited.registerUserAsync(1, "alice", "alice@example.com", "secret", callback);
+            limited.registerUserAsync(2, "bob", "bob@example.com", "secret", callback);
+
+            // 被限流的请求在 Binder 线程上立即回调，不会进入工作线程
+            assertEquals(Result.error(2, AdminApiImpl.ERROR_RATE_LIMITED), callback.take());
+            repository.gate.countDown();
+            assertEquals(Result.complete(1, true), callback.take());
+        } finally {
+            limited.shutdown().join();
+        }
+    }
+
+    @Test
+    public void registerUserAsync_reportsBusyHashPool() throws Exception {
+        repository.hashPoolBusy = true;
+        api.registerUserAsync(1, "alice", "alice@example.com", "secret", callback);
+
+        assertEquals(Result.error(1, AdminApiImpl.ERROR_BUSY), callback.take());
+    }
+
+    @Test
+    public void registerUserAsync_reportsUnexpectedFailureAsInternal() throws Exception {
+        repository.failure = new IllegalStateException("disk full");
+        api.registerUserAsync(1, "alice", "alice@example.com", "secret", callback);
+
+        assertEquals(Result.error(1, AdminApiImpl.ERROR_INTERNAL), callback.take());
+    }
+
+    @Test
+    public void registerUserAsync_rejectsWhenQueueIsFull() throws Exception {
+        repository.gate = new CountDownLatch(1);
+        int submitted = 0;
+        // 工作线程全部阻塞后，队列满时的请求在 Binder 线程上立即以 ERROR_BUSY 回调
+        while (callback.results.isEmpty() && submitted < 10_000) {
+            api.registerUserAsync(submitted, "user" + submitted, "account" + submitted, "secret", callback);
+            submitted++;
+        }
+        assertEquals(Result.error(submitted - 1, AdminApiImpl.ERROR_BUSY), callback.take());
+
+        repository.gate.countDown();
+        for (int i = 0; i < submitted - 1; i++) {
+            Result result = callback.take();
+            assertEquals(Result.complete(result.requestId, true), result);
+        }
+    }
+
+    @Test
+    public void shutdown_returnsImmediatelyThenDrainsQueuedRequests() throws Exception {
+        repository.gate = new CountDownLatch(1);
+        for (int i = 0; i < 5; i++) {
+            api.registerUserAsync(i, "user" + i, "account" + i, "secret", callback);
+        }
+
+        // 工作线程仍被阻塞，shutdown 不等待它们就返回
+        CompletableFuture<Void> drained = api.shutdown();
+        assertFalse(drained.isDone());
+        api.registerUserAsync(5, "late", "late@example.com", "secret", callback);
+        assertEquals(Result.error(5, AdminApiImpl.ERROR_BUSY), callback.take());
+
+        // 已入队的请求在后台执行完并回调
+        repository.gate.countDown();
+        drained.get(10, TimeUnit.SECONDS);
+        assertEquals(5, callback.results.size());
+        for (int i = 0; i < 5; i++) {
+            assertTrue(callback.results.poll().success);
+        }
+    }
+
+    private AdminApiImpl newApi(CallerRateLimiter rateLimiter) {
+        return new AdminApiImpl(repository, rateLimiter, loginThrottle, new SessionManager());
+    }
+
+    /**
+     * 可以模拟哈希线程池已满、内部错误和慢速执行的仓库
+     */
+    private static class FakeRepository extends UserRepository {
+        volatile boolean hashPoolBusy;
+        volatile RuntimeException failure;
+        /**
+         * 不为 null 时，addUser 等待放行后才执行
+         */
+        volatile CountDownLatch gate;
+
+        FakeRepository(DatabaseHelper dbHelper) {
+            super(dbHelper);
+        }
+
+        @Override
+        public String loginAdmin(String account, String password) {
+            if (hashPoolBusy) {
+                throw new HashPoolBusyException("Password hashing pool is saturated");
+            }
+            return super.loginAdmin(account, password);
+        }
+
+        @Override
+        public long addUser(String username, String account, String password) {
+            CountDownLatch latch = gate;
+            if (latch != null) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return -1;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            if (hashPoolBusy) {
+                throw new HashPoolBusyException("Password hashing pool is saturated");
+            }
+            return super.addUser(username, account, password);
+        }
+
+        @Override
+        public CompletableFuture<Void> submitUpdateUserPassword(String username, String newPassword) {
+            if (hashPoolBusy) {
+                CompletableFuture<Void> busy = new CompletableFuture<>();
+                busy.completeExceptionally(new HashPoolBusyException("Password hashing pool is saturated"));
+                return busy;
+            }
+            return super.submitUpdateUserPassword(username, newPassword);
+        }
+    }
+
+    /**
+     * 一次回调的内容
+     */
+    private static final class Result {
+        final int requestId;
+        final boolean success;
+        final int errorCode;
+
+        private Result(int requestId, boolean success, int errorCode) {
+            this.requestId = requestId;
+            this.success = success;
+            this.errorCode = errorCode;
+        }
+
+        static Result complete(int requestId, boolean success) {
+            return new Result(requestId, success, 0);
+        }
+
+        static Result error(int requestId, int errorCode) {
+            return new Result(requestId, false, errorCode);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Result)) {
+                return false;
+            }
+            Result other = (Result) o;
+            return requestId == other.requestId && success == other.success && errorCode == other.errorCode;
+        }
+
+        @Override
+        public int hashCode() {
+            return (requestId * 31 + errorCode) * 2 + (success ? 1 : 0);
+        }
+
+        @Override
+        public String toString() {
+            return errorCode != 0 ? requestId + ": error " + errorCode : requestId + ": complete " + success;
+        }
+    }
+
+    /**
+     * 按到达顺序记录回调的 IAdminCallback
+     */
+    private static final class RecordingCallback extends IAdminCallback.Stub {
+        final BlockingQueue<Result> results = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onComplete(int requestId, boolean success) {
+            results.add(Result.complete(requestId, success));
+        }
+
+        @Override
+        public void onError(int requestId, int errorCode, String message) {
+            results.add(Result.error(requestId, errorCode));
+        }
+
+        Result take() throws InterruptedException {
+            Result result = results.poll(10, TimeUnit.SECONDS);
+            assertNotNull("no callback within 10s", result);
+            return result;
+        }
+    }
+}
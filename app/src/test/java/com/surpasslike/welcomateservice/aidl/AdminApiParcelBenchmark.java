@@ -0,0 +1,125 @@
+package com.surpasslike.welcomateservice.aidl;
+
+import android.os.Parcel;
+
+import com.surpasslike.welcomateservice.benchmark.BenchmarkReport;
+import com.surpasslike.welcomateservice.data.model.User;
+import com.surpasslike.welcomateservice.data.model.UserInfo;
+import com.surpasslike.welcomateservice.data.model.UserPage;
+import com.surpasslike.welcomateservice.data.model.UserRecord;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * IAdminService 参数和返回值的 Parcel 编组基准，结果写入 build/benchmark-results/AdminApiParcelBenchmark.json
+ * Robolectric 的 Parcel 是 JVM 上的实现，绝对耗时与真机不同，结果用于发现编组代码本身的回归
+ * getUsersByIds.reply.naive 是逐字段写入的朴素编组，与 getUsersByIds.reply 对比 UserInfo 紧凑编组的耗时
+ * 默认不随单元测试运行，使用 ./gradlew :app:testDebugUnitTest -Pbenchmark 执行
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class AdminApiParcelBenchmark {
+    private static final int SAMPLES = 1_000;
+    private static final int WARMUP = 200;
+
+    @Test
+    public void marshalling() throws Exception {
+        BenchmarkReport report = new BenchmarkReport("AdminApiParcelBenchmark");
+
+        report.measure("loginAdmin.args", 0, WARMUP, SAMPLES, i -> {
+            Parcel parcel = Parcel.obtain();
+            try {
+                parcel.writeString("account@example.com");
+                parcel.writeString("secret");
+                parcel.setDataPosition(0);
+                assertEquals("account@example.com", parcel.readString());
+                assertEquals("secret", parcel.readString());
+            } finally {
+                parcel.recycle();
+            }
+        });
+
+        for (int size : new int[]{10, 100, 1_000}) {
+            List<UserRecord> records = new ArrayList<>(size);
+            for (int n = 0; n < size; n++) {
+                records.add(new UserRecord("user" + n, "account" + n, "secret" + n));
+            }
+            report.measure("registerUsers.args", size, WARMUP, SAMPLES, i -> {
+                Parcel parcel = Parcel.obtain();
+                try {
+                    parcel.writeTypedList(records);
+                    parcel.setDataPosition(0);
+                    assertEquals(size, parcel.createTypedArrayList(UserRecord.CREATOR).size());
+                } finally {
+                    parcel.recycle();
+                }
+            });
+        }
+
+        for (int size : new int[]{50, 500}) {
+            List<User> users = new ArrayList<>(size);
+            for (int n = 0; n < size; n++) {
+                users.add(new User(n + 1, "user" + n, "account" + n, null));
+            }
+            UserPage page = new UserPage(users, size, true);
+            report.measure("getUsersPage.reply", size, WARMUP, SAMPLES, i -> {
+                Parcel parcel = Parcel.obtain();
+                try {
+                    page.writeToParcel(parcel, 0);
+                    parcel.setDataPosition(0);
+                    assertEquals(size, UserPage.CREATOR.createFromParcel(parcel).getUsers().size());
+                } finally {
+                    parcel.recycle();
+                }
+            });
+        }
+
+        List<UserInfo> infos = new ArrayList<>(500);
+        for (int n = 0; n < 500; n++) {
+            infos.add(new UserInfo(n + 1, "user" + n, "account" + n));
+        }
+        report.measure("getUsersByIds.reply", infos.size(), WARMUP, SAMPLES, i -> {
+            Parcel parcel = Parcel.obtain();
+            try {
+                parcel.writeTypedList(infos);
+                parcel.setDataPosition(0);
+                assertEquals(infos.size(), parcel.createTypedArrayList(UserInfo.CREATOR).size());
+            } finally {
+                parcel.recycle();
+            }
+        });
+        // 对照：与原先的 User 相同的字段（包括总是为空的密码），ID 装箱后以 writeValue 写入，字符串为 UTF-16
+        report.measure("getUsersByIds.reply.naive", infos.size(), WARMUP, SAMPLES, i -> {
+            Parcel parcel = Parcel.obtain();
+            try {
+                parcel.writeInt(infos.size());
+                for (UserInfo info : infos) {
+                    parcel.writeValue(info.getId());
+                    parcel.writeString(info.getUsername());
+                    parcel.writeString(info.getAccount());
+                    parcel.writeString(null);
+                }
+                parcel.setDataPosition(0);
+                int size = parcel.readInt();
+                List<User> users = new ArrayList<>(size);
+                for (int n = 0; n < size; n++) {
+                    long id = (Long) parcel.readValue(AdminApiParcelBenchmark.class.getClassLoader());
+                    users.add(new User(id, parcel.readString(), parcel.readString(), parcel.readString()));
+                }
+                assertEquals(infos.size(), users.size());
+            } finally {
+                parcel.recycle();
+            }
+        });
+
+        report.write();
+    }
+}
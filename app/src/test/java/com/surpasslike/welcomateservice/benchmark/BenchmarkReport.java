@@ -0,0 +1,100 @@
+package com.surpasslike.welcomateservice.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 在 JVM 单元测试中运行的简单基准工具，逐次计时并输出机器可读的 JSON 结果
+ * 结果文件写入系统属性 benchmark.outputDir 指定的目录（默认 build/benchmark-results），文件名为套件名，
+ * 格式与 JMH 模块的结果一样可以被 CI 解析并与基线比较
+ */
+public class BenchmarkReport {
+
+    /**
+     * 被测操作
+     */
+    public interface Operation {
+        /**
+         * @param i 第几次执行，从 0 开始，预热也会计数
+         */
+        void run(int i) throws Exception;
+    }
+
+    private final String suite;
+    private final List<String> results = new ArrayList<>();
+
+    /**
+     * 构造函数
+     *
+     * @param suite 套件名，同时作为结果文件名
+     */
+    public BenchmarkReport(String suite) {
+        this.suite = suite;
+    }
+
+    /**
+     * 先预热再逐次计时，并记录一条结果
+     *
+     * @param name    基准名称
+     * @param rows    表中的数据行数，与行数无关的基准传 0
+     * @param warmup  预热次数
+     * @param samples 计时次数
+     * @param op      被测操作
+     */
+    public void measure(String name, int rows, int warmup, int samples, Operation op) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            op.run(i);
+        }
+        long[] nanos = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            long start = System.nanoTime();
+            op.run(warmup + i);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        long total = 0;
+        for (long n : nanos) {
+            total += n;
+        }
+        String result = String.format(Locale.ROOT,
+                "{\"name\":\"%s\",\"rows\":%d,\"samples\":%d,\"meanNs\":%d,\"p50Ns\":%d,\"p90Ns\":%d,\"p99Ns\":%d,\"maxNs\":%d}",
+                name, rows, samples, total / samples, percentile(nanos, 0.50), percentile(nanos, 0.90),
+                percentile(nanos, 0.99), nanos[samples - 1]);
+        results.add(result);
+        System.out.println(suite + " " + result);
+    }
+
+    /**
+     * 把所有结果写入 JSON 文件
+     *
+     * @return 写入的文件
+     */
+    public File write() throws IOException {
+        File dir = new File(System.getProperty("benchmark.outputDir", "build/benchmark-results"));
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File file = new File(dir, suite + ".json");
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            writer.write("{\"suite\":\"" + suite + "\",\"results\":[\n");
+            for (int i = 0; i < results.size(); i++) {
+                writer.write(results.get(i));
+                writer.write(i < results.size() - 1 ? ",\n" : "\n");
+            }
+            writer.write("]}\n");
+        }
+        return file;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+}
@@ -0,0 +1,129 @@
+package com.surpasslike.welcomateservice.data;
+
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * ChangeCoalescer 的本地单元测试，监听器出错时会写日志，因此在 Robolectric 上运行
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class ChangeCoalescerTest {
+
+    private final List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+    private final List<Boolean> overflows = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void changesWithinWindow_areDeliveredAsOneBatch() throws Exception {
+        ChangeCoalescer<Integer> coalescer = new ChangeCoalescer<>("test-changes", 50, 100);
+        CountDownLatch delivered = record(coalescer, 1);
+
+        for (int i = 0; i < 10; i++) {
+            coalescer.publish(i);
+        }
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(1, batches.size());
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), batches.get(0));
+        assertFalse(overflows.get(0));
+    }
+
+    @Test
+    public void bulkChanges_overflowInsteadOfGrowingUnbounded() throws Exception {
+        ChangeCoalescer<Integer> coalescer = new ChangeCoalescer<>("test-changes", 50, 100);
+        CountDownLatch delivered = record(coalescer, 1);
+
+        for (int i = 0; i < 10_000; i++) {
+            coalescer.publish(i);
+        }
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertTrue(batches.get(0).isEmpty());
+        assertTrue(overflows.get(0));
+    }
+
+    @Test
+    public void laterChanges_startNewWindow() throws Exception {
+        ChangeCoalescer<Integer> coalescer = new ChangeCoalescer<>("test-changes", 20, 100);
+        CountDownLatch first = record(coalescer, 1);
+        coalescer.publish(1);
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch second = record(coalescer, 1);
+        coalescer.publish(2);
+        assertTrue(second.await(5, TimeUnit.SECONDS));
+
+        assertEquals(Collections.singletonList(2), batches.get(batches.size() - 1));
+    }
+
+    @Test
+    public void failingListener_isLoggedAndDoesNotBlockOthers() throws Exception {
+        ChangeCoalescer<Integer> coalescer = new ChangeCoalescer<>("test-changes", 20, 100);
+        coalescer.addListener((changes, overflow) -> {
+            throw new IllegalStateException("boom");
+        });
+        CountDownLatch delivered = record(coalescer, 2);
+
+        coalescer.publish(1);
+        assertFalse(delivered.await(200, TimeUnit.MILLISECONDS));
+        coalescer.publish(2);
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        List<ShadowLog.LogItem> logs = ShadowLog.getLogsForTag("ChangeCoalescer");
+        assertEquals(2, logs.size());
+        assertEquals(Log.WARN, logs.get(0).type);
+        assertTrue(logs.get(0).throwable instanceof IllegalStateException);
+    }
+
+    @Test
+    public void withoutListeners_changesAreDropped() throws Exception {
+        ChangeCoalescer<Integer> coalescer = new ChangeCoalescer<>("test-changes", 20, 100);
+        coalescer.publish(1);
+        Thread.sleep(100);
+
+        CountDownLatch delivered = record(coalescer, 1);
+        coalescer.publish(2);
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(2), batches.get(0));
+    }
+
+    @Test
+    public void reset_discardsPendingChangesAndReportsOverflow() throws Exception {
+        ChangeCoalescer<Integer> coalescer = new ChangeCoalescer<>("test-changes", 50, 100);
+        CountDownLatch delivered = record(coalescer, 1);
+
+        coalescer.publish(1);
+        coalescer.publishReset();
+        coalescer.publish(2);
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(1, batches.size());
+        assertTrue(batches.get(0).isEmpty());
+        assertTrue(overflows.get(0));
+    }
+
+    private CountDownLatch record(ChangeCoalescer<Integer> coalescer, int count) {
+        CountDownLatch latch = new CountDownLatch(count);
+        coalescer.addListener((changes, overflow) -> {
+            batches.add(new ArrayList<>(changes));
+            overflows.add(overflow);
+            latch.countDown();
+        });
+        return latch;
+    }
+}
@@ -0,0 +1,97 @@
+package com.surpasslike.welcomateservice.data;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.Assert.*;
+
+/**
+ * PasswordHasher 的本地单元测试
+ */
+public class PasswordHasherTest {
+
+    private final PasswordHasher hasher = new PasswordHasher(PasswordHasher.MIN_ITERATIONS);
+
+    @Test
+    public void hash_isSaltedAndVerifiable() {
+        String first = hasher.hash("secret");
+        String second = hasher.hash("secret");
+
+        assertTrue(first.startsWith(PasswordHasher.PBKDF2_PREFIX + "$" + PasswordHasher.MIN_ITERATIONS + "$"));
+        assertNotEquals(first, second);
+        assertTrue(hasher.verify("secret", first));
+        assertTrue(hasher.verify("secret", second));
+        assertFalse(hasher.verify("wrong", first));
+        assertFalse(hasher.needsRehash(first));
+    }
+
+    @Test
+    public void legacySha256_isVerifiedAndFlaggedForRehash() throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest("secret".getBytes(StandardCharsets.UTF_8));
+        String legacy = Base64.getEncoder().encodeToString(digest);
+
+        assertTrue(hasher.verify("secret", legacy));
+        assertFalse(hasher.verify("wrong", legacy));
+        assertTrue(hasher.needsRehash(legacy));
+    }
+
+    @Test
+    public void legacySha256_handlesNonAsciiPasswords() throws Exception {
+        for (String password : new String[]{"密码", "p\u00e4ss", "emoji\uD83D\uDE00", "lone\uD800surrogate", ""}) {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(password.getBytes(StandardCharsets.UTF_8));
+            assertTrue(password, hasher.verify(password, Base64.getEncoder().encodeToString(digest)));
+        }
+    }
+
+    @Test
+    public void encodeUtf8_matchesStringGetBytes() {
+        PasswordHasher.Scratch scratch = new PasswordHasher.Scratch();
+        for (String value : new String[]{"ascii", "密码", "\u00e4\u00f6\u00fc", "\uD83D\uDE00", "\uDC00x\uD800"}) {
+            byte[] expected = value.getBytes(StandardCharsets.UTF_8);
+            int length = PasswordHasher.encodeUtf8(scratch, value);
+            assertArrayEquals(expected, Arrays.copyOf(scratch.utf8, length));
+        }
+    }
+
+    @Test
+    public void raisingIterations_flagsOlderHashesForRehash() {
+        String stored = hasher.hash("secret");
+        PasswordHasher stronger = new PasswordHasher(PasswordHasher.MIN_ITERATIONS * 2);
+
+        assertTrue(stronger.verify("secret", stored));
+        assertTrue(stronger.needsRehash(stored));
+    }
+
+    @Test
+    public void malformedHashes_doNotVerify() {
+        assertFalse(hasher.verify("secret", null));
+        assertFalse(hasher.verify(null, hasher.hash("secret")));
+        assertFalse(hasher.verify("secret", PasswordHasher.PBKDF2_PREFIX + "$abc$$"));
+        assertFalse(hasher.verify("secret", "not base64!"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void iterationsBelowMinimum_areRejected() {
+        hasher.setIterations(PasswordHasher.MIN_ITERATIONS - 1);
+    }
+
+    @Test
+    public void hashAndVerify_clearScratchBuffers() {
+        byte[] zero32 = new byte[32];
+        String stored = hasher.hash("secret");
+        PasswordHasher.Scratch scratch = PasswordHasher.SCRATCH.get();
+        assertArrayEquals(zero32, scratch.computed);
+
+        assertTrue(hasher.verify("secret", stored));
+        assertArrayEquals(zero32, scratch.computed);
+        assertArrayEquals(zero32, scratch.expected);
+
+        String legacy = Base64.getEncoder().encodeToString(new byte[32]);
+        assertFalse(hasher.verify("plaintext", legacy));
+        assertArrayEquals(new byte[scratch.utf8.length], scratch.utf8);
+    }
+}
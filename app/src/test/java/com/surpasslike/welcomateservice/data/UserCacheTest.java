@@ -0,0 +1,83 @@
+package com.surpasslike.welcomateservice.data;
+
+import com.surpasslike.welcomateservice.data.model.User;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * UserCache 的本地单元测试
+ */
+public class UserCacheTest {
+
+    @Test
+    public void put_thenGet_countsHitsAndMisses() {
+        UserCache cache = new UserCache(4);
+        assertNull(cache.get("a1"));
+        cache.put(new UserCache.CachedUser("alice", "a1", "hash"), cache.generation());
+
+        assertEquals("alice", cache.get("a1").getUsername());
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    public void invalidateUsername_removesEveryAccountOfThatUser() {
+        UserCache cache = new UserCache(4);
+        cache.put(new UserCache.CachedUser("alice", "a1", "hash"), cache.generation());
+        cache.put(new UserCache.CachedUser("alice", "a2", "hash"), cache.generation());
+        cache.put(new UserCache.CachedUser("bob", "b1", "hash"), cache.generation());
+
+        cache.invalidateUsername("alice");
+
+        assertNull(cache.get("a1"));
+        assertNull(cache.get("a2"));
+        assertNotNull(cache.get("b1"));
+    }
+
+    @Test
+    public void staleGeneration_isNotCached() {
+        UserCache cache = new UserCache(4);
+        long generation = cache.generation();
+        cache.invalidateUsername("alice"); // 读取数据库期间发生了写操作
+
+        cache.put(new UserCache.CachedUser("alice", "a1", "old-hash"), generation);
+        cache.putAllUsers(new ArrayList<User>(), generation);
+
+        assertNull(cache.get("a1"));
+        assertNull(cache.getAllUsers());
+    }
+
+    @Test
+    public void capacity_evictsLeastRecentlyUsed() {
+        UserCache cache = new UserCache(2);
+        cache.put(new UserCache.CachedUser("alice", "a1", "hash"), cache.generation());
+        cache.put(new UserCache.CachedUser("bob", "b1", "hash"), cache.generation());
+        cache.get("a1");
+        cache.put(new UserCache.CachedUser("carol", "c1", "hash"), cache.generation());
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictionCount());
+        assertNotNull(cache.get("a1"));
+        assertNull(cache.get("b1"));
+
+        // 被淘汰条目的二级索引也应被清理，之后按用户名失效不影响其他条目
+        cache.invalidateUsername("bob");
+        assertNotNull(cache.get("c1"));
+    }
+
+    @Test
+    public void writes_invalidateCachedUserList() {
+        UserCache cache = new UserCache(4);
+        cache.putAllUsers(Collections.singletonList(new User("alice", "a1", null)), cache.generation());
+        assertEquals(1, cache.getAllUsers().size());
+
+        cache.invalidateAccount("b1");
+
+        assertNull(cache.getAllUsers());
+    }
+}
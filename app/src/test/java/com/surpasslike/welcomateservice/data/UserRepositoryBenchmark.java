@@ -0,0 +1,99 @@
+package com.surpasslike.welcomateservice.data;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.surpasslike.welcomateservice.benchmark.BenchmarkReport;
+import com.surpasslike.welcomateservice.data.db.DatabaseConfig;
+import com.surpasslike.welcomateservice.data.db.DatabaseHelper;
+import com.surpasslike.welcomateservice.data.db.UserStatements;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * UserRepository 的基准测试，在 Robolectric 的原生 SQLite 上分别以 1k/10k/100k 行数据运行
+ * 覆盖 loginAdmin、addUser、getAllUsers 和分页查询，结果写入 build/benchmark-results/UserRepositoryBenchmark.json
+ * 默认不随单元测试运行，使用 ./gradlew :app:testDebugUnitTest -Pbenchmark 执行
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class UserRepositoryBenchmark {
+    private static final int[] ROW_COUNTS = {1_000, 10_000, 100_000};
+    private static final int SAMPLES = 200;
+    private static final int WARMUP = 20;
+
+    @Test
+    public void repositoryOperations() throws Exception {
+        Context context = RuntimeEnvironment.getApplication();
+        BenchmarkReport report = new BenchmarkReport("UserRepositoryBenchmark");
+        for (int rows : ROW_COUNTS) {
+            run(context, rows, report);
+        }
+        report.write();
+    }
+
+    private void run(Context context, int rows, BenchmarkReport report) throws Exception {
+        String name = "users-bench-" + rows + ".db";
+        context.deleteDatabase(name);
+        DatabaseHelper dbHelper = new DatabaseHelper(context,
+                new DatabaseConfig(name, true, DatabaseConfig.SYNCHRONOUS_NORMAL, 30_000L));
+        try {
+            UserRepository repository = new UserRepository(dbHelper);
+            // 使用最低迭代次数并预先写入同参数的哈希，避免登录触发后台重新哈希
+            repository.setPasswordHashIterations(PasswordHasher.MIN_ITERATIONS);
+            seed(dbHelper, rows, new PasswordHasher(PasswordHasher.MIN_ITERATIONS).hash("secret"));
+
+            Random random = new Random(42);
+            report.measure("loginAdmin", rows, WARMUP, SAMPLES, i -> {
+                int n = random.nextInt(rows);
+                assertEquals("user" + n, repository.loginAdmin("account" + n, "secret"));
+            });
+            report.measure("addUser", rows, WARMUP, SAMPLES, i ->
+                    assertNotEquals(-1, repository.addUser("new" + i, "new" + i + "@example.com", "secret")));
+            int listSamples = rows >= 100_000 ? 5 : 20;
+            report.measure("getAllUsers.cold", rows, 1, listSamples, i -> {
+                repository.clearCache();
+                assertTrue(repository.getAllUsers().size() >= rows);
+            });
+            report.measure("getAllUsers.cached", rows, 1, SAMPLES, i ->
+                    assertTrue(repository.getAllUsers().size() >= rows));
+            report.measure("getUsersPage.first", rows, WARMUP, SAMPLES, i ->
+                    assertEquals(50, repository.getUsersPage(0, 50).getUsers().size()));
+            report.measure("getUsersPage.middle", rows, WARMUP, SAMPLES, i ->
+                    assertEquals(50, repository.getUsersPage(rows / 2, 50).getUsers().size()));
+        } finally {
+            dbHelper.close();
+            context.deleteDatabase(name);
+        }
+    }
+
+    /**
+     * 在一个事务中直接写入测试数据，所有用户共用同一个密码哈希
+     */
+    private static void seed(DatabaseHelper dbHelper, int rows, String passwordHash) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try (SQLiteStatement insert = db.compileStatement(UserStatements.SQL_INSERT_USER)) {
+            for (int i = 0; i < rows; i++) {
+                insert.bindString(1, "user" + i);
+                insert.bindString(2, "account" + i);
+                insert.bindString(3, passwordHash);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.surpasslike.welcomateservice.data;
+
+import android.content.Context;
+
+import com.surpasslike.welcomateservice.data.db.DatabaseConfig;
+import com.surpasslike.welcomateservice.data.db.DatabaseHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.Assert.*;
+
+/**
+ * UserRepository 的本地单元测试，在 Robolectric 的原生 SQLite 上运行
+ * 登录与写后队列的交错通过 afterLoginLookup 固定下来：登录读到用户之后，写线程提交并移除叠加状态，登录才读取叠加状态
+ * 恢复备份与正在进行的数据库访问的交错通过在另一个线程上持有访问锁的读锁固定下来
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class UserRepositoryTest {
+    private static final String DB_NAME = "users-repository-test.db";
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private UserRepository repository;
+    private File backupFile;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        context.deleteDatabase(DB_NAME);
+        backupFile = new File(context.getCacheDir(), "users-repository-test-backup.db");
+        backupFile.delete();
+        dbHelper = new DatabaseHelper(context,
+                new DatabaseConfig(DB_NAME, true, DatabaseConfig.SYNCHRONOUS_NORMAL, 30_000L));
+        repository = new UserRepository(dbHelper);
+        repository.setPasswordHashIterations(PasswordHasher.MIN_ITERATIONS);
+        assertNotEquals(-1, repository.addUser("alice", "alice@example.com", "old"));
+        repository.setWriteBehindEnabled(true);
+        // 旧哈希进入缓存，登录走缓存命中的路径
+        assertEquals("alice", repository.loginAdmin("alice@example.com", "old"));
+    }
+
+    @After
+    public void tearDown() {
+        repository.afterLoginLookup = null;
+        repository.flushPendingWrites();
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+        backupFile.delete();
+    }
+
+    @Test
+    public void login_doesNotUseHashReadBeforeCommittedPasswordChange() {
+        runOnceAfterLookup(() -> repository.submitUpdateUserPassword("alice", "new").join());
+
+        assertNull(repository.loginAdmin("alice@example.com", "old"));
+        assertEquals("alice", repository.loginAdmin("alice@example.com", "new"));
+    }
+
+    @Test
+    public void login_doesNotSucceedForUserDeletedAfterLookup() {
+        runOnceAfterLookup(() -> repository.submitDeleteUser("alice").join());
+
+        assertNull(repository.loginAdmin("alice@example.com", "old"));
+    }
+
+    @Test
+    public void login_seesQueuedPasswordChange() {
+        repository.updateUserPassword("alice", "new");
+
+        assertNull(repository.loginAdmin("alice@example.com", "old"));
+        assertEquals("alice", repository.loginAdmin("alice@example.com", "new"));
+    }
+
+    @Test
+    public void restore_waitsForDatabaseUsersAndDropsStateOfOldDatabase() throws Exception {
+        repository.backupTo(backupFile);
+        assertNotEquals(-1, repository.addUser("bob", "bob@example.com", "secret"));
+        // bob 进入登录缓存，两个用户进入导出的快照
+        assertEquals("bob", repository.loginAdmin("bob@example.com", "secret"));
+        assertEquals(2, repository.exportUsers(0).getCount());
+
+        // 另一个线程正在访问旧库
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread user = new Thread(() -> {
+            Lock access = dbHelper.getAccessLock().readLock();
+            access.lock();
+            try {
+                holding.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                access.unlock();
+            }
+        }, "db-user");
+        user.start();
+        assertTrue(holding.await(10, TimeUnit.SECONDS));
+
+        AtomicBoolean restored = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread restorer = new Thread(() -> {
+            try {
+                repository.restoreFrom(backupFile, () -> restored.set(true));
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        }, "db-restore");
+        restorer.start();
+
+        // 替换要等正在进行的访问结束
+        restorer.join(300);
+        assertTrue(restorer.isAlive());
+        assertFalse(restored.get());
+
+        release.countDown();
+        restorer.join(10_000);
+        user.join(10_000);
+        assertNull(failure.get());
+        assertTrue(restored.get());
+
+        // 缓存和快照都来自新库：bob 不再能登录，也不在快照中
+        assertNull(repository.loginAdmin("bob@example.com", "secret"));
+        assertEquals("alice", repository.loginAdmin("alice@example.com", "old"));
+        assertEquals(1, repository.exportUsers(0).getCount());
+        assertEquals(1, repository.getAllUsers().size());
+    }
+
+    /**
+     * 在下一次登录读取用户之后、读取叠加状态之前执行一次写操作，写操作提交完成后登录才继续
+     */
+    private void runOnceAfterLookup(Runnable write) {
+        AtomicBoolean done = new AtomicBoolean();
+        repository.afterLoginLookup = () -> {
+            if (done.compareAndSet(false, true)) {
+                write.run();
+            }
+        };
+    }
+}
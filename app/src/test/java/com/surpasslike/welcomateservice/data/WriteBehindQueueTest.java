@@ -0,0 +1,147 @@
+package com.surpasslike.welcomateservice.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * WriteBehindQueue 的本地单元测试
+ */
+public class WriteBehindQueueTest {
+
+    private final List<List<Integer>> committed = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void queuedWrites_areCommittedInOneBatch() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>("test-write-behind", 100, 100, 0, batch -> {
+            if (batch.contains(0)) {
+                // 第一批写入期间其余写操作在队列中积累
+                blocked.countDown();
+                release.await();
+            }
+            committed.add(new ArrayList<>(batch));
+        });
+
+        queue.submit(0);
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Void> last = null;
+        for (int i = 1; i <= 10; i++) {
+            last = queue.submit(i);
+        }
+        assertFalse(last.isDone());
+        release.countDown();
+        last.get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, committed.size());
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), committed.get(1));
+        assertEquals(2, queue.getBatchCount());
+        assertEquals(11, queue.getItemCount());
+    }
+
+    @Test
+    public void batches_areSplitAtMaxBatch() throws Exception {
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>("test-write-behind", 100, 4, 50,
+                batch -> committed.add(new ArrayList<>(batch)));
+
+        for (int i = 0; i < 10; i++) {
+            queue.submit(i);
+        }
+        queue.flush();
+
+        List<Integer> all = new ArrayList<>();
+        for (List<Integer> batch : committed) {
+            assertTrue("batch too large: " + batch, batch.size() <= 4);
+            all.addAll(batch);
+        }
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), all);
+    }
+
+    @Test
+    public void failedWrite_doesNotFailOtherWritesInBatch() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>("test-write-behind", 100, 100, 0, batch -> {
+            if (batch.contains(0)) {
+                blocked.countDown();
+                release.await();
+            }
+            if (batch.contains(2)) {
+                throw new IllegalStateException("constraint failed");
+            }
+            committed.add(new ArrayList<>(batch));
+        });
+
+        queue.submit(0);
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Void> one = queue.submit(1);
+        CompletableFuture<Void> two = queue.submit(2);
+        CompletableFuture<Void> three = queue.submit(3);
+        release.countDown();
+
+        one.get(5, TimeUnit.SECONDS);
+        three.get(5, TimeUnit.SECONDS);
+        try {
+            two.get(5, TimeUnit.SECONDS);
+            fail("expected failure");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(1, queue.getFailureCount());
+        assertEquals(3, queue.getItemCount());
+    }
+
+    @Test
+    public void flush_waitsForAllSubmittedWrites() throws Exception {
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>("test-write-behind", 100, 100, 5, batch -> {
+            Thread.sleep(20);
+            committed.add(new ArrayList<>(batch));
+        });
+
+        for (int i = 0; i < 5; i++) {
+            queue.submit(i);
+        }
+        assertTrue(queue.hasPending());
+        queue.flush();
+
+        assertFalse(queue.hasPending());
+        assertEquals(5, queue.getItemCount());
+    }
+
+    @Test
+    public void shutdown_drainsQueuedWritesAndRejectsNewOnes() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>("test-write-behind", 100, 100, 0, batch -> {
+            if (batch.contains(0)) {
+                blocked.countDown();
+                release.await();
+            }
+            committed.add(new ArrayList<>(batch));
+        });
+
+        queue.submit(0);
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Void> queued = queue.submit(1);
+        queue.shutdown();
+        release.countDown();
+
+        queued.get(5, TimeUnit.SECONDS);
+        try {
+            queue.submit(2);
+            fail("expected rejection");
+        } catch (IllegalStateException expected) {
+            // 关闭后不再接收写操作
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.surpasslike.welcomateservice.data.db;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * SearchQuery 的本地单元测试
+ */
+public class SearchQueryTest {
+
+    @Test
+    public void words_becomeLowercasePrefixTerms() {
+        assertEquals("ali*", SearchQuery.toMatchExpression("Ali"));
+        assertEquals("ali* ex*", SearchQuery.toMatchExpression("  ali   EX "));
+    }
+
+    @Test
+    public void separators_splitLikeSimpleTokenizer() {
+        assertEquals("alice* example* co*", SearchQuery.toMatchExpression("alice@example.co"));
+        assertEquals("user* 42*", SearchQuery.toMatchExpression("user_42"));
+    }
+
+    @Test
+    public void nonAscii_isKeptAsTokenCharacters() {
+        assertEquals("张三*", SearchQuery.toMatchExpression("张三"));
+        assertEquals("müller*", SearchQuery.toMatchExpression("Müller"));
+    }
+
+    @Test
+    public void ftsSyntax_cannotBeInjected() {
+        assertEquals("a* or* b*", SearchQuery.toMatchExpression("a OR b"));
+        assertEquals("x* not* y*", SearchQuery.toMatchExpression("\"x\" -NOT (y*)"));
+        assertEquals("near* 3* z*", SearchQuery.toMatchExpression("NEAR/3 z"));
+    }
+
+    @Test
+    public void emptyInput_hasNoExpression() {
+        assertNull(SearchQuery.toMatchExpression(null));
+        assertNull(SearchQuery.toMatchExpression(""));
+        assertNull(SearchQuery.toMatchExpression(" @.*\" "));
+    }
+
+    @Test
+    public void termCount_isBounded() {
+        String expression = SearchQuery.toMatchExpression("a b c d e f g h i j k");
+        assertEquals(SearchQuery.MAX_TERMS, expression.split(" ").length);
+        assertEquals("a* b* c* d* e* f* g* h*", expression);
+    }
+}
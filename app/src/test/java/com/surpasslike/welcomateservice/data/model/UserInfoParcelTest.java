@@ -0,0 +1,83 @@
+package com.surpasslike.welcomateservice.data.model;
+
+import android.os.Parcel;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * UserInfo 的编组测试：往返一致，并且比逐字段写入 UTF-16 字符串和空密码的朴素编组更小
+ * Robolectric 的 Parcel 是 JVM 上的实现，大小与真机一致；两种编组的耗时对比见 AdminApiParcelBenchmark
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class UserInfoParcelTest {
+    private static final int USERS = 500;
+
+    @Test
+    public void roundTrip_keepsAllFields() {
+        List<UserInfo> users = new ArrayList<>();
+        users.add(new UserInfo(1, "alice", "alice@example.com"));
+        users.add(new UserInfo(2, null, "无名@example.com"));
+        users.add(new UserInfo(Long.MAX_VALUE, "", null));
+
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeTypedList(users);
+            parcel.setDataPosition(0);
+            assertEquals(users, parcel.createTypedArrayList(UserInfo.CREATOR));
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @Test
+    public void compactParceling_isSmallerThanNaive() {
+        List<UserInfo> users = users();
+        int compact = marshalledSize(users, false);
+        int naive = marshalledSize(users, true);
+        assertTrue("compact " + compact + "B vs naive " + naive + "B", compact * 10 <= naive * 7);
+    }
+
+    private static List<UserInfo> users() {
+        List<UserInfo> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(new UserInfo(i + 1, "user" + i, "user" + i + "@example.com"));
+        }
+        return users;
+    }
+
+    private static int marshalledSize(List<UserInfo> users, boolean naive) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            write(parcel, users, naive);
+            return parcel.dataSize();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * 朴素编组：与原先的 User 相同的字段（包括总是为空的密码），ID 装箱后以 writeValue 写入，字符串为 UTF-16
+     */
+    private static void write(Parcel parcel, List<UserInfo> users, boolean naive) {
+        if (!naive) {
+            parcel.writeTypedList(users);
+            return;
+        }
+        parcel.writeInt(users.size());
+        for (UserInfo user : users) {
+            parcel.writeValue(user.getId());
+            parcel.writeString(user.getUsername());
+            parcel.writeString(user.getAccount());
+            parcel.writeString(null);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.surpasslike.welcomateservice.data.model;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * UserSnapshotCodec 的本地单元测试
+ */
+public class UserSnapshotCodecTest {
+
+    @Test
+    public void roundTrip_keepsOrderAndFields() {
+        UserSnapshotCodec.Encoder encoder = new UserSnapshotCodec.Encoder();
+        encoder.add(1, "alice", "alice@example.com");
+        encoder.add(7, "bob", "bob@example.com");
+
+        ByteBuffer buffer = encode(encoder, 42);
+        assertEquals(42, UserSnapshotCodec.readVersion(buffer));
+        List<User> users = UserSnapshotCodec.decode(buffer);
+
+        assertEquals(2, users.size());
+        assertEquals(1, users.get(0).getId());
+        assertEquals("alice", users.get(0).getUsername());
+        assertEquals("alice@example.com", users.get(0).getAccount());
+        assertEquals(7, users.get(1).getId());
+        assertEquals("bob", users.get(1).getUsername());
+    }
+
+    @Test
+    public void nullAndNonAsciiStrings_survive() {
+        UserSnapshotCodec.Encoder encoder = new UserSnapshotCodec.Encoder();
+        encoder.add(3, null, "无名@example.com");
+
+        List<User> users = UserSnapshotCodec.decode(encode(encoder, 1));
+
+        assertNull(users.get(0).getUsername());
+        assertEquals("无名@example.com", users.get(0).getAccount());
+    }
+
+    @Test
+    public void emptySnapshot_isHeaderOnly() {
+        UserSnapshotCodec.Encoder encoder = new UserSnapshotCodec.Encoder();
+        assertEquals(UserSnapshotCodec.HEADER_SIZE, encoder.size());
+        assertTrue(UserSnapshotCodec.decode(encode(encoder, 0)).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void foreignData_isRejected() {
+        ByteBuffer buffer = ByteBuffer.allocate(UserSnapshotCodec.HEADER_SIZE);
+        buffer.putInt(0, 0xCAFEBABE);
+        UserSnapshotCodec.decode(buffer);
+    }
+
+    @Test
+    public void hundredThousandUsers_fitInOneBuffer() {
+        UserSnapshotCodec.Encoder encoder = new UserSnapshotCodec.Encoder();
+        for (int i = 1; i <= 100_000; i++) {
+            encoder.add(i, "user" + i, "user" + i + "@example.com");
+        }
+
+        ByteBuffer buffer = encode(encoder, 5);
+        List<User> users = UserSnapshotCodec.decode(buffer);
+
+        assertEquals(100_000, users.size());
+        assertEquals("user100000@example.com", users.get(99_999).getAccount());
+        // 远超 Binder 事务缓冲区的 1MB 上限，只能通过共享内存传递
+        assertTrue(buffer.capacity() > 1024 * 1024);
+    }
+
+    private static ByteBuffer encode(UserSnapshotCodec.Encoder encoder, long version) {
+        ByteBuffer buffer = ByteBuffer.allocate(encoder.size());
+        encoder.writeTo(buffer, version);
+        buffer.rewind();
+        return buffer;
+    }
+}
@@ -0,0 +1,111 @@
+package com.surpasslike.welcomateservice.metrics;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * LatencyHistogram 和 MethodMetrics 的本地单元测试
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_areContiguousWithBoundedRelativeError() {
+        int previous = -1;
+        for (long value = 0; value < 1_000_000; value++) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(index == previous || index == previous + 1);
+            long upper = LatencyHistogram.bucketUpperBound(index);
+            assertTrue(value <= upper);
+            assertTrue("error too large at " + value, upper - value <= Math.max(1, value / 16));
+            previous = index;
+        }
+        assertTrue(LatencyHistogram.bucketIndex(Long.MAX_VALUE) < LatencyHistogram.BUCKET_COUNT);
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void percentiles_matchRecordedDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMaxNanos());
+        assertEquals(500_500, histogram.getMeanNanos());
+        assertWithinBucket(500_000, histogram.getPercentileNanos(50));
+        assertWithinBucket(990_000, histogram.getPercentileNanos(99));
+        assertEquals(1_000_000, histogram.getPercentileNanos(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(50));
+    }
+
+    @Test
+    public void concurrentRecords_areAllCounted() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int threads = 8;
+        int perThread = 100_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final long value = (t + 1) * 100L;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    histogram.record(value);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals((long) threads * perThread, histogram.getCount());
+        assertEquals(threads * 100L, histogram.getMaxNanos());
+    }
+
+    @Test
+    public void methodMetrics_countErrors() {
+        MethodMetrics metrics = Metrics.register("test.methodMetrics_countErrors");
+        assertSame(metrics, Metrics.register("test.methodMetrics_countErrors"));
+        metrics.record(System.nanoTime(), true);
+        metrics.record(System.nanoTime(), false);
+        assertEquals(2, metrics.getCalls());
+        assertEquals(1, metrics.getErrors());
+    }
+
+    @Test
+    public void methodMetrics_timeAndRunRecordOutcome() throws Exception {
+        MethodMetrics metrics = Metrics.register("test.methodMetrics_timeAndRunRecordOutcome");
+        assertEquals("ok", metrics.time(() -> "ok"));
+        metrics.run(() -> { });
+        try {
+            metrics.run(() -> {
+                throw new IOException("failed");
+            });
+            fail("expected exception");
+        } catch (IOException expected) {
+            // 异常原样抛出，并计为一次错误
+        }
+        assertEquals(3, metrics.getCalls());
+        assertEquals(1, metrics.getErrors());
+    }
+
+    private static void assertWithinBucket(long expected, long actual) {
+        assertTrue("expected ~" + expected + " but was " + actual,
+                actual >= expected && actual - expected <= expected / 16);
+    }
+}
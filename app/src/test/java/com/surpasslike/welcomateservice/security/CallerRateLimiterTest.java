@@ -0,0 +1,124 @@
+package com.surpasslike.welcomateservice.security;
+
+import com.surpasslike.welcomateservice.security.CallerRateLimiter.Category;
+import com.surpasslike.welcomateservice.security.CallerRateLimiter.Limit;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * TokenBucket 和 CallerRateLimiter 的本地单元测试
+ */
+public class CallerRateLimiterTest {
+
+    private long now = 1_000_000_000L;
+    private final CallerRateLimiter limiter = new CallerRateLimiter(
+            new Limit(10, 5), new Limit(20, 10), new Limit(50, 100), () -> now);
+
+    @Test
+    public void burst_isAllowedThenRejected() {
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(1000, Category.LOGIN, 1));
+        }
+        assertFalse(limiter.tryAcquire(1000, Category.LOGIN, 1));
+        assertEquals(1, limiter.getRejectedCount(Category.LOGIN));
+    }
+
+    @Test
+    public void tokens_refillAtConfiguredRate() {
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(1000, Category.LOGIN, 1));
+        }
+        assertFalse(limiter.tryAcquire(1000, Category.LOGIN, 1));
+        now += TimeUnit.MILLISECONDS.toNanos(100); // 10 次/秒，100ms 补充一个令牌
+        assertTrue(limiter.tryAcquire(1000, Category.LOGIN, 1));
+        assertFalse(limiter.tryAcquire(1000, Category.LOGIN, 1));
+    }
+
+    @Test
+    public void callersAndCategories_areLimitedIndependently() {
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(1000, Category.LOGIN, 1));
+        }
+        assertFalse(limiter.tryAcquire(1000, Category.LOGIN, 1));
+        assertTrue(limiter.tryAcquire(2000, Category.LOGIN, 1));
+        assertTrue(limiter.tryAcquire(1000, Category.WRITE, 1));
+        assertTrue(limiter.tryAcquire(1000, Category.READ, 1));
+    }
+
+    @Test
+    public void batchLargerThanBurst_isChargedInFull() {
+        assertTrue(limiter.tryAcquire(1000, Category.WRITE, 500));
+        assertFalse(limiter.tryAcquire(1000, Category.WRITE, 1));
+        // 20 次/秒：500 个令牌要 25 秒才能补回，突发余量 10 个之前一直拒绝
+        now += TimeUnit.SECONDS.toNanos(24);
+        assertFalse(limiter.tryAcquire(1000, Category.WRITE, 1));
+        now += TimeUnit.SECONDS.toNanos(1);
+        assertTrue(limiter.tryAcquire(1000, Category.WRITE, 1));
+    }
+
+    @Test
+    public void batchLargerThanBurst_isRejectedUnlessBucketIsFull() {
+        assertTrue(limiter.tryAcquire(1000, Category.WRITE, 1));
+        assertFalse(limiter.tryAcquire(1000, Category.WRITE, 500));
+        now += TimeUnit.MILLISECONDS.toNanos(50); // 补回唯一用掉的令牌
+        assertTrue(limiter.tryAcquire(1000, Category.WRITE, 500));
+    }
+
+    @Test
+    public void batchDebt_doesNotBlockOtherWrites() {
+        CallerRateLimiter batched = new CallerRateLimiter(
+                new Limit(10, 5), new Limit(20, 10), new Limit(50, 100), new Limit(100, 1000), () -> now);
+        assertTrue(batched.tryAcquire(1000, Category.BATCH, 5000));
+        assertFalse(batched.tryAcquire(1000, Category.BATCH, 1));
+        // 批量导入欠下 40 秒的额度，单个写操作照常通过
+        for (int i = 0; i < 10; i++) {
+            assertTrue(batched.tryAcquire(1000, Category.WRITE, 1));
+        }
+        assertEquals(0, batched.getRejectedCount(Category.WRITE));
+    }
+
+    @Test
+    public void concurrentCallers_neverExceedBurst() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 100, 0);
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 1000; i++) {
+                    if (bucket.tryAcquire(1, 0)) {
+                        granted.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(100, granted.get());
+    }
+
+    @Test
+    public void idleBucket_isReportedAfterRefill() {
+        TokenBucket bucket = new TokenBucket(10, 5, 0);
+        assertTrue(bucket.tryAcquire(5, 0));
+        assertFalse(bucket.isIdle(0));
+        assertTrue(bucket.isIdle(TimeUnit.MILLISECONDS.toNanos(500)));
+    }
+}
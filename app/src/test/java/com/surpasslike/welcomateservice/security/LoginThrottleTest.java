@@ -0,0 +1,90 @@
+package com.surpasslike.welcomateservice.security;
+
+import com.surpasslike.welcomateservice.security.LoginThrottle.Policy;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * LoginThrottle 的本地单元测试
+ */
+public class LoginThrottleTest {
+
+    private long now = 0;
+    private final LoginThrottle throttle = new LoginThrottle(
+            new Policy(3, 1_000, 8_000, 60_000), new Policy(10, 1_000, 8_000, 60_000), () -> now);
+
+    @Test
+    public void failuresBelowThreshold_areNotThrottled() {
+        throttle.recordFailure("alice", 1000);
+        throttle.recordFailure("alice", 1000);
+        assertEquals(0, throttle.checkAllowed("alice", 1000));
+    }
+
+    @Test
+    public void repeatedFailures_backOffExponentiallyUpToMax() {
+        long[] expectedDelays = {1_000, 2_000, 4_000, 8_000, 8_000};
+        throttle.recordFailure("alice", 1000);
+        throttle.recordFailure("alice", 1000);
+        for (long expected : expectedDelays) {
+            throttle.recordFailure("alice", 1000);
+            assertEquals(expected, throttle.checkAllowed("alice", 1000));
+            advanceMs(expected);
+            assertEquals(0, throttle.checkAllowed("alice", 1000));
+        }
+        assertEquals(expectedDelays.length, throttle.getThrottledCount());
+    }
+
+    @Test
+    public void success_clearsAccountFailures() {
+        for (int i = 0; i < 3; i++) {
+            throttle.recordFailure("alice", 1000);
+        }
+        advanceMs(1_000);
+        throttle.recordSuccess("alice");
+        throttle.recordFailure("alice", 1000);
+        assertEquals(0, throttle.checkAllowed("alice", 1000));
+    }
+
+    @Test
+    public void failures_expireAfterQuietPeriod() {
+        for (int i = 0; i < 3; i++) {
+            throttle.recordFailure("alice", 1000);
+        }
+        advanceMs(61_000);
+        throttle.recordFailure("alice", 1000);
+        assertEquals(0, throttle.checkAllowed("alice", 1000));
+    }
+
+    @Test
+    public void callerSprayingAccounts_isThrottledByUid() {
+        for (int i = 0; i < 10; i++) {
+            throttle.recordFailure("account" + i, 2000);
+        }
+        assertTrue(throttle.checkAllowed("fresh-account", 2000) > 0);
+        assertEquals(0, throttle.checkAllowed("fresh-account", 3000));
+    }
+
+    @Test
+    public void trackedEntries_areBounded() {
+        for (int i = 0; i < 100_000; i++) {
+            throttle.recordFailure("account" + i, i);
+        }
+        StringWriter out = new StringWriter();
+        throttle.dump(new PrintWriter(out, true));
+        String dump = out.toString();
+        int accounts = Integer.parseInt(dump.replaceAll("(?s).*trackedAccounts=(\\d+).*", "$1"));
+        int callers = Integer.parseInt(dump.replaceAll("(?s).*trackedCallers=(\\d+).*", "$1"));
+        assertTrue(accounts <= 16 * 256);
+        assertTrue(callers <= 16 * 256);
+    }
+
+    private void advanceMs(long ms) {
+        now += TimeUnit.MILLISECONDS.toNanos(ms);
+    }
+}
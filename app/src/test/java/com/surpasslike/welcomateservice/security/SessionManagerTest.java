@@ -0,0 +1,79 @@
+package com.surpasslike.welcomateservice.security;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * SessionManager 的本地单元测试
+ */
+public class SessionManagerTest {
+
+    private long now = 0;
+    private final SessionManager sessions = new SessionManager(60_000, () -> now);
+
+    @Test
+    public void createdToken_validatesForSameCallerOnly() {
+        SessionManager.Session session = sessions.create("alice", "alice@example.com", 1000);
+
+        assertEquals(43, session.getToken().length());
+        assertSame(session, sessions.validate(session.getToken(), 1000));
+        assertNull(sessions.validate(session.getToken(), 2000));
+        assertNull(sessions.validate("forged", 1000));
+        assertNull(sessions.validate(null, 1000));
+    }
+
+    @Test
+    public void tokens_areUnique() {
+        String first = sessions.create("alice", "a1", 1000).getToken();
+        String second = sessions.create("alice", "a1", 1000).getToken();
+        assertNotEquals(first, second);
+        assertEquals(2, sessions.size());
+    }
+
+    @Test
+    public void token_expiresAfterTtl() {
+        SessionManager.Session session = sessions.create("alice", "a1", 1000);
+        now += TimeUnit.SECONDS.toNanos(59);
+        assertNotNull(sessions.validate(session.getToken(), 1000));
+        now += TimeUnit.SECONDS.toNanos(1);
+        assertNull(sessions.validate(session.getToken(), 1000));
+        assertEquals(0, sessions.size());
+    }
+
+    @Test
+    public void invalidate_onlyRemovesCallersOwnSession() {
+        SessionManager.Session session = sessions.create("alice", "a1", 1000);
+        sessions.invalidate(session.getToken(), 2000);
+        assertNotNull(sessions.validate(session.getToken(), 1000));
+        sessions.invalidate(session.getToken(), 1000);
+        assertNull(sessions.validate(session.getToken(), 1000));
+    }
+
+    @Test
+    public void invalidateUser_removesAllSessionsOfThatUser() {
+        SessionManager.Session a1 = sessions.create("alice", "a1", 1000);
+        SessionManager.Session a2 = sessions.create("alice", "a2", 2000);
+        SessionManager.Session b1 = sessions.create("bob", "b1", 1000);
+
+        sessions.invalidateUser("alice");
+
+        assertNull(sessions.validate(a1.getToken(), 1000));
+        assertNull(sessions.validate(a2.getToken(), 2000));
+        assertNotNull(sessions.validate(b1.getToken(), 1000));
+    }
+
+    @Test
+    public void invalidateAll_removesEverySession() {
+        SessionManager.Session a1 = sessions.create("alice", "a1", 1000);
+        SessionManager.Session b1 = sessions.create("bob", "b1", 2000);
+
+        sessions.invalidateAll();
+
+        assertNull(sessions.validate(a1.getToken(), 1000));
+        assertNull(sessions.validate(b1.getToken(), 2000));
+        assertEquals(0, sessions.size());
+    }
+}
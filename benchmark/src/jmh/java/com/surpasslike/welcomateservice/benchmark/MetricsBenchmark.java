@@ -0,0 +1,46 @@
+package com.surpasslike.welcomateservice.benchmark;
+
+import com.surpasslike.welcomateservice.metrics.MethodMetrics;
+import com.surpasslike.welcomateservice.metrics.Metrics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 方法统计的 JMH 基准：衡量每次 AIDL 调用和数据库语句额外付出的记录开销，包括多线程争用的情况
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MetricsBenchmark {
+
+    private final MethodMetrics metrics = Metrics.register("benchmark.record");
+
+    @Benchmark
+    public void record() {
+        metrics.record(System.nanoTime(), true);
+    }
+
+    @Benchmark
+    public long time() {
+        return metrics.time(System::nanoTime);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void recordContended() {
+        metrics.record(System.nanoTime(), true);
+    }
+
+    @Benchmark
+    public long baselineNanoTime() {
+        return System.nanoTime();
+    }
+}
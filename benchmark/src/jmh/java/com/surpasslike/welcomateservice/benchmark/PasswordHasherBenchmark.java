@@ -0,0 +1,62 @@
+package com.surpasslike.welcomateservice.benchmark;
+
+import com.surpasslike.welcomateservice.data.PasswordHasher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 密码哈希的 JMH 基准：新密码哈希、PBKDF2 验证以及旧格式 SHA-256 验证
+ * 登录和注册的耗时主要由这里决定，调整迭代次数前应先对比此基准的结果
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PasswordHasherBenchmark {
+
+    @Param({"10000", "50000"})
+    public int iterations;
+
+    private PasswordHasher hasher;
+    private String pbkdf2Hash;
+    private String legacyHash;
+
+    @Setup
+    public void setUp() throws Exception {
+        hasher = new PasswordHasher(iterations);
+        pbkdf2Hash = hasher.hash("secret");
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest("secret".getBytes(StandardCharsets.UTF_8));
+        legacyHash = Base64.getEncoder().encodeToString(digest);
+    }
+
+    @Benchmark
+    public String hash() {
+        return hasher.hash("secret");
+    }
+
+    @Benchmark
+    public boolean verifyPbkdf2() {
+        return hasher.verify("secret", pbkdf2Hash);
+    }
+
+    @Benchmark
+    public boolean verifyLegacySha256() {
+        return hasher.verify("secret", legacyHash);
+    }
+
+    @Benchmark
+    public boolean needsRehash() {
+        return hasher.needsRehash(pbkdf2Hash);
+    }
+}
@@ -0,0 +1,75 @@
+package com.surpasslike.welcomateservice.benchmark;
+
+import com.surpasslike.welcomateservice.data.UserCache;
+import com.surpasslike.welcomateservice.data.model.User;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户缓存的 JMH 基准：登录路径上的按账户查找、读穿透写入（含 LRU 淘汰）以及用户列表的模型映射
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UserCacheBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private UserCache cache;
+    private String[] accounts;
+    private List<User> users;
+
+    @Setup
+    public void setUp() {
+        cache = new UserCache(UserCache.DEFAULT_CAPACITY);
+        accounts = new String[rows];
+        users = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            accounts[i] = "account" + i;
+            users.add(new User(i + 1, "user" + i, accounts[i], null));
+        }
+        for (int i = 0; i < Math.min(rows, UserCache.DEFAULT_CAPACITY); i++) {
+            cache.put(new UserCache.CachedUser("user" + i, accounts[i], "hash"), cache.generation());
+        }
+    }
+
+    @Benchmark
+    public UserCache.CachedUser getHit() {
+        return cache.get(accounts[ThreadLocalRandom.current().nextInt(Math.min(rows, UserCache.DEFAULT_CAPACITY))]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public UserCache.CachedUser getHitContended() {
+        return cache.get(accounts[ThreadLocalRandom.current().nextInt(Math.min(rows, UserCache.DEFAULT_CAPACITY))]);
+    }
+
+    @Benchmark
+    public void putWithEviction() {
+        int i = ThreadLocalRandom.current().nextInt(rows);
+        cache.put(new UserCache.CachedUser("user" + i, accounts[i], "hash"), cache.generation());
+    }
+
+    @Benchmark
+    public List<User> mapUserList() {
+        List<User> copy = new ArrayList<>(users.size());
+        for (User user : users) {
+            copy.add(new User(user.getId(), user.getUsername(), user.getAccount(), null));
+        }
+        return cache.putAllUsers(copy, cache.generation());
+    }
+}